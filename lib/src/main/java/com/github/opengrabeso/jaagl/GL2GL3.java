@@ -95,6 +95,34 @@ public interface GL2GL3 extends GL {
 
     void glUniform1f(int lineWidthLocation, float lineWidth);
 
+    void glUniform2f(int location, float x, float y);
+
+    void glUniform1fv(int location, int count, float[] value, int offset);
+
+    int GL_FRAMEBUFFER();
+
+    int GL_FRAMEBUFFER_BINDING();
+
+    int GL_FRAMEBUFFER_COMPLETE();
+
+    int GL_COLOR_ATTACHMENT0();
+
+    void glGenFramebuffers(int[] handles);
+
+    void glDeleteFramebuffers(int[] handles);
+
+    void glBindFramebuffer(int target, int framebuffer);
+
+    void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level);
+
+    int glCheckFramebufferStatus(int target);
+
+    int GL_READ_FRAMEBUFFER();
+
+    int GL_DRAW_FRAMEBUFFER();
+
+    void glBlitFramebuffer(int srcX0, int srcY0, int srcX1, int srcY1, int dstX0, int dstY0, int dstX1, int dstY1, int mask, int filter);
+
     int GL_GEOMETRY_INPUT_TYPE();
 
     int GL_GEOMETRY_OUTPUT_TYPE();
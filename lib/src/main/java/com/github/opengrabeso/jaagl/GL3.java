@@ -2,4 +2,10 @@ package com.github.opengrabeso.jaagl;
 
 public interface GL3 extends GL, GL2GL3, GL2ES2 {
     int GL_RED();
+
+    int GL_R8();
+
+    int GL_TEXTURE_SWIZZLE_G();
+
+    int GL_TEXTURE_SWIZZLE_B();
 }
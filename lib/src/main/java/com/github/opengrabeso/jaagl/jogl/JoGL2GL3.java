@@ -243,6 +243,76 @@ public class JoGL2GL3 extends JoGL implements GL2GL3 {
         ggl().glUniform1f(lineWidthLocation, lineWidth);
     }
 
+    @Override
+    public void glUniform2f(int location, float x, float y) {
+        ggl().glUniform2f(location, x, y);
+    }
+
+    @Override
+    public void glUniform1fv(int location, int count, float[] value, int offset) {
+        ggl().glUniform1fv(location, count, value, offset);
+    }
+
+    @Override
+    public int GL_FRAMEBUFFER() {
+        return com.jogamp.opengl.GL.GL_FRAMEBUFFER;
+    }
+
+    @Override
+    public int GL_FRAMEBUFFER_BINDING() {
+        return com.jogamp.opengl.GL.GL_FRAMEBUFFER_BINDING;
+    }
+
+    @Override
+    public int GL_FRAMEBUFFER_COMPLETE() {
+        return com.jogamp.opengl.GL.GL_FRAMEBUFFER_COMPLETE;
+    }
+
+    @Override
+    public int GL_COLOR_ATTACHMENT0() {
+        return com.jogamp.opengl.GL.GL_COLOR_ATTACHMENT0;
+    }
+
+    @Override
+    public void glGenFramebuffers(int[] handles) {
+        ggl().glGenFramebuffers(handles.length, handles, 0);
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int[] handles) {
+        ggl().glDeleteFramebuffers(handles.length, handles, 0);
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+        ggl().glBindFramebuffer(target, framebuffer);
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+        ggl().glFramebufferTexture2D(target, attachment, textarget, texture, level);
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        return ggl().glCheckFramebufferStatus(target);
+    }
+
+    @Override
+    public int GL_READ_FRAMEBUFFER() {
+        return com.jogamp.opengl.GL2ES3.GL_READ_FRAMEBUFFER;
+    }
+
+    @Override
+    public int GL_DRAW_FRAMEBUFFER() {
+        return com.jogamp.opengl.GL2ES3.GL_DRAW_FRAMEBUFFER;
+    }
+
+    @Override
+    public void glBlitFramebuffer(int srcX0, int srcY0, int srcX1, int srcY1, int dstX0, int dstY0, int dstX1, int dstY1, int mask, int filter) {
+        ggl().glBlitFramebuffer(srcX0, srcY0, srcX1, srcY1, dstX0, dstY0, dstX1, dstY1, mask, filter);
+    }
+
     @Override
     public int GL_GEOMETRY_INPUT_TYPE() {
         return com.jogamp.opengl.GL3ES3.GL_GEOMETRY_INPUT_TYPE;
@@ -20,4 +20,19 @@ public class JoGL3 extends JoGL2GL3 implements GL3 {
     public int GL_RED() {
         return com.jogamp.opengl.GL3.GL_RED;
     }
+
+    @Override
+    public int GL_R8() {
+        return com.jogamp.opengl.GL3.GL_R8;
+    }
+
+    @Override
+    public int GL_TEXTURE_SWIZZLE_G() {
+        return com.jogamp.opengl.GL3.GL_TEXTURE_SWIZZLE_G;
+    }
+
+    @Override
+    public int GL_TEXTURE_SWIZZLE_B() {
+        return com.jogamp.opengl.GL3.GL_TEXTURE_SWIZZLE_B;
+    }
 }
@@ -3,6 +3,7 @@ package com.github.opengrabeso.jaagl.lwjgl;
 import com.github.opengrabeso.jaagl.GL2GL3;
 
 import java.nio.FloatBuffer;
+import java.util.Arrays;
 
 public abstract class LWGL2GL3 extends LWGL implements GL2GL3 {
 
@@ -240,6 +241,80 @@ public abstract class LWGL2GL3 extends LWGL implements GL2GL3 {
         org.lwjgl.opengl.GL20.glUniform1f(lineWidthLocation, lineWidth);
     }
 
+    @Override
+    public void glUniform2f(int location, float x, float y) {
+        org.lwjgl.opengl.GL20.glUniform2f(location, x, y);
+    }
+
+    @Override
+    public void glUniform1fv(int location, int count, float[] value, int offset) {
+        if (offset == 0 && count == value.length) {
+            org.lwjgl.opengl.GL20.glUniform1fv(location, value);
+        } else {
+            org.lwjgl.opengl.GL20.glUniform1fv(location, Arrays.copyOfRange(value, offset, offset + count));
+        }
+    }
+
+    @Override
+    public int GL_FRAMEBUFFER() {
+        return org.lwjgl.opengl.GL30.GL_FRAMEBUFFER;
+    }
+
+    @Override
+    public int GL_FRAMEBUFFER_BINDING() {
+        return org.lwjgl.opengl.GL30.GL_FRAMEBUFFER_BINDING;
+    }
+
+    @Override
+    public int GL_FRAMEBUFFER_COMPLETE() {
+        return org.lwjgl.opengl.GL30.GL_FRAMEBUFFER_COMPLETE;
+    }
+
+    @Override
+    public int GL_COLOR_ATTACHMENT0() {
+        return org.lwjgl.opengl.GL30.GL_COLOR_ATTACHMENT0;
+    }
+
+    @Override
+    public void glGenFramebuffers(int[] handles) {
+        org.lwjgl.opengl.GL30.glGenFramebuffers(handles);
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int[] handles) {
+        org.lwjgl.opengl.GL30.glDeleteFramebuffers(handles);
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+        org.lwjgl.opengl.GL30.glBindFramebuffer(target, framebuffer);
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+        org.lwjgl.opengl.GL30.glFramebufferTexture2D(target, attachment, textarget, texture, level);
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        return org.lwjgl.opengl.GL30.glCheckFramebufferStatus(target);
+    }
+
+    @Override
+    public int GL_READ_FRAMEBUFFER() {
+        return org.lwjgl.opengl.GL30.GL_READ_FRAMEBUFFER;
+    }
+
+    @Override
+    public int GL_DRAW_FRAMEBUFFER() {
+        return org.lwjgl.opengl.GL30.GL_DRAW_FRAMEBUFFER;
+    }
+
+    @Override
+    public void glBlitFramebuffer(int srcX0, int srcY0, int srcX1, int srcY1, int dstX0, int dstY0, int dstX1, int dstY1, int mask, int filter) {
+        org.lwjgl.opengl.GL30.glBlitFramebuffer(srcX0, srcY0, srcX1, srcY1, dstX0, dstY0, dstX1, dstY1, mask, filter);
+    }
+
     @Override
     public int GL_GEOMETRY_INPUT_TYPE() {
         return org.lwjgl.opengl.GL32.GL_GEOMETRY_INPUT_TYPE;
@@ -34,4 +34,19 @@ public class LWGL3 extends LWGL2GL3 implements GL3 {
     public int GL_RED() {
         return org.lwjgl.opengl.GL31.GL_RED;
     }
+
+    @Override
+    public int GL_R8() {
+        return org.lwjgl.opengl.GL30.GL_R8;
+    }
+
+    @Override
+    public int GL_TEXTURE_SWIZZLE_G() {
+        return org.lwjgl.opengl.GL33.GL_TEXTURE_SWIZZLE_G;
+    }
+
+    @Override
+    public int GL_TEXTURE_SWIZZLE_B() {
+        return org.lwjgl.opengl.GL33.GL_TEXTURE_SWIZZLE_B;
+    }
 }
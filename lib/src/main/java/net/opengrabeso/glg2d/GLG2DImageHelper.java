@@ -38,4 +38,25 @@ public interface GLG2DImageHelper extends G2DDrawingHelper {
     void drawImage(RenderedImage img, AffineTransform xform);
 
     void drawImage(RenderableImage img, AffineTransform xform);
-}
\ No newline at end of file
+
+    /**
+     * Marks the whole cached texture of {@code img} as stale. The texture is
+     * re-uploaded the next time the image is drawn. Does nothing if the image
+     * hasn't been drawn yet.
+     */
+    void markDirty(Image img);
+
+    /**
+     * Marks a region of the cached texture of {@code img} as stale. Only the
+     * union of the dirty regions is re-uploaded the next time the image is
+     * drawn.
+     */
+    void markDirty(Image img, int x, int y, int width, int height);
+
+    /**
+     * Uploads the texture of {@code img} unless it's cached already, so that
+     * the first draw doesn't have to. Returns false if the image can't be
+     * uploaded ahead, such as when it's not loaded yet.
+     */
+    boolean preload(Image img);
+}
@@ -60,4 +60,113 @@ public class GLG2DRenderingHints {
                     val instanceof Integer;
         }
     };
+
+    /**
+     * Never inspect the contents of cached images, only re-upload them after
+     * {@link GLG2DImageHelper#markDirty(java.awt.Image)}.
+     */
+    public static final Object VALUE_IMAGE_CHANGE_DETECTION_OFF = new Object();
+
+    /**
+     * Compare a cheap content stamp of small images each time they are drawn
+     * and re-upload the texture when the stamp changes.
+     */
+    public static final Object VALUE_IMAGE_CHANGE_DETECTION_ON = new Object();
+
+    /**
+     * Use the default image change detection policy.
+     */
+    public static final Object VALUE_IMAGE_CHANGE_DETECTION_DEFAULT = VALUE_IMAGE_CHANGE_DETECTION_OFF;
+
+    /**
+     * Specifies whether cached textures of small images should be checked for
+     * modified content. Images mutated by the application can always be marked
+     * stale explicitly using {@link GLG2DImageHelper#markDirty(java.awt.Image)}.
+     * Values can be one of
+     *
+     * <ul>
+     * <li>{@link #VALUE_IMAGE_CHANGE_DETECTION_DEFAULT}</li>
+     * <li>{@link #VALUE_IMAGE_CHANGE_DETECTION_OFF}</li>
+     * <li>{@link #VALUE_IMAGE_CHANGE_DETECTION_ON}</li>
+     * </ul>
+     */
+    public static final Key KEY_IMAGE_CHANGE_DETECTION = new RenderingHints.Key(keyId++) {
+        public boolean isCompatibleValue(Object val) {
+            return val == VALUE_IMAGE_CHANGE_DETECTION_DEFAULT ||
+                    val == VALUE_IMAGE_CHANGE_DETECTION_OFF ||
+                    val == VALUE_IMAGE_CHANGE_DETECTION_ON;
+        }
+    };
+
+    /**
+     * Draw text from glyph bitmaps rasterized for each font size.
+     */
+    public static final Object VALUE_TEXT_DISTANCE_FIELD_OFF = new Object();
+
+    /**
+     * Draw text from signed distance fields of the glyphs, which are shared
+     * by all sizes of a font and stay sharp when scaled or rotated.
+     */
+    public static final Object VALUE_TEXT_DISTANCE_FIELD_ON = new Object();
+
+    /**
+     * Use the default text rendering mode.
+     */
+    public static final Object VALUE_TEXT_DISTANCE_FIELD_DEFAULT = VALUE_TEXT_DISTANCE_FIELD_OFF;
+
+    /**
+     * Specifies whether text should be drawn from signed distance fields. They
+     * save atlas space and rasterization when text is drawn in many sizes or
+     * animated scales, but small text loses the hinting of the bitmaps. Values
+     * can be one of
+     *
+     * <ul>
+     * <li>{@link #VALUE_TEXT_DISTANCE_FIELD_DEFAULT}</li>
+     * <li>{@link #VALUE_TEXT_DISTANCE_FIELD_OFF}</li>
+     * <li>{@link #VALUE_TEXT_DISTANCE_FIELD_ON}</li>
+     * </ul>
+     */
+    public static final Key KEY_TEXT_DISTANCE_FIELD = new RenderingHints.Key(keyId++) {
+        public boolean isCompatibleValue(Object val) {
+            return val == VALUE_TEXT_DISTANCE_FIELD_DEFAULT ||
+                    val == VALUE_TEXT_DISTANCE_FIELD_OFF ||
+                    val == VALUE_TEXT_DISTANCE_FIELD_ON;
+        }
+    };
+
+    /**
+     * Render each font size with its own glyph bitmaps.
+     */
+    public static final Object VALUE_TEXT_SIZE_SNAPPING_OFF = new Object();
+
+    /**
+     * Render fractional font sizes with the glyph bitmaps of the nearest whole
+     * size, scaled to fit.
+     */
+    public static final Object VALUE_TEXT_SIZE_SNAPPING_ON = new Object();
+
+    /**
+     * Use the default font size snapping policy.
+     */
+    public static final Object VALUE_TEXT_SIZE_SNAPPING_DEFAULT = VALUE_TEXT_SIZE_SNAPPING_OFF;
+
+    /**
+     * Specifies whether fonts of nearly the same size should share glyph
+     * bitmaps. Applications deriving fonts of arbitrary sizes, when zooming or
+     * animating, otherwise rasterize and cache every glyph again for each size.
+     * Snapped text is slightly blurred by the scaling. Values can be one of
+     *
+     * <ul>
+     * <li>{@link #VALUE_TEXT_SIZE_SNAPPING_DEFAULT}</li>
+     * <li>{@link #VALUE_TEXT_SIZE_SNAPPING_OFF}</li>
+     * <li>{@link #VALUE_TEXT_SIZE_SNAPPING_ON}</li>
+     * </ul>
+     */
+    public static final Key KEY_TEXT_SIZE_SNAPPING = new RenderingHints.Key(keyId++) {
+        public boolean isCompatibleValue(Object val) {
+            return val == VALUE_TEXT_SIZE_SNAPPING_DEFAULT ||
+                    val == VALUE_TEXT_SIZE_SNAPPING_OFF ||
+                    val == VALUE_TEXT_SIZE_SNAPPING_ON;
+        }
+    };
 }
@@ -43,6 +43,16 @@ public class GLG2DSimpleEventListener implements GLEventListener {
      */
     protected JComponent comp;
 
+    /**
+     * The resources loaded before painting each frame, or null.
+     */
+    protected GLG2DWarmUp warmUp;
+
+    /**
+     * The time per frame spent on {@link #warmUp}, in nanoseconds.
+     */
+    protected long warmUpBudget;
+
     public GLG2DSimpleEventListener(JComponent component) {
         if (component == null) {
             throw new NullPointerException("component is null");
@@ -51,9 +61,22 @@ public class GLG2DSimpleEventListener implements GLEventListener {
         this.comp = component;
     }
 
+    /**
+     * Loads the resources of the warm-up with the given time budget per frame,
+     * until it's done. Frames are painted as usual meanwhile, make sure to
+     * request them.
+     */
+    public void setWarmUp(GLG2DWarmUp warmUp, long budgetNanos) {
+        this.warmUp = warmUp;
+        this.warmUpBudget = budgetNanos;
+    }
+
     @Override
     public void display(GLAutoDrawable drawable) {
         prePaint(drawable);
+        if (warmUp != null && warmUp.step(g2d, warmUpBudget)) {
+            warmUp = null;
+        }
         paintGL(g2d);
         postPaint(drawable);
     }
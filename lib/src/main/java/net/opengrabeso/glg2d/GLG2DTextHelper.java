@@ -18,6 +18,7 @@ package net.opengrabeso.glg2d;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
 import java.text.AttributedCharacterIterator;
 
 public interface GLG2DTextHelper extends G2DDrawingHelper {
@@ -36,4 +37,20 @@ public interface GLG2DTextHelper extends G2DDrawingHelper {
     void drawString(String string, float x, float y);
 
     void drawString(String string, int x, int y);
+
+    void drawGlyphVector(GlyphVector glyphs, float x, float y);
+
+    /**
+     * Prepares drawing the characters in {@code font} with the current
+     * rendering hints, such as by rasterizing their glyphs, so that drawing
+     * them later is faster. Nothing is drawn.
+     */
+    void preload(Font font, CharSequence chars);
+
+    /**
+     * Draws any text which was collected but not drawn yet. This is called
+     * before every other drawing operation and before changes of the GL state
+     * the text depends on, such as the clip or the composite.
+     */
+    void flush();
 }
\ No newline at end of file
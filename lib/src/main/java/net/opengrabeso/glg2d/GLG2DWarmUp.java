@@ -0,0 +1,183 @@
+/*
+ * Copyright 2015 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.opengrabeso.glg2d;
+
+import java.awt.Font;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+/**
+ * Loads the resources a screen needs before it's shown, so that its first
+ * frame doesn't stall on rasterizing glyphs and uploading textures. The glyphs
+ * of the declared fonts and characters and the declared images are loaded a
+ * few at a time by {@link #step}, called once per frame until it returns true.
+ *
+ * <p>
+ * {@code step} must be called between {@link GLGraphics2D#prePaint} and
+ * {@link GLGraphics2D#postPaint}. {@code prePaint} itself sets up the shader
+ * pipelines of all the helpers, so calling it once is enough for them. The
+ * glyphs are rasterized with the transform and the rendering hints set at the
+ * time, plus the ones given to {@link #setRenderingHints}. Nothing is drawn.
+ * </p>
+ *
+ * <p>
+ * The caches still evict under their budgets, so declaring more than fits them
+ * evicts some of what was loaded before.
+ * </p>
+ */
+public class GLG2DWarmUp {
+    /**
+     * The printable ASCII characters, loaded by {@link #addFont(Font)}.
+     */
+    public static final String ASCII_CHARACTERS;
+
+    static {
+        StringBuilder chars = new StringBuilder();
+        for (char c = ' '; c <= '~'; c++) {
+            chars.append(c);
+        }
+
+        ASCII_CHARACTERS = chars.toString();
+    }
+
+    /**
+     * How many characters are loaded between checks of the time budget.
+     */
+    protected static final int CHARACTERS_PER_TASK = 16;
+
+    protected final Deque<Task> tasks = new ArrayDeque<Task>();
+
+    protected Map<?, ?> hints;
+
+    protected int failedImages;
+
+    /**
+     * Declares the printable ASCII characters of the font.
+     */
+    public GLG2DWarmUp addFont(Font font) {
+        return addFont(font, ASCII_CHARACTERS);
+    }
+
+    /**
+     * Declares characters of the font, as drawn with
+     * {@link GLGraphics2D#drawString(String, float, float)}.
+     */
+    public GLG2DWarmUp addFont(final Font font, CharSequence chars) {
+        int start = 0;
+        while (start < chars.length()) {
+            int end = start;
+            for (int i = 0; i < CHARACTERS_PER_TASK && end < chars.length(); i++) {
+                end += Character.charCount(Character.codePointAt(chars, end));
+            }
+
+            final String chunk = chars.subSequence(start, end).toString();
+            tasks.add(new Task() {
+                @Override
+                public void run(GLGraphics2D g2d) {
+                    g2d.getStringHelper().preload(font, chunk);
+                }
+            });
+            start = end;
+        }
+
+        return this;
+    }
+
+    /**
+     * Declares an image to upload. Images too large for a single texture and
+     * images not loaded by the time they come up are left to be uploaded when
+     * drawn, see {@link #getFailedImageCount}.
+     */
+    public GLG2DWarmUp addImage(final Image image) {
+        tasks.add(new Task() {
+            @Override
+            public void run(GLGraphics2D g2d) {
+                if (!g2d.getImageHelper().preload(image)) {
+                    failedImages++;
+                }
+            }
+        });
+
+        return this;
+    }
+
+    /**
+     * Sets rendering hints to load the glyphs with, such as
+     * {@link RenderingHints#KEY_TEXT_ANTIALIASING}, if the screen draws its
+     * text with hints other than the defaults. They are applied only while
+     * loading, or null for none.
+     */
+    public void setRenderingHints(Map<?, ?> hints) {
+        this.hints = hints;
+    }
+
+    /**
+     * Loads the declared resources until the time budget is used up, at least
+     * one font chunk or image. Returns true when everything is loaded.
+     */
+    public boolean step(GLGraphics2D g2d, long budgetNanos) {
+        if (tasks.isEmpty()) {
+            return true;
+        }
+
+        RenderingHints saved = null;
+        if (hints != null) {
+            saved = g2d.getRenderingHints();
+            g2d.addRenderingHints(hints);
+        }
+
+        try {
+            long start = System.nanoTime();
+            do {
+                tasks.poll().run(g2d);
+            } while (!tasks.isEmpty() && System.nanoTime() - start < budgetNanos);
+        } finally {
+            if (saved != null) {
+                g2d.setRenderingHints(saved);
+            }
+        }
+
+        return tasks.isEmpty();
+    }
+
+    public boolean isDone() {
+        return tasks.isEmpty();
+    }
+
+    /**
+     * Returns the number of font chunks and images left to load.
+     */
+    public int getRemainingCount() {
+        return tasks.size();
+    }
+
+    /**
+     * Returns the number of images which couldn't be uploaded ahead.
+     */
+    public int getFailedImageCount() {
+        return failedImages;
+    }
+
+    /**
+     * A unit of loading, small enough to check the time budget after it.
+     */
+    protected interface Task {
+        void run(GLGraphics2D g2d);
+    }
+}
@@ -186,6 +186,10 @@ public class GLGraphics2D extends Graphics2D implements Cloneable {
         return shapeHelper;
     }
 
+    public GLG2DImageHelper getImageHelper() {
+        return imageHelper;
+    }
+
     public GLG2DTextHelper getStringHelper() {
         return stringHelper;
     }
@@ -229,6 +233,7 @@ public class GLGraphics2D extends Graphics2D implements Cloneable {
     }
 
     public void postPaint() {
+        stringHelper.flush();
         disableComplexClip();
         // could glFlush here, but not necessary
     }
@@ -249,6 +254,7 @@ public class GLGraphics2D extends Graphics2D implements Cloneable {
 
     @Override
     public void draw(Shape s) {
+        stringHelper.flush();
         shapeHelper.draw(s);
     }
 
@@ -274,11 +280,12 @@ public class GLGraphics2D extends Graphics2D implements Cloneable {
 
     @Override
     public void drawGlyphVector(GlyphVector g, float x, float y) {
-        shapeHelper.fill(g.getOutline(x, y));
+        stringHelper.drawGlyphVector(g, x, y);
     }
 
     @Override
     public void fill(Shape s) {
+        stringHelper.flush();
         shapeHelper.fill(s);
     }
 
@@ -312,6 +319,7 @@ public class GLGraphics2D extends Graphics2D implements Cloneable {
 
     @Override
     public void setComposite(Composite comp) {
+        stringHelper.flush();
         colorHelper.setComposite(comp);
     }
 
@@ -450,11 +458,13 @@ public class GLGraphics2D extends Graphics2D implements Cloneable {
 
     @Override
     public void setPaintMode() {
+        stringHelper.flush();
         colorHelper.setPaintMode();
     }
 
     @Override
     public void setXORMode(Color c) {
+        stringHelper.flush();
         colorHelper.setXORMode(c);
     }
 
@@ -570,6 +580,7 @@ public class GLGraphics2D extends Graphics2D implements Cloneable {
     }
 
     protected void scissor(boolean enable) {
+        stringHelper.flush();
         GL gl = getGL();
         if (enable) {
             gl.glScissor(clip.x, canvasHeight - clip.y - clip.height, Math.max(clip.width, 0), Math.max(clip.height, 0));
@@ -582,6 +593,7 @@ public class GLGraphics2D extends Graphics2D implements Cloneable {
 
     // Complex clip using stencil buffer
     protected void enableComplexClip(Shape shape) {
+        stringHelper.flush();
         GL gl = getGL();
         // disable rectangular scissor if active
         gl.glDisable(gl.GL_SCISSOR_TEST());
@@ -607,6 +619,7 @@ public class GLGraphics2D extends Graphics2D implements Cloneable {
 
     protected void disableComplexClip() {
         if (clipComplex != null) {
+            stringHelper.flush();
             GL gl = getGL();
 
             // clear the stencil after us to avoid artifacts
@@ -624,16 +637,19 @@ public class GLGraphics2D extends Graphics2D implements Cloneable {
 
     @Override
     public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+        stringHelper.flush();
         colorHelper.copyArea(x, y, width, height, dx, dy);
     }
 
     @Override
     public void drawLine(int x1, int y1, int x2, int y2) {
+        stringHelper.flush();
         shapeHelper.drawLine(x1, y1, x2, y2);
     }
 
     @Override
     public void fillRect(int x, int y, int width, int height) {
+        stringHelper.flush();
         shapeHelper.drawRect(x, y, width, height, true);
     }
 
@@ -647,102 +663,122 @@ public class GLGraphics2D extends Graphics2D implements Cloneable {
 
     @Override
     public void drawRect(int x, int y, int width, int height) {
+        stringHelper.flush();
         shapeHelper.drawRect(x, y, width, height, false);
     }
 
     @Override
     public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        stringHelper.flush();
         shapeHelper.drawRoundRect(x, y, width, height, arcWidth, arcHeight, false);
     }
 
     @Override
     public void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        stringHelper.flush();
         shapeHelper.drawRoundRect(x, y, width, height, arcWidth, arcHeight, true);
     }
 
     @Override
     public void drawOval(int x, int y, int width, int height) {
+        stringHelper.flush();
         shapeHelper.drawOval(x, y, width, height, false);
     }
 
     @Override
     public void fillOval(int x, int y, int width, int height) {
+        stringHelper.flush();
         shapeHelper.drawOval(x, y, width, height, true);
     }
 
     @Override
     public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+        stringHelper.flush();
         shapeHelper.drawArc(x, y, width, height, startAngle, arcAngle, false);
     }
 
     @Override
     public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+        stringHelper.flush();
         shapeHelper.drawArc(x, y, width, height, startAngle, arcAngle, true);
     }
 
     @Override
     public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints) {
+        stringHelper.flush();
         shapeHelper.drawPolyline(xPoints, yPoints, nPoints);
     }
 
     @Override
     public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+        stringHelper.flush();
         shapeHelper.drawPolygon(xPoints, yPoints, nPoints, false);
     }
 
     @Override
     public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+        stringHelper.flush();
         shapeHelper.drawPolygon(xPoints, yPoints, nPoints, true);
     }
 
     @Override
     public boolean drawImage(Image img, AffineTransform xform, ImageObserver obs) {
+        stringHelper.flush();
         return imageHelper.drawImage(img, xform, obs);
     }
 
     @Override
     public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
+        stringHelper.flush();
         imageHelper.drawImage(img, op, x, y);
     }
 
     @Override
     public void drawRenderedImage(RenderedImage img, AffineTransform xform) {
+        stringHelper.flush();
         imageHelper.drawImage(img, xform);
     }
 
     @Override
     public void drawRenderableImage(RenderableImage img, AffineTransform xform) {
+        stringHelper.flush();
         imageHelper.drawImage(img, xform);
     }
 
     @Override
     public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+        stringHelper.flush();
         return imageHelper.drawImage(img, x, y, null, observer);
     }
 
     @Override
     public boolean drawImage(Image img, int x, int y, Color bgcolor, ImageObserver observer) {
+        stringHelper.flush();
         return imageHelper.drawImage(img, x, y, bgcolor, observer);
     }
 
     @Override
     public boolean drawImage(Image img, int x, int y, int width, int height, ImageObserver observer) {
+        stringHelper.flush();
         return imageHelper.drawImage(img, x, y, width, height, null, observer);
     }
 
     @Override
     public boolean drawImage(Image img, int x, int y, int width, int height, Color bgcolor, ImageObserver observer) {
+        stringHelper.flush();
         return imageHelper.drawImage(img, x, y, width, height, bgcolor, observer);
     }
 
     @Override
     public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, ImageObserver observer) {
+        stringHelper.flush();
         return imageHelper.drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null, observer);
     }
 
     @Override
     public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, Color bgcolor,
                              ImageObserver observer) {
+        stringHelper.flush();
         return imageHelper.drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, bgcolor, observer);
     }
 
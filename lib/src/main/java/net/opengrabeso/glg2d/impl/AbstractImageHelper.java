@@ -16,20 +16,28 @@
 package net.opengrabeso.glg2d.impl;
 
 import static net.opengrabeso.glg2d.GLG2DRenderingHints.KEY_CLEAR_TEXTURES_CACHE;
+import static net.opengrabeso.glg2d.GLG2DRenderingHints.KEY_IMAGE_CHANGE_DETECTION;
 import static net.opengrabeso.glg2d.GLG2DRenderingHints.VALUE_CLEAR_TEXTURES_CACHE_DEFAULT;
 import static net.opengrabeso.glg2d.GLG2DRenderingHints.VALUE_CLEAR_TEXTURES_CACHE_EACH_PAINT;
+import static net.opengrabeso.glg2d.GLG2DRenderingHints.VALUE_IMAGE_CHANGE_DETECTION_DEFAULT;
+import static net.opengrabeso.glg2d.GLG2DRenderingHints.VALUE_IMAGE_CHANGE_DETECTION_ON;
 import static net.opengrabeso.glg2d.impl.GLG2DNotImplemented.notImplemented;
 
 import java.awt.Color;
 import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.RenderingHints.Key;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.*;
 import java.awt.image.renderable.RenderableImage;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -46,14 +54,73 @@ import net.opengrabeso.opengl.util.texture.TextureData;
 public abstract class AbstractImageHelper implements GLG2DImageHelper {
     private static final Logger LOGGER = Logger.getLogger(AbstractImageHelper.class.getName());
 
+    /**
+     * Images with more samples than this are never stamped, see
+     * {@link GLG2DRenderingHints#KEY_IMAGE_CHANGE_DETECTION}.
+     */
+    protected static final int MAX_STAMPED_IMAGE_SAMPLES = 256 * 256;
+
+    /**
+     * Images larger than the maximum texture size are split into tiles at most
+     * this big, not counting {@link TiledTexture#TILE_BORDER}.
+     */
+    protected static final int MAX_TILE_SIZE = 1024;
+
+    /**
+     * Tiles of large images that weren't drawn during this many paints are
+     * destroyed.
+     */
+    protected static final int TILE_RETENTION_PAINTS = 30;
+
     /**
      * See {@link GLG2DRenderingHints#KEY_CLEAR_TEXTURES_CACHE}
      */
     protected TextureCache imageCache = new TextureCache();
+
+    /**
+     * Images which don't fit into a single texture, and all
+     * {@code RenderedImage}s which aren't {@code Image}s.
+     */
+    protected TiledTextureCache tiledCache = new TiledTextureCache();
+
     protected Object clearCachePolicy;
 
+    /**
+     * See {@link GLG2DRenderingHints#KEY_IMAGE_CHANGE_DETECTION}
+     */
+    protected Object changeDetectionPolicy;
+
+    /**
+     * The value of {@link RenderingHints#KEY_INTERPOLATION}.
+     */
+    protected Object interpolation;
+
+    /**
+     * How much the source rectangle is scaled to the destination rectangle,
+     * for draws where this isn't part of the transform passed to
+     * {@link #begin(Texture, AffineTransform, Color)}.
+     */
+    protected double sourceScale = 1;
+
     protected GLGraphics2D g2d;
 
+    protected int maxTextureSize;
+
+    protected boolean mipmapSupported;
+
+    /**
+     * Whether gray images can be stored with one byte per pixel. Core
+     * profiles need texture swizzling to spread the red channel to green and
+     * blue.
+     */
+    protected boolean singleChannelSupported;
+
+    /**
+     * Incremented on every paint, used to find tiles which are no longer
+     * visible.
+     */
+    protected long paintCount;
+
     protected abstract void begin(Texture texture, AffineTransform xform, Color bgcolor);
 
     protected abstract void applyTexture(Texture texture, int dx1, int dy1, int dx2, int dy2,
@@ -65,9 +132,21 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
     public void setG2D(GLGraphics2D g2d) {
         this.g2d = g2d;
 
+        if (maxTextureSize == 0) {
+            GL gl = g2d.getGL();
+            int[] size = new int[1];
+            gl.glGetIntegerv(gl.GL_MAX_TEXTURE_SIZE(), size);
+            maxTextureSize = size[0];
+            mipmapSupported = gl.versionAtLeast(3, 0) || gl.isExtensionAvailable("GL_ARB_framebuffer_object");
+            singleChannelSupported = !gl.isGL3() || gl.versionAtLeast(3, 3) || gl.isExtensionAvailable("GL_ARB_texture_swizzle");
+        }
+
         if (clearCachePolicy == VALUE_CLEAR_TEXTURES_CACHE_EACH_PAINT) {
             imageCache.clear();
         }
+
+        paintCount++;
+        tiledCache.evict(paintCount - TILE_RETENTION_PAINTS);
     }
 
     @Override
@@ -84,17 +163,63 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
     public void setHint(Key key, Object value) {
         if (key == KEY_CLEAR_TEXTURES_CACHE) {
             clearCachePolicy = value;
+        } else if (key == KEY_IMAGE_CHANGE_DETECTION) {
+            changeDetectionPolicy = value;
+        } else if (key == RenderingHints.KEY_INTERPOLATION) {
+            interpolation = value;
         }
     }
 
     @Override
     public void resetHints() {
         clearCachePolicy = VALUE_CLEAR_TEXTURES_CACHE_DEFAULT;
+        changeDetectionPolicy = VALUE_IMAGE_CHANGE_DETECTION_DEFAULT;
+        interpolation = RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR;
     }
 
     @Override
     public void dispose() {
         imageCache.clear();
+        tiledCache.clear();
+    }
+
+    @Override
+    public void markDirty(Image img) {
+        CachedTexture cached = imageCache.get(img);
+        if (cached != null) {
+            cached.addDirtyRegion(0, 0, cached.texture.getImageWidth(), cached.texture.getImageHeight());
+        }
+
+        TiledTexture tiled = tiledCache.get(img);
+        if (tiled != null) {
+            tiled.addDirtyRegion(tiled.getBounds());
+        }
+    }
+
+    @Override
+    public void markDirty(Image img, int x, int y, int width, int height) {
+        CachedTexture cached = imageCache.get(img);
+        if (cached != null) {
+            cached.addDirtyRegion(x, y, width, height);
+        }
+
+        TiledTexture tiled = tiledCache.get(img);
+        if (tiled != null) {
+            tiled.addDirtyRegion(new Rectangle(x, y, width, height));
+        }
+    }
+
+    /**
+     * Images too large for a single texture are uploaded tile by tile as the
+     * tiles are drawn, and are not preloaded.
+     */
+    @Override
+    public boolean preload(Image img) {
+        if (isTooLarge(img)) {
+            return false;
+        }
+
+        return getTexture(img, null) != null;
     }
 
     @Override
@@ -124,6 +249,19 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
     @Override
     public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2,
                              int sy2, Color bgcolor, ImageObserver observer) {
+        if (isTooLarge(img)) {
+            if (sx1 == sx2 || sy1 == sy2) {
+                return true;
+            }
+
+            AffineTransform xform = AffineTransform.getTranslateInstance(dx1, dy1);
+            xform.scale((dx2 - dx1) / (double) (sx2 - sx1), (dy2 - dy1) / (double) (sy2 - sy1));
+            xform.translate(-sx1, -sy1);
+
+            Rectangle source = new Rectangle(Math.min(sx1, sx2), Math.min(sy1, sy2), Math.abs(sx2 - sx1), Math.abs(sy2 - sy1));
+            return drawTiled(img, xform, bgcolor, source);
+        }
+
         Texture texture = getTexture(img, observer);
         if (texture == null) {
             return false;
@@ -131,14 +269,23 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
 
         float height = texture.getHeight();
         float width = texture.getWidth();
+        if (sx1 != sx2 && sy1 != sy2) {
+            sourceScale = Math.min(Math.abs((dx2 - dx1) / (double) (sx2 - sx1)), Math.abs((dy2 - dy1) / (double) (sy2 - sy1)));
+        }
+
         begin(texture, null, bgcolor);
         applyTexture(texture, dx1, dy1, dx2, dy2, sx1 / width, sy1 / height, sx2 / width, sy2 / height);
         end(texture);
+        sourceScale = 1;
 
         return true;
     }
 
     protected boolean drawImage(Image img, AffineTransform xform, Color color, ImageObserver observer) {
+        if (isTooLarge(img)) {
+            return drawTiled(img, xform, color, null);
+        }
+
         Texture texture = getTexture(img, observer);
         if (texture == null) {
             return false;
@@ -159,6 +306,57 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
         applyTexture(texture, 0, 0, width, height, coords.left(), coords.top(), coords.right(), coords.bottom());
     }
 
+    /**
+     * Sets the filters of the bound texture according to
+     * {@link RenderingHints#KEY_INTERPOLATION}. Textures drawn smaller than
+     * their size get mipmaps, generated the first time they are needed.
+     * Returns {@code true} if the texture should be sampled with bicubic
+     * interpolation, which the texture unit can't do by itself. Bilinear
+     * filters are set in that case.
+     */
+    protected boolean setupFilter(Texture texture, AffineTransform xform) {
+        GL gl = g2d.getGL();
+        if (isNearestNeighbor()) {
+            texture.setFilter(gl, gl.GL_NEAREST(), gl.GL_NEAREST());
+            return false;
+        }
+
+        double scale = getDrawScale(xform);
+        if (scale < 1 && mipmapSupported) {
+            texture.generateMipmaps(gl);
+            texture.setFilter(gl, gl.GL_LINEAR_MIPMAP_LINEAR(), gl.GL_LINEAR());
+        } else {
+            texture.setFilter(gl, gl.GL_LINEAR(), gl.GL_LINEAR());
+        }
+
+        // minified bicubic doesn't look any better than mipmapped bilinear
+        return interpolation == RenderingHints.VALUE_INTERPOLATION_BICUBIC && scale >= 1;
+    }
+
+    /**
+     * Returns {@code true} unless {@link RenderingHints#KEY_INTERPOLATION} asks
+     * for smooth interpolation, Java2D uses nearest neighbor by default too.
+     */
+    protected boolean isNearestNeighbor() {
+        return interpolation != RenderingHints.VALUE_INTERPOLATION_BILINEAR &&
+                interpolation != RenderingHints.VALUE_INTERPOLATION_BICUBIC;
+    }
+
+    /**
+     * Returns the smaller of the scale factors the texture is drawn with,
+     * including the current transform.
+     */
+    protected double getDrawScale(AffineTransform xform) {
+        AffineTransform transform = g2d.getTransform();
+        if (xform != null) {
+            transform.concatenate(xform);
+        }
+
+        double scaleX = Math.hypot(transform.getScaleX(), transform.getShearY());
+        double scaleY = Math.hypot(transform.getShearX(), transform.getScaleY());
+        return Math.min(scaleX, scaleY) * sourceScale;
+    }
+
     /**
      * Cache the texture if possible. I have a feeling this will run into issues
      * later as images change. Just not sure how to handle it if they do. I
@@ -174,35 +372,180 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
      * </p>
      */
     protected Texture getTexture(Image image, ImageObserver observer) {
-        Texture texture = imageCache.get(image);
-        if (texture == null) {
-            BufferedImage bufferedImage;
-            if (image instanceof BufferedImage && ((BufferedImage) image).getType() != BufferedImage.TYPE_CUSTOM) {
-                bufferedImage = (BufferedImage) image;
-            } else {
-                bufferedImage = toBufferedImage(image);
+        CachedTexture cached = imageCache.get(image);
+        if (cached == null) {
+            BufferedImage bufferedImage = asBufferedImage(image);
+            if (bufferedImage == null) {
+                return null;
+            }
+
+            cached = addToCache(image, create(bufferedImage));
+            if (isStamped(image)) {
+                cached.contentStamp = contentStamp((BufferedImage) image);
             }
 
-            if (bufferedImage != null) {
-                texture = create(bufferedImage);
-                addToCache(image, texture);
+            return cached.texture;
+        }
+
+        if (isStamped(image)) {
+            int stamp = contentStamp((BufferedImage) image);
+            if (stamp != cached.contentStamp) {
+                cached.contentStamp = stamp;
+                cached.addDirtyRegion(0, 0, cached.texture.getImageWidth(), cached.texture.getImageHeight());
+            }
+        }
+
+        if (cached.dirtyRegion != null) {
+            Rectangle region = cached.dirtyRegion.intersection(
+                    new Rectangle(0, 0, cached.texture.getImageWidth(), cached.texture.getImageHeight()));
+            cached.dirtyRegion = null;
+
+            BufferedImage bufferedImage;
+            if (!region.isEmpty() && (bufferedImage = asBufferedImage(image)) != null) {
+                update(cached.texture, bufferedImage, region);
             }
         }
 
-        return texture;
+        return cached.texture;
+    }
+
+    protected BufferedImage asBufferedImage(Image image) {
+        if (image instanceof BufferedImage && ((BufferedImage) image).getType() != BufferedImage.TYPE_CUSTOM) {
+            return (BufferedImage) image;
+        } else {
+            return toBufferedImage(image);
+        }
     }
 
     protected Texture create(BufferedImage image) {
+        GL gl = g2d.getGL();
+        if (isSingleChannel(image)) {
+            TextureData data = toSingleChannelData(gl, image.getWidth(), image.getHeight(),
+                    toSamples(image, 0, 0, image.getWidth(), image.getHeight()));
+
+            if (isIndexed(image)) {
+                return new IndexedTexture(gl, data, createPalette((IndexColorModel) image.getColorModel()));
+            }
+
+            Texture texture = new Texture(gl, data);
+            if (gl.isGL3()) {
+                texture.setTexParameteri(gl, gl.getGL3().GL_TEXTURE_SWIZZLE_G(), gl.getGL3().GL_RED());
+                texture.setTexParameteri(gl, gl.getGL3().GL_TEXTURE_SWIZZLE_B(), gl.getGL3().GL_RED());
+            }
+            return texture;
+        }
+
+        TextureData data = new TextureData(
+                gl.GL_RGBA(), image.getWidth(), image.getHeight(), 0, gl.GL_RGBA(), gl.GL_UNSIGNED_BYTE(),
+                false, true, toRGBA(image, 0, 0, image.getWidth(), image.getHeight()), null
+        );
+        return new Texture(gl, data);
+        // we'll assume the image is complete and can be rendered
+        //return AWTTextureIO.newTexture(g2d.getGLContext().getGL().getGLProfile(), image, false);
+    }
+
+    /**
+     * Uploads the given region of {@code image} into the existing texture. The
+     * texture keeps its size and GL object, only the modified texels are sent to
+     * the video card.
+     */
+    protected void update(Texture texture, BufferedImage image, Rectangle region) {
+        GL gl = g2d.getGL();
+        TextureData data;
+        if (isSingleChannel(image)) {
+            data = toSingleChannelData(gl, region.width, region.height,
+                    toSamples(image, region.x, region.y, region.width, region.height));
+        } else {
+            data = new TextureData(
+                    gl.GL_RGBA(), region.width, region.height, 0, gl.GL_RGBA(), gl.GL_UNSIGNED_BYTE(),
+                    false, true, toRGBA(image, region.x, region.y, region.width, region.height), null
+            );
+        }
+        texture.updateSubImage(gl, data, 0, region.x, region.y, 0, 0, region.width, region.height);
+    }
+
+    /**
+     * Returns {@code true} if the image is stored with one byte per pixel,
+     * either gray values or palette indices.
+     */
+    protected boolean isSingleChannel(BufferedImage image) {
+        return (image.getType() == BufferedImage.TYPE_BYTE_GRAY && singleChannelSupported) ||
+                (isIndexed(image) && isPaletteSupported());
+    }
+
+    protected boolean isIndexed(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        return image.getColorModel() instanceof IndexColorModel &&
+                raster.getNumBands() == 1 && raster.getTransferType() == DataBuffer.TYPE_BYTE;
+    }
+
+    /**
+     * Returns {@code true} if {@link IndexedTexture}s can be drawn. The palette
+     * is resolved in a shader, so it's not supported by default.
+     */
+    protected boolean isPaletteSupported() {
+        return false;
+    }
+
+    protected TextureData toSingleChannelData(GL gl, int width, int height, ByteBuffer samples) {
+        int format = gl.isGL3() ? gl.getGL3().GL_RED() : gl.getGL2().GL_LUMINANCE();
+        int internalFormat = gl.isGL3() ? gl.getGL3().GL_R8() : format;
+        return new TextureData(
+                internalFormat, width, height, 0, format, gl.GL_UNSIGNED_BYTE(),
+                false, true, samples, null
+        );
+    }
+
+    protected Texture createPalette(IndexColorModel colorModel) {
+        int[] colors = new int[colorModel.getMapSize()];
+        colorModel.getRGBs(colors);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 4);
+        for (int i = 0; i < 256; i++) {
+            int color = i < colors.length ? colors[i] : 0;
+            buffer.put((byte) ((color >> 16) & 0xFF));
+            buffer.put((byte) ((color >> 8) & 0xFF));
+            buffer.put((byte) (color & 0xFF));
+            buffer.put((byte) ((color >> 24) & 0xFF));
+        }
+
+        buffer.flip();
+
+        GL gl = g2d.getGL();
+        TextureData data = new TextureData(gl.GL_RGBA(), 256, 1, 0, gl.GL_RGBA(), gl.GL_UNSIGNED_BYTE(), false, false, buffer, null);
+        Texture palette = new Texture(gl, data);
+        palette.setFilter(gl, gl.GL_NEAREST(), gl.GL_NEAREST());
+        return palette;
+    }
+
+    /**
+     * Copies a region of a single band byte image, one byte per pixel, rows
+     * ordered from the top of the image. Packed pixels of
+     * {@code TYPE_BYTE_BINARY} images are expanded.
+     */
+    protected ByteBuffer toSamples(BufferedImage image, int x, int y, int width, int height) {
+        byte[] samples = (byte[]) image.getRaster().getDataElements(x, y, width, height, null);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(samples.length);
+        buffer.put(samples);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Converts a region of the image to tightly packed RGBA bytes, rows ordered
+     * from the top of the image.
+     */
+    protected ByteBuffer toRGBA(BufferedImage image, int x, int y, int width, int height) {
 
         //from https://stackoverflow.com/a/59858058/16673
 
-        int[] pixels = new int[image.getWidth() * image.getHeight()];
-        image.getRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
-        ByteBuffer buffer = ByteBuffer.allocateDirect(image.getWidth() * image.getHeight() * 4);
+        int[] pixels = new int[width * height];
+        image.getRGB(x, y, width, height, pixels, 0, width);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(width * height * 4);
 
-        for (int h = 0; h < image.getHeight(); h++) {
-            for (int w = 0; w < image.getWidth(); w++) {
-                int pixel = pixels[h * image.getWidth() + w];
+        for (int h = 0; h < height; h++) {
+            for (int w = 0; w < width; w++) {
+                int pixel = pixels[h * width + w];
 
                 buffer.put((byte) ((pixel >> 16) & 0xFF));
                 buffer.put((byte) ((pixel >> 8) & 0xFF));
@@ -212,22 +555,57 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
         }
 
         buffer.flip();
+        return buffer;
+    }
 
-        GL gl = g2d.getGL();
-        TextureData data = new TextureData(
-                gl.GL_RGBA(), image.getWidth(), image.getHeight(), 0, gl.GL_RGBA(), gl.GL_UNSIGNED_BYTE(),
-                false, true, buffer, null
-        );
-        return new Texture(gl, data);
-        // we'll assume the image is complete and can be rendered
-        //return AWTTextureIO.newTexture(g2d.getGLContext().getGL().getGLProfile(), image, false);
+    /**
+     * Returns {@code true} if changes of the image should be detected by
+     * comparing content stamps. Only small images are stamped, because the
+     * stamp is computed every time the image is drawn.
+     */
+    protected boolean isStamped(Image image) {
+        if (changeDetectionPolicy != VALUE_IMAGE_CHANGE_DETECTION_ON || !(image instanceof BufferedImage)) {
+            return false;
+        }
+
+        DataBuffer buffer = ((BufferedImage) image).getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() <= MAX_STAMPED_IMAGE_SAMPLES;
+    }
+
+    /**
+     * Computes a hash of the samples backing the image. Reading the banks
+     * directly is much cheaper than converting the pixels with
+     * {@link BufferedImage#getRGB(int, int)}.
+     */
+    protected int contentStamp(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        int stamp = 1;
+        for (int bank = 0; bank < buffer.getNumBanks(); bank++) {
+            int bankStamp;
+            if (buffer instanceof DataBufferInt) {
+                bankStamp = Arrays.hashCode(((DataBufferInt) buffer).getData(bank));
+            } else if (buffer instanceof DataBufferByte) {
+                bankStamp = Arrays.hashCode(((DataBufferByte) buffer).getData(bank));
+            } else if (buffer instanceof DataBufferUShort) {
+                bankStamp = Arrays.hashCode(((DataBufferUShort) buffer).getData(bank));
+            } else if (buffer instanceof DataBufferShort) {
+                bankStamp = Arrays.hashCode(((DataBufferShort) buffer).getData(bank));
+            } else {
+                int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+                return Arrays.hashCode(pixels);
+            }
+
+            stamp = 31 * stamp + bankStamp;
+        }
+
+        return stamp;
     }
 
     protected void destroy(Texture texture) {
         texture.destroy(g2d.getGL());
     }
 
-    protected void addToCache(Image image, Texture texture) {
+    protected CachedTexture addToCache(Image image, Texture texture) {
         if (clearCachePolicy instanceof Number) {
             int maxSize = ((Number) clearCachePolicy).intValue();
             if (imageCache.size() > maxSize) {
@@ -239,7 +617,9 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
             }
         }
 
-        imageCache.put(image, texture);
+        CachedTexture cached = new CachedTexture(texture);
+        imageCache.put(image, cached);
+        return cached;
     }
 
     protected BufferedImage toBufferedImage(Image image) {
@@ -260,29 +640,284 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
 
     @Override
     public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
-        Texture texture = getTexture(img, null);
-        if (texture != null) {
-            AffineTransform transform = AffineTransform.getTranslateInstance(x, y);
-            Color bgcolor = null;
-            if (op instanceof RescaleOp) {
-                RescaleOp rescaleOp = (RescaleOp)op;
-                if (rescaleOp.getNumFactors() == 3) {
-                    float[] offsets = rescaleOp.getOffsets(null);
-                    float[] factors = rescaleOp.getScaleFactors(null);
-                    if (offsets[0] == 0 && offsets[1] == 0 && offsets[2] == 0) {
-                        bgcolor = new Color(factors[0], factors[1], factors[2]);
-                    }
+        AffineTransform transform = AffineTransform.getTranslateInstance(x, y);
+        if (op == null) {
+            drawImage(img, transform, (Color) null, null);
+            return;
+        }
+
+        if (!isTooLarge(img)) {
+            Texture texture = getTexture(img, null);
+            if (texture == null) {
+                return;
+            }
+
+            if (op instanceof AffineTransformOp) {
+                AffineTransformOp transformOp = (AffineTransformOp) op;
+                transform.concatenate(transformOp.getTransform());
+
+                // the op decides the interpolation, not the hint
+                Object hint = interpolation;
+                interpolation = toInterpolationHint(transformOp.getInterpolationType());
+                try {
+                    begin(texture, transform, null);
+                    applyTexture(texture);
+                    end(texture);
+                } finally {
+                    interpolation = hint;
                 }
+                return;
             }
-            begin(texture, transform, bgcolor);
-            applyTexture(texture);
-            end(texture);
+
+            if (drawImage(texture, img, op, transform)) {
+                return;
+            }
+        }
+
+        // no way to do it on the video card, filter on the CPU
+        BufferedImage filtered = op.filter(img, null);
+        drawUncached(filtered, transform);
+    }
+
+    /**
+     * Draws the texture with the op applied while drawing. Returns
+     * {@code false} if the op can't be applied this way.
+     */
+    protected boolean drawImage(Texture texture, BufferedImage img, BufferedImageOp op, AffineTransform xform) {
+        // the texture color can only be scaled, but that's enough for simple tints
+        if (op instanceof RescaleOp) {
+            RescaleOp rescaleOp = (RescaleOp) op;
+            if (rescaleOp.getNumFactors() == 3) {
+                float[] offsets = rescaleOp.getOffsets(null);
+                float[] factors = rescaleOp.getScaleFactors(null);
+                if (offsets[0] == 0 && offsets[1] == 0 && offsets[2] == 0 &&
+                        isUnitRange(factors[0]) && isUnitRange(factors[1]) && isUnitRange(factors[2])) {
+                    begin(texture, xform, new Color(factors[0], factors[1], factors[2]));
+                    applyTexture(texture);
+                    end(texture);
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static Object toInterpolationHint(int interpolationType) {
+        switch (interpolationType) {
+            case AffineTransformOp.TYPE_NEAREST_NEIGHBOR:
+                return RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR;
+            case AffineTransformOp.TYPE_BICUBIC:
+                return RenderingHints.VALUE_INTERPOLATION_BICUBIC;
+            default:
+                return RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+        }
+    }
+
+    private static boolean isUnitRange(float value) {
+        return value >= 0 && value <= 1;
+    }
+
+    /**
+     * Draws an image that's used only once, without adding it to the cache.
+     */
+    protected void drawUncached(BufferedImage img, AffineTransform xform) {
+        if (isTooLarge(img)) {
+            drawImage(img, xform, (Color) null, null);
+            return;
         }
+
+        Texture texture = create(img);
+        begin(texture, xform, null);
+        applyTexture(texture);
+        end(texture);
+        destroy(texture);
     }
 
     @Override
     public void drawImage(RenderedImage img, AffineTransform xform) {
-        notImplemented("drawImage(RenderedImage, AffineTransform)");
+        if (img instanceof Image) {
+            drawImage((Image) img, xform, (Color) null, null);
+            return;
+        }
+
+        TiledTexture tiled = tiledCache.get(img);
+        if (tiled == null) {
+            Rectangle bounds = new Rectangle(img.getMinX(), img.getMinY(), img.getWidth(), img.getHeight());
+            tiled = new TiledTexture(bounds, getTileSize());
+            tiledCache.put(img, tiled);
+        }
+
+        drawTiled(tiled, img, xform, null, tiled.getBounds());
+    }
+
+    protected boolean isTooLarge(Image img) {
+        return img.getWidth(null) > maxTextureSize || img.getHeight(null) > maxTextureSize;
+    }
+
+    protected int getTileSize() {
+        return Math.min(MAX_TILE_SIZE, maxTextureSize - 2 * TiledTexture.TILE_BORDER);
+    }
+
+    /**
+     * Draws an image which doesn't fit into a single texture. Only the
+     * {@code source} region of the image is drawn, or the whole image if it's
+     * {@code null}.
+     */
+    protected boolean drawTiled(Image img, AffineTransform xform, Color bgcolor, Rectangle source) {
+        TiledTexture tiled = tiledCache.get(img);
+        if (tiled == null) {
+            int width = img.getWidth(null);
+            int height = img.getHeight(null);
+            if (width < 0 || height < 0) {
+                return false;
+            }
+
+            tiled = new TiledTexture(new Rectangle(0, 0, width, height), getTileSize());
+            tiledCache.put(img, tiled);
+        } else if (tiled.getDirtyRegion() != null) {
+            tiled.setSnapshot(null);
+        }
+
+        RenderedImage rendered;
+        if (img instanceof RenderedImage) {
+            rendered = (RenderedImage) img;
+        } else {
+            // the snapshot must not reference the image, it would never be expunged
+            rendered = tiled.getSnapshot();
+            if (rendered == null) {
+                rendered = toBufferedImage(img);
+                if (rendered == null) {
+                    return false;
+                }
+
+                tiled.setSnapshot(rendered);
+            }
+        }
+
+        drawTiled(tiled, rendered, xform, bgcolor, source == null ? tiled.getBounds() : source);
+        return true;
+    }
+
+    /**
+     * Draws the tiles intersecting both {@code source} and the visible part of
+     * the canvas. Tiles which aren't resident are uploaded from {@code image}.
+     */
+    protected void drawTiled(TiledTexture tiled, RenderedImage image, AffineTransform xform, Color bgcolor, Rectangle source) {
+        if (tiled.getDirtyRegion() != null) {
+            tiled.invalidate(g2d.getGL(), tiled.getDirtyRegion());
+        }
+
+        Rectangle region = getVisibleRegion(xform).intersection(source).intersection(tiled.getBounds());
+        if (region.isEmpty()) {
+            return;
+        }
+
+        int maxColumn = tiled.getColumn(region.x + region.width - 1);
+        int maxRow = tiled.getRow(region.y + region.height - 1);
+        for (int row = tiled.getRow(region.y); row <= maxRow; row++) {
+            for (int column = tiled.getColumn(region.x); column <= maxColumn; column++) {
+                Rectangle textureBounds = tiled.getTextureBounds(column, row);
+                Texture tile = tiled.getTile(column, row);
+                if (tile == null) {
+                    tile = createTile(image, textureBounds);
+                    if (tile == null) {
+                        return;
+                    }
+
+                    tiled.setTile(column, row, tile);
+                }
+
+                tiled.markUsed(column, row, paintCount);
+
+                Rectangle part = tiled.getTileBounds(column, row).intersection(source);
+                float width = tile.getWidth();
+                float height = tile.getHeight();
+                begin(tile, xform, bgcolor);
+                applyTexture(tile, part.x, part.y, part.x + part.width, part.y + part.height,
+                        (part.x - textureBounds.x) / width, (part.y - textureBounds.y) / height,
+                        (part.x + part.width - textureBounds.x) / width, (part.y + part.height - textureBounds.y) / height);
+                end(tile);
+            }
+        }
+    }
+
+    protected Texture createTile(RenderedImage image, Rectangle region) {
+        ByteBuffer pixels = toRGBA(image, region);
+        if (pixels == null) {
+            return null;
+        }
+
+        GL gl = g2d.getGL();
+        TextureData data = new TextureData(
+                gl.GL_RGBA(), region.width, region.height, 0, gl.GL_RGBA(), gl.GL_UNSIGNED_BYTE(),
+                false, true, pixels, null
+        );
+        return new Texture(gl, data);
+    }
+
+    /**
+     * Converts a region of any {@code RenderedImage} to RGBA bytes. Only the
+     * image tiles intersecting the region are requested from the image.
+     */
+    protected ByteBuffer toRGBA(RenderedImage image, Rectangle region) {
+        if (image instanceof BufferedImage) {
+            return toRGBA((BufferedImage) image, region.x, region.y, region.width, region.height);
+        }
+
+        ColorModel colorModel = image.getColorModel();
+        if (colorModel == null) {
+            notImplemented("drawImage(RenderedImage, AffineTransform) without ColorModel");
+            return null;
+        }
+
+        WritableRaster raster = Raster.createWritableRaster(
+                image.getSampleModel().createCompatibleSampleModel(region.width, region.height), null);
+
+        int tileWidth = image.getTileWidth();
+        int tileHeight = image.getTileHeight();
+        int minTileX = Math.floorDiv(region.x - image.getTileGridXOffset(), tileWidth);
+        int maxTileX = Math.floorDiv(region.x + region.width - 1 - image.getTileGridXOffset(), tileWidth);
+        int minTileY = Math.floorDiv(region.y - image.getTileGridYOffset(), tileHeight);
+        int maxTileY = Math.floorDiv(region.y + region.height - 1 - image.getTileGridYOffset(), tileHeight);
+        for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+            for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                raster.setRect(-region.x, -region.y, image.getTile(tileX, tileY));
+            }
+        }
+
+        BufferedImage copy = new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+        return toRGBA(copy, 0, 0, region.width, region.height);
+    }
+
+    /**
+     * Returns the part of the canvas visible through the current clip, in the
+     * coordinates of an image drawn with {@code xform}.
+     */
+    protected Rectangle getVisibleRegion(AffineTransform xform) {
+        AffineTransform toImage = g2d.getTransform();
+        if (xform != null) {
+            toImage.concatenate(xform);
+        }
+
+        try {
+            Rectangle2D canvas = new Rectangle(0, 0, g2d.getCanvasWidth(), g2d.getCanvasHeight());
+            Rectangle2D visible = toImage.createInverse().createTransformedShape(canvas).getBounds2D();
+
+            Rectangle clip = g2d.getClipBounds();
+            if (clip != null) {
+                Rectangle2D imageClip = xform == null ? clip : xform.createInverse().createTransformedShape(clip).getBounds2D();
+                Rectangle2D.intersect(visible, imageClip, visible);
+            }
+
+            // include the neighbouring pixels used by filtering
+            Rectangle bounds = visible.getBounds();
+            bounds.grow(1, 1);
+            return bounds;
+        } catch (NoninvertibleTransformException e) {
+            // degenerate transform, nothing is visible
+            return new Rectangle();
+        }
     }
 
     @Override
@@ -295,31 +930,114 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
      * so we can dispose the Textures when the Image is no longer referenced.
      */
     @SuppressWarnings("serial")
-    protected class TextureCache extends HashMap<WeakKey<Image>, Texture> {
+    protected class TextureCache extends HashMap<WeakKey<Image>, CachedTexture> {
         private ReferenceQueue<Image> queue = new ReferenceQueue<Image>();
 
         public void expungeStaleEntries() {
             Reference<? extends Image> ref = queue.poll();
             while (ref != null) {
-                Texture texture = remove(ref);
-                if (texture != null) {
-                    destroy(texture);
+                CachedTexture cached = remove(ref);
+                if (cached != null) {
+                    destroy(cached.texture);
                 }
 
                 ref = queue.poll();
             }
         }
 
-        public Texture get(Image image) {
+        public CachedTexture get(Image image) {
             expungeStaleEntries();
             WeakKey<Image> key = new WeakKey<Image>(image, null);
             return get(key);
         }
 
-        public Texture put(Image image, Texture texture) {
+        public CachedTexture put(Image image, CachedTexture cached) {
             expungeStaleEntries();
             WeakKey<Image> key = new WeakKey<Image>(image, queue);
-            return put(key, texture);
+            return put(key, cached);
+        }
+    }
+
+    /**
+     * A texture in the cache, along with the state needed to keep it in sync
+     * with the image it was created from.
+     */
+    protected static class CachedTexture {
+        public final Texture texture;
+
+        /**
+         * The region of the image modified since the last upload, or
+         * {@code null}.
+         */
+        public Rectangle dirtyRegion;
+
+        /**
+         * See {@link AbstractImageHelper#contentStamp(BufferedImage)}.
+         */
+        public int contentStamp;
+
+        public CachedTexture(Texture texture) {
+            this.texture = texture;
+        }
+
+        public void addDirtyRegion(int x, int y, int width, int height) {
+            if (dirtyRegion == null) {
+                dirtyRegion = new Rectangle(x, y, width, height);
+            } else {
+                dirtyRegion.add(new Rectangle(x, y, width, height));
+            }
+        }
+    }
+
+    /**
+     * Keyed by the image like {@link TextureCache}, except {@code RenderedImage}s
+     * don't have to be {@code Image}s.
+     */
+    @SuppressWarnings("serial")
+    protected class TiledTextureCache extends HashMap<WeakKey<Object>, TiledTexture> {
+        private ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+        public void expungeStaleEntries() {
+            Reference<?> ref = queue.poll();
+            while (ref != null) {
+                TiledTexture tiled = remove(ref);
+                if (tiled != null) {
+                    tiled.destroy(g2d.getGL());
+                }
+
+                ref = queue.poll();
+            }
+        }
+
+        public TiledTexture get(Object image) {
+            expungeStaleEntries();
+            WeakKey<Object> key = new WeakKey<Object>(image, null);
+            return get(key);
+        }
+
+        public TiledTexture put(Object image, TiledTexture tiled) {
+            expungeStaleEntries();
+            WeakKey<Object> key = new WeakKey<Object>(image, queue);
+            return put(key, tiled);
+        }
+
+        /**
+         * Destroys the tiles not drawn since the given paint.
+         */
+        public void evict(long paint) {
+            expungeStaleEntries();
+            for (TiledTexture tiled : values()) {
+                tiled.evict(g2d.getGL(), paint);
+            }
+        }
+
+        @Override
+        public void clear() {
+            for (TiledTexture tiled : values()) {
+                tiled.destroy(g2d.getGL());
+            }
+
+            super.clear();
         }
     }
 
@@ -23,10 +23,15 @@ import java.awt.FontMetrics;
 import java.awt.RenderingHints;
 import java.awt.RenderingHints.Key;
 import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import net.opengrabeso.glg2d.GLG2DRenderingHints;
 import net.opengrabeso.glg2d.GLG2DTextHelper;
 import net.opengrabeso.glg2d.GLGraphics2D;
 
@@ -35,6 +40,13 @@ public abstract class AbstractTextDrawer implements GLG2DTextHelper {
 
     protected Deque<FontState> stack = new ArrayDeque<FontState>();
 
+    /**
+     * The last context returned by {@link #getFontRenderContext()}, reused
+     * while the transform and the antialiasing don't change.
+     */
+    private FontRenderContext fontRenderContext;
+    private AffineTransform fontRenderTransform;
+
     @Override
     public void setG2D(GLGraphics2D g2d) {
         this.g2d = g2d;
@@ -57,12 +69,18 @@ public abstract class AbstractTextDrawer implements GLG2DTextHelper {
     public void setHint(Key key, Object value) {
         if (key == RenderingHints.KEY_TEXT_ANTIALIASING) {
             stack.peek().antiAlias = value != null && value != RenderingHints.VALUE_TEXT_ANTIALIAS_OFF && value != RenderingHints.VALUE_TEXT_ANTIALIAS_DEFAULT;
+        } else if (key == GLG2DRenderingHints.KEY_TEXT_DISTANCE_FIELD) {
+            stack.peek().distanceField = value == GLG2DRenderingHints.VALUE_TEXT_DISTANCE_FIELD_ON;
+        } else if (key == GLG2DRenderingHints.KEY_TEXT_SIZE_SNAPPING) {
+            stack.peek().sizeSnapping = value == GLG2DRenderingHints.VALUE_TEXT_SIZE_SNAPPING_ON;
         }
     }
 
     @Override
     public void resetHints() {
         setHint(RenderingHints.KEY_TEXT_ANTIALIASING, null);
+        setHint(GLG2DRenderingHints.KEY_TEXT_DISTANCE_FIELD, null);
+        setHint(GLG2DRenderingHints.KEY_TEXT_SIZE_SNAPPING, null);
     }
 
     @Override
@@ -77,25 +95,105 @@ public abstract class AbstractTextDrawer implements GLG2DTextHelper {
 
     @Override
     public FontMetrics getFontMetrics(Font font) {
-        return new GLFontMetrics(font, getFontRenderContext());
+        return GLFontMetrics.getMetrics(font, getFontRenderContext());
     }
 
+    /**
+     * Returns the context for the current transform without its translation,
+     * as Java2D does, so that the same metrics serve the whole frame.
+     */
     @Override
     public FontRenderContext getFontRenderContext() {
-        return new FontRenderContext(g2d.getTransform(), stack.peek().antiAlias, false);
+        AffineTransform transform = g2d.getTransform();
+        transform.setTransform(transform.getScaleX(), transform.getShearY(), transform.getShearX(), transform.getScaleY(), 0, 0);
+
+        boolean antiAlias = stack.peek().antiAlias;
+        if (fontRenderContext == null || fontRenderContext.isAntiAliased() != antiAlias || !transform.equals(fontRenderTransform)) {
+            fontRenderContext = new FontRenderContext(transform, antiAlias, false);
+            fontRenderTransform = transform;
+        }
+
+        return fontRenderContext;
+    }
+
+    /**
+     * Fills the outlines of the glyphs. Subclasses should draw the glyphs
+     * in a faster way if they can.
+     */
+    @Override
+    public void drawGlyphVector(GlyphVector glyphs, float x, float y) {
+        g2d.fill(glyphs.getOutline(x, y));
+    }
+
+    /**
+     * Does nothing, the outlines aren't cached.
+     */
+    @Override
+    public void preload(Font font, CharSequence chars) {
     }
 
     /**
-     * The default implementation is good enough for now.
+     * Measures text from a table of character advances, filled in lazily, so
+     * that measuring the same characters again doesn't compute any bounds.
+     * Only text which needs no layout is measured from the table, that is if
+     * the font has no kerning or ligatures and the text has no complex
+     * scripts. Everything else falls back to {@code Font.getStringBounds}.
+     *
+     * <p>
+     * Instances are shared by all drawers, see {@link #getMetrics}.
+     * </p>
      */
     public static class GLFontMetrics extends FontMetrics {
         private static final long serialVersionUID = 3676850359220061793L;
 
+        /**
+         * How many metrics {@link #getMetrics} keeps.
+         */
+        public static final int MAX_CACHED_METRICS = 64;
+
+        private static final int PAGE_BITS = 8;
+        private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+        // Below the combining diacritics, no character needs layout
+        private static final char FIRST_LAYOUT_CHAR = '\u0300';
+
+        private static final Map<MetricsKey, GLFontMetrics> cache = new LinkedHashMap<MetricsKey, GLFontMetrics>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MetricsKey, GLFontMetrics> eldest) {
+                return size() > MAX_CACHED_METRICS;
+            }
+        };
+
         protected FontRenderContext fontRenderContext;
 
+        // Advances of the BMP characters in pages of PAGE_SIZE, 0 where not
+        // measured yet, so zero width characters are measured every time.
+        // Measuring a character twice from two threads does no harm, so the
+        // table isn't locked.
+        private final float[][] advances;
+
         public GLFontMetrics(Font font, FontRenderContext frc) {
             super(font);
             fontRenderContext = frc;
+            advances = font.hasLayoutAttributes() ? null : new float[(Character.MAX_VALUE + 1) >> PAGE_BITS][];
+        }
+
+        /**
+         * Returns the shared metrics of the font in the given context.
+         */
+        public static GLFontMetrics getMetrics(Font font, FontRenderContext frc) {
+            MetricsKey key = new MetricsKey(font, frc);
+            synchronized (cache) {
+                GLFontMetrics metrics = cache.get(key);
+                if (metrics == null) {
+                    metrics = new GLFontMetrics(font, frc);
+                    cache.put(key, metrics);
+                }
+
+                return metrics;
+            }
         }
 
         @Override
@@ -103,20 +201,118 @@ public abstract class AbstractTextDrawer implements GLG2DTextHelper {
             return fontRenderContext;
         }
 
+        @Override
+        public int charWidth(char ch) {
+            if (advances == null || Character.isSurrogate(ch)) {
+                return super.charWidth(ch);
+            }
+
+            return (int) ceil(advance(ch));
+        }
+
+        @Override
+        public int charWidth(int codePoint) {
+            if (!Character.isBmpCodePoint(codePoint)) {
+                return charsWidth(Character.toChars(codePoint), 0, Character.charCount(codePoint));
+            }
+
+            return charWidth((char) codePoint);
+        }
+
+        @Override
+        public int stringWidth(String str) {
+            if (advances == null) {
+                return super.stringWidth(str);
+            }
+
+            // Measure simple text without copying it
+            float width = 0;
+            for (int i = 0; i < str.length(); i++) {
+                char ch = str.charAt(i);
+                if (ch >= FIRST_LAYOUT_CHAR) {
+                    return super.stringWidth(str);
+                }
+
+                width += advance(ch);
+            }
+
+            return (int) ceil(width);
+        }
+
         @Override
         public int charsWidth(char[] data, int off, int len) {
             if (len <= 0) {
                 return 0;
             }
 
+            if (advances != null && !Font.textRequiresLayout(data, off, off + len)) {
+                float width = 0;
+                for (int i = off; i < off + len; i++) {
+                    if (Character.isSurrogate(data[i])) {
+                        return boundsWidth(data, off, len);
+                    }
+
+                    width += advance(data[i]);
+                }
+
+                return (int) ceil(width);
+            }
+
+            return boundsWidth(data, off, len);
+        }
+
+        private int boundsWidth(char[] data, int off, int len) {
             Rectangle2D bounds = font.getStringBounds(data, off, len, getFontRenderContext());
             return (int) ceil(bounds.getWidth());
         }
+
+        private float advance(char ch) {
+            float[] page = advances[ch >> PAGE_BITS];
+            if (page == null) {
+                page = new float[PAGE_SIZE];
+                advances[ch >> PAGE_BITS] = page;
+            }
+
+            float advance = page[ch & (PAGE_SIZE - 1)];
+            if (advance == 0) {
+                advance = (float) font.getStringBounds(new char[] { ch }, 0, 1, getFontRenderContext()).getWidth();
+                page[ch & (PAGE_SIZE - 1)] = advance;
+            }
+
+            return advance;
+        }
+
+        private static class MetricsKey {
+            final Font font;
+            final FontRenderContext frc;
+
+            MetricsKey(Font font, FontRenderContext frc) {
+                this.font = font;
+                this.frc = frc;
+            }
+
+            @Override
+            public int hashCode() {
+                return font.hashCode() * 31 + frc.hashCode();
+            }
+
+            @Override
+            public boolean equals(Object obj) {
+                if (!(obj instanceof MetricsKey)) {
+                    return false;
+                }
+
+                MetricsKey other = (MetricsKey) obj;
+                return font.equals(other.font) && frc.equals(other.frc);
+            }
+        }
     }
 
     protected static class FontState implements Cloneable {
         public Font font;
         public boolean antiAlias;
+        public boolean distanceField;
+        public boolean sizeSnapping;
 
         @Override
         public FontState clone() {
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.opengrabeso.glg2d.impl;
+
+import com.github.opengrabeso.jaagl.GL;
+
+import net.opengrabeso.opengl.util.texture.Texture;
+import net.opengrabeso.opengl.util.texture.TextureData;
+
+/**
+ * A texture holding the palette indices of an image with an
+ * {@code IndexColorModel}, one byte per pixel. The colors are kept in a
+ * separate 256 x 1 RGBA texture and resolved when drawing.
+ */
+public class IndexedTexture extends Texture {
+    protected Texture palette;
+
+    public IndexedTexture(GL gl, TextureData indices, Texture palette) {
+        super(gl, indices);
+        this.palette = palette;
+    }
+
+    public Texture getPalette() {
+        return palette;
+    }
+
+    @Override
+    public void destroy(GL gl) {
+        super.destroy(gl);
+        palette.destroy(gl);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.opengrabeso.glg2d.impl;
+
+import java.awt.Rectangle;
+import java.awt.image.RenderedImage;
+
+import com.github.opengrabeso.jaagl.GL;
+
+import net.opengrabeso.opengl.util.texture.Texture;
+
+/**
+ * An image split into a grid of fixed-size tiles, each stored in its own
+ * texture. Used for images larger than {@code GL_MAX_TEXTURE_SIZE}. Tiles are
+ * created only when they become visible and can be destroyed again when they
+ * haven't been drawn for a while.
+ */
+public class TiledTexture {
+    /**
+     * Each tile texture overlaps its neighbours by this many pixels so that
+     * linear filtering doesn't show seams between the tiles.
+     */
+    public static final int TILE_BORDER = 1;
+
+    protected final Rectangle bounds;
+    protected final int tileSize;
+    protected final int columns;
+    protected final int rows;
+
+    protected final Texture[] tiles;
+    protected final long[] lastUsed;
+
+    /**
+     * A copy of the source image, when the cached image can't provide the tile
+     * pixels by itself.
+     */
+    protected RenderedImage snapshot;
+
+    /**
+     * The region modified since the tiles were uploaded, or {@code null}.
+     */
+    protected Rectangle dirtyRegion;
+
+    public TiledTexture(Rectangle bounds, int tileSize) {
+        this.bounds = new Rectangle(bounds);
+        this.tileSize = tileSize;
+        columns = (bounds.width + tileSize - 1) / tileSize;
+        rows = (bounds.height + tileSize - 1) / tileSize;
+        tiles = new Texture[columns * rows];
+        lastUsed = new long[columns * rows];
+    }
+
+    public Rectangle getBounds() {
+        return bounds;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumn(int x) {
+        return Math.max(0, Math.min(columns - 1, (x - bounds.x) / tileSize));
+    }
+
+    public int getRow(int y) {
+        return Math.max(0, Math.min(rows - 1, (y - bounds.y) / tileSize));
+    }
+
+    /**
+     * Returns the part of the image covered by the tile, in image coordinates.
+     */
+    public Rectangle getTileBounds(int column, int row) {
+        Rectangle tile = new Rectangle(bounds.x + column * tileSize, bounds.y + row * tileSize, tileSize, tileSize);
+        return tile.intersection(bounds);
+    }
+
+    /**
+     * Returns the part of the image stored in the tile texture. This is the
+     * tile bounds extended by {@link #TILE_BORDER} on every side.
+     */
+    public Rectangle getTextureBounds(int column, int row) {
+        Rectangle texture = getTileBounds(column, row);
+        texture.grow(TILE_BORDER, TILE_BORDER);
+        return texture.intersection(bounds);
+    }
+
+    /**
+     * Returns the texture of the tile, or {@code null} if it's not resident.
+     */
+    public Texture getTile(int column, int row) {
+        return tiles[row * columns + column];
+    }
+
+    public void setTile(int column, int row, Texture texture) {
+        tiles[row * columns + column] = texture;
+    }
+
+    public void markUsed(int column, int row, long frame) {
+        lastUsed[row * columns + column] = frame;
+    }
+
+    public RenderedImage getSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(RenderedImage snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public Rectangle getDirtyRegion() {
+        return dirtyRegion;
+    }
+
+    public void addDirtyRegion(Rectangle region) {
+        if (dirtyRegion == null) {
+            dirtyRegion = new Rectangle(region);
+        } else {
+            dirtyRegion.add(region);
+        }
+    }
+
+    /**
+     * Destroys all resident tiles that weren't drawn since {@code frame}.
+     */
+    public void evict(GL gl, long frame) {
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] != null && lastUsed[i] < frame) {
+                tiles[i].destroy(gl);
+                tiles[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Destroys all resident tiles intersecting the region, they will be
+     * uploaded again when they are drawn. Clears the dirty region.
+     */
+    public void invalidate(GL gl, Rectangle region) {
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                Texture tile = getTile(column, row);
+                if (tile != null && getTextureBounds(column, row).intersects(region)) {
+                    tile.destroy(gl);
+                    setTile(column, row, null);
+                }
+            }
+        }
+
+        dirtyRegion = null;
+    }
+
+    public void destroy(GL gl) {
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] != null) {
+                tiles[i].destroy(gl);
+                tiles[i] = null;
+            }
+        }
+    }
+}
@@ -54,6 +54,9 @@ public class GL2ImageDrawer extends AbstractImageHelper {
         texture.enable(gl);
         texture.bind(gl);
 
+        // bicubic isn't available in the fixed function pipeline, bilinear is used instead
+        setupFilter(texture, xform);
+
         savedTransform = null;
         if (xform != null && !xform.isIdentity()) {
             savedTransform = g2d.getTransform();
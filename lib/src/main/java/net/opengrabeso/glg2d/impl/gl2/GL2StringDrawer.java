@@ -19,39 +19,297 @@ package net.opengrabeso.glg2d.impl.gl2;
 import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Font;
+import java.awt.font.GlyphVector;
+import java.awt.font.LineMetrics;
+import java.awt.font.TextAttribute;
+import java.awt.geom.AffineTransform;
 import java.text.AttributedCharacterIterator;
-import java.util.HashMap;
+import java.text.AttributedCharacterIterator.Attribute;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import com.github.opengrabeso.jaagl.GL2GL3;
+import net.opengrabeso.glg2d.GLGraphics2D;
 import net.opengrabeso.glg2d.impl.AbstractTextDrawer;
 
+import net.opengrabeso.opengl.util.awt.GlyphAtlas;
+import net.opengrabeso.opengl.util.awt.GlyphDiskCache;
 import net.opengrabeso.opengl.util.awt.TextRenderer;
+import net.opengrabeso.opengl.util.packrect.PackingAlgorithm;
 
 /**
  * Draws text for the {@code GLGraphics2D} class.
  */
 public abstract class GL2StringDrawer extends AbstractTextDrawer {
+    /**
+     * Default for {@link #setOutlineSize}.
+     */
+    protected static final double MAX_CACHED_GLYPH_SIZE = 128;
+
+    /**
+     * Default for {@link #setMaxAtlasBytes}, four full atlas pages.
+     */
+    protected static final long MAX_ATLAS_BYTES = 4 * 2048 * 2048;
+
     protected FontRenderCache cache = new FontRenderCache();
 
+    /**
+     * Text whose font is larger than this on the screen is drawn as outlines,
+     * the cached bitmaps would be blurry and take too much of the atlas.
+     */
+    protected double outlineSize = MAX_CACHED_GLYPH_SIZE;
+
+    /**
+     * Rasterized glyphs kept across restarts, or null.
+     */
+    protected GlyphDiskCache diskCache;
+
+    /**
+     * When the renderers take more of the atlas than this, the least recently
+     * used ones are disposed.
+     */
+    protected long maxAtlasBytes = MAX_ATLAS_BYTES;
+
+    /**
+     * Incremented on every paint, used to find renderers which are idle.
+     */
+    protected long paintCount;
+
+    /**
+     * Backing store shared by the renderers of all fonts.
+     */
+    protected final GlyphAtlas atlas;
+
+    protected GL2StringDrawer(GL2GL3 gl) {
+        this(gl, PackingAlgorithm.LEVELS);
+    }
+
+    /**
+     * @param packingAlgorithm
+     *          how the atlas places the glyphs
+     */
+    protected GL2StringDrawer(GL2GL3 gl, PackingAlgorithm packingAlgorithm) {
+        atlas = new GlyphAtlas(gl, packingAlgorithm);
+
+        // strings are drawn together until GLGraphics2D asks for a flush
+        atlas.setBatching(true);
+    }
+
     protected abstract TextRenderer createTextRenderer(Font font, boolean antialias);
 
+    /**
+     * Creates a renderer drawing the font from signed distance fields, see
+     * {@link TextRenderer#createDistanceFieldRenderer}.
+     */
+    protected abstract TextRenderer createDistanceFieldRenderer(Font font);
+
+    /**
+     * Sets how many bytes of the glyph atlas the renderers of all fonts may
+     * take before the least recently used ones are disposed. Renderers used
+     * during the last paint are kept even above the limit.
+     */
+    public void setMaxAtlasBytes(long maxAtlasBytes) {
+        this.maxAtlasBytes = maxAtlasBytes;
+    }
+
+    public long getMaxAtlasBytes() {
+        return maxAtlasBytes;
+    }
+
+    /**
+     * Sets the font size on the screen above which text is drawn from glyph
+     * outlines rather than from the glyph atlas. Doesn't apply to distance
+     * field text, which scales to any size.
+     */
+    public void setOutlineSize(double outlineSize) {
+        this.outlineSize = outlineSize;
+    }
+
+    public double getOutlineSize() {
+        return outlineSize;
+    }
+
+    /**
+     * Sets the directory cache to take rasterized glyphs from, or null for
+     * none. The glyphs rasterized from now on are written by
+     * {@link GlyphDiskCache#save}.
+     */
+    public void setDiskCache(GlyphDiskCache diskCache) {
+        this.diskCache = diskCache;
+
+        for (CachedRenderers cached : cache.values()) {
+            for (TextRenderer renderer : cached.renderers) {
+                if (renderer != null) {
+                    renderer.setDiskCache(diskCache);
+                }
+            }
+        }
+    }
+
+    public GlyphDiskCache getDiskCache() {
+        return diskCache;
+    }
+
+    /**
+     * Returns the glyph atlas shared by the renderers, to configure its
+     * eviction budget or read its hit and miss counts.
+     */
+    public GlyphAtlas getGlyphAtlas() {
+        return atlas;
+    }
+
+    @Override
+    public void setG2D(GLGraphics2D g2d) {
+        super.setG2D(g2d);
+
+        paintCount++;
+        atlas.setup();
+        atlas.nextFrame();
+        cache.evict(maxAtlasBytes, paintCount - 1);
+    }
+
     @Override
     public void dispose() {
         cache.dispose();
+        cache.clear();
+        atlas.dispose();
     }
 
+    @Override
+    public void flush() {
+        atlas.flush();
+    }
+
+    /**
+     * Draws each run of equal attributes with its own font and foreground
+     * color. The underlines and strikethroughs are solid quads of the atlas,
+     * so that all runs and their decorations go to the atlas in one batch.
+     */
     @Override
     public void drawString(AttributedCharacterIterator iterator, float x, float y) {
-        drawString(iterator, (int) x, (int) y);
+        StringBuilder run = new StringBuilder();
+        char c = iterator.first();
+        while (c != AttributedCharacterIterator.DONE) {
+            int limit = iterator.getRunLimit();
+            Map<Attribute, Object> attributes = iterator.getAttributes();
+
+            run.setLength(0);
+            while (iterator.getIndex() < limit) {
+                run.append(c);
+                c = iterator.next();
+            }
+
+            String string = run.toString();
+            Font font = getFont(attributes);
+            Color color = getColor(attributes);
+            drawRun(string, font, color, x, y);
+
+            // the fractional advance, the metrics round it up to whole pixels
+            float advance = (float) font.getStringBounds(string, getFontRenderContext()).getWidth();
+            boolean underline = TextAttribute.UNDERLINE_ON.equals(attributes.get(TextAttribute.UNDERLINE));
+            boolean strikethrough = TextAttribute.STRIKETHROUGH_ON.equals(attributes.get(TextAttribute.STRIKETHROUGH));
+            if (underline || strikethrough) {
+                LineMetrics metrics = font.getLineMetrics(string, getFontRenderContext());
+                TextRenderer renderer = getRenderer(font);
+                begin(renderer, color);
+                if (underline) {
+                    fillRect(x, y + metrics.getUnderlineOffset(), advance, metrics.getUnderlineThickness());
+                }
+                if (strikethrough) {
+                    fillRect(x, y + metrics.getStrikethroughOffset(), advance, metrics.getStrikethroughThickness());
+                }
+                end(renderer);
+            }
+
+            x += advance;
+        }
+    }
+
+    /**
+     * Fills a rectangle given in user space with the atlas, between
+     * {@link #begin} and {@link #end}.
+     */
+    private void fillRect(float x, float y, float width, float height) {
+        if (useVerticalFlip()) {
+            atlas.fillRect(x, y, 0, width, height);
+        } else {
+            atlas.fillRect(x, g2d.getCanvasHeight() - y - height, 0, width, height);
+        }
     }
 
     @Override
     public void drawString(AttributedCharacterIterator iterator, int x, int y) {
-        StringBuilder builder = new StringBuilder(iterator.getEndIndex() - iterator.getBeginIndex());
-        while (iterator.next() != AttributedCharacterIterator.DONE) {
-            builder.append(iterator.current());
+        drawString(iterator, (float) x, (float) y);
+    }
+
+    /**
+     * Returns the font of a run, the current font unless the attributes
+     * change it.
+     */
+    protected Font getFont(Map<Attribute, Object> attributes) {
+        Object font = attributes.get(TextAttribute.FONT);
+        if (font instanceof Font) {
+            return (Font) font;
+        }
+
+        for (Attribute attribute : attributes.keySet()) {
+            if (attribute != TextAttribute.FOREGROUND && attribute != TextAttribute.BACKGROUND &&
+                    attribute != TextAttribute.UNDERLINE && attribute != TextAttribute.STRIKETHROUGH) {
+                return getFont().deriveFont(attributes);
+            }
         }
 
-        drawString(builder.toString(), x, y);
+        return getFont();
+    }
+
+    /**
+     * Returns the color of a run, the current color unless the attributes
+     * have a foreground color.
+     */
+    protected Color getColor(Map<Attribute, Object> attributes) {
+        Object foreground = attributes.get(TextAttribute.FOREGROUND);
+        return foreground instanceof Color ? (Color) foreground : g2d.getColor();
+    }
+
+    private void drawRun(String string, Font font, Color color, float x, float y) {
+        if (!stack.peek().distanceField && !font.isTransformed() && getScreenSize(font) > outlineSize) {
+            GlyphVector glyphs = font.createGlyphVector(getFontRenderContext(), string);
+            if (drawOutlines(glyphs, x, y, color)) {
+                return;
+            }
+        }
+
+        TextRenderer renderer = getRenderer(font);
+
+        // distance fields and snapped sizes are drawn scaled
+        float scale = font.getSize2D() / renderer.getFont().getSize2D();
+
+        begin(renderer, color);
+        if (useVerticalFlip()) {
+            renderer.draw3D(string, x, y, 0, scale, true);
+        } else {
+            renderer.draw3D(string, x, g2d.getCanvasHeight() - y, 0, scale, false);
+        }
+        end(renderer);
+    }
+
+    /**
+     * Puts the glyphs on the atlas and uploads the atlas textures, or
+     * tessellates the outlines if the text is drawn from them, the same way
+     * {@link #drawString(String, float, float)} would.
+     */
+    @Override
+    public void preload(Font font, CharSequence chars) {
+        if (!stack.peek().distanceField && !font.isTransformed() && getScreenSize(font) > outlineSize) {
+            GlyphVector glyphs = font.createGlyphVector(getFontRenderContext(), chars.toString());
+            if (preloadOutlines(glyphs)) {
+                return;
+            }
+        }
+
+        getRenderer(font).preload(chars);
+        atlas.upload();
     }
 
     @Override
@@ -61,19 +319,107 @@ public abstract class GL2StringDrawer extends AbstractTextDrawer {
 
     @Override
     public void drawString(String string, int x, int y) {
-        TextRenderer renderer = getRenderer(getFont());
+        drawRun(string, getFont(), g2d.getColor(), x, y);
+    }
+
+    @Override
+    public void drawGlyphVector(GlyphVector glyphs, float x, float y) {
+        if (!isCacheable(glyphs)) {
+            boolean transformed = glyphs.getFont().isTransformed() || (glyphs.getLayoutFlags() & GlyphVector.FLAG_HAS_TRANSFORMS) != 0;
+            if (transformed || !drawOutlines(glyphs, x, y, g2d.getColor())) {
+                super.drawGlyphVector(glyphs, x, y);
+            }
+            return;
+        }
+
+        // the glyph vector was laid out with its own render context, use the
+        // bitmaps matching it
+        TextRenderer renderer = getRenderer(glyphs.getFont(), glyphs.getFontRenderContext().isAntiAliased());
 
         begin(renderer);
+        boolean drawn;
         if (useVerticalFlip()) {
-            renderer.draw3D(string, x, y, 0, 1, true);
+            drawn = renderer.draw3D(glyphs, x, y, 0, 1, true);
         } else {
-            renderer.draw3D(string, x, g2d.getCanvasHeight() - y, 0, 1, false);
+            drawn = renderer.draw3D(glyphs, x, g2d.getCanvasHeight() - y, 0, 1, false);
         }
         end(renderer);
+
+        if (!drawn) {
+            super.drawGlyphVector(glyphs, x, y);
+        }
+    }
+
+    /**
+     * Returns whether the glyphs can be drawn from the glyph atlas, that is
+     * they are not transformed and not too large. Distance fields can be drawn
+     * at any size.
+     */
+    protected boolean isCacheable(GlyphVector glyphs) {
+        Font font = glyphs.getFont();
+        if (font.isTransformed() || (glyphs.getLayoutFlags() & GlyphVector.FLAG_HAS_TRANSFORMS) != 0) {
+            return false;
+        }
+
+        if (stack.peek().distanceField) {
+            return true;
+        }
+
+        return getScreenSize(font) <= outlineSize;
+    }
+
+    /**
+     * Returns the size of the font on the screen under the current transform.
+     */
+    protected double getScreenSize(Font font) {
+        AffineTransform transform = g2d.getTransform();
+        return font.getSize2D() * Math.sqrt(Math.abs(transform.getDeterminant()));
+    }
+
+    /**
+     * Draws the glyphs from tessellated outlines in the given color, without
+     * using the atlas. Returns false if that isn't supported, the default,
+     * in which case they are drawn some other way. The font of the glyphs is
+     * never transformed.
+     */
+    protected boolean drawOutlines(GlyphVector glyphs, float x, float y, Color color) {
+        return false;
+    }
+
+    /**
+     * Prepares the outlines of the glyphs for {@link #drawOutlines}. Returns
+     * false if that isn't supported, the default.
+     */
+    protected boolean preloadOutlines(GlyphVector glyphs) {
+        return false;
     }
 
     protected TextRenderer getRenderer(Font font) {
-        return cache.getRenderer(font, stack.peek().antiAlias);
+        return getRenderer(font, stack.peek().antiAlias);
+    }
+
+    /**
+     * Returns the renderer for the font in the current text mode. Its font may
+     * differ in size from the requested one, the text then has to be scaled.
+     */
+    protected TextRenderer getRenderer(Font font, boolean antiAlias) {
+        if (font.isTransformed()) {
+            return cache.getRenderer(font, antiAlias);
+        }
+
+        if (stack.peek().distanceField) {
+            return cache.getDistanceFieldRenderer(font);
+        }
+
+        if (stack.peek().sizeSnapping) {
+            float size = font.getSize2D();
+            float snapped = Math.max(1, Math.round(size));
+            if (snapped != size) {
+                font = font.deriveFont(snapped);
+            }
+        }
+
+        return cache.getRenderer(font, antiAlias);
     }
 
     /**
@@ -81,7 +427,17 @@ public abstract class GL2StringDrawer extends AbstractTextDrawer {
      * pre-multiply an alpha.
      */
     protected void setTextColorRespectComposite(TextRenderer renderer) {
-        Color color = g2d.getColor();
+        setTextColorRespectComposite(renderer, g2d.getColor());
+    }
+
+    protected void setTextColorRespectComposite(TextRenderer renderer, Color color) {
+        renderer.setColor(respectComposite(color));
+    }
+
+    /**
+     * Returns the color with the alpha of the AlphaComposite pre-multiplied.
+     */
+    protected Color respectComposite(Color color) {
         if (g2d.getComposite() instanceof AlphaComposite) {
             float alpha = ((AlphaComposite) g2d.getComposite()).getAlpha();
             if (alpha < 1) {
@@ -90,7 +446,7 @@ public abstract class GL2StringDrawer extends AbstractTextDrawer {
             }
         }
 
-        renderer.setColor(color);
+        return color;
     }
 
     protected abstract float[] getTransform(TextRenderer renderer);
@@ -100,7 +456,11 @@ public abstract class GL2StringDrawer extends AbstractTextDrawer {
     protected abstract void cleanupMatrix(TextRenderer renderer);
 
     protected void begin(TextRenderer renderer) {
-        setTextColorRespectComposite(renderer);
+        begin(renderer, g2d.getColor());
+    }
+
+    protected void begin(TextRenderer renderer, Color color) {
+        setTextColorRespectComposite(renderer, color);
         float[] transform = getTransform(renderer);
         renderer.begin3DRendering(transform);
     }
@@ -110,32 +470,119 @@ public abstract class GL2StringDrawer extends AbstractTextDrawer {
         cleanupMatrix(renderer);
     }
 
+    /**
+     * Renderers by font, kept in access order so that the least
+     * recently used fonts come first.
+     */
     @SuppressWarnings("serial")
-    public class FontRenderCache extends HashMap<Font, TextRenderer[]> {
+    public class FontRenderCache extends LinkedHashMap<Font, CachedRenderers> {
+        private static final int DISTANCE_FIELD = 2;
+
+        public FontRenderCache() {
+            super(16, 0.75f, true);
+        }
+
         public TextRenderer getRenderer(Font font, boolean antiAlias) {
-            TextRenderer[] renderers = get(font);
-            if (renderers == null) {
-                renderers = new TextRenderer[2];
-                put(font, renderers);
+            return getRenderer(font, antiAlias ? 1 : 0);
+        }
+
+        /**
+         * Returns the distance field renderer shared by all sizes of the font.
+         */
+        public TextRenderer getDistanceFieldRenderer(Font font) {
+            if (font.getSize2D() != TextRenderer.DISTANCE_FIELD_SIZE) {
+                font = font.deriveFont(TextRenderer.DISTANCE_FIELD_SIZE);
+            }
+
+            return getRenderer(font, DISTANCE_FIELD);
+        }
+
+        private TextRenderer getRenderer(Font font, int index) {
+            CachedRenderers cached = get(font);
+            if (cached == null) {
+                cached = new CachedRenderers();
+                put(font, cached);
             }
 
-            TextRenderer renderer = renderers[antiAlias ? 1 : 0];
+            cached.lastUsed = paintCount;
+            TextRenderer renderer = cached.renderers[index];
 
             if (renderer == null) {
-                renderer = createTextRenderer(font, antiAlias);
-                renderers[antiAlias ? 1 : 0] = renderer;
+                renderer = index == DISTANCE_FIELD ? createDistanceFieldRenderer(font) : createTextRenderer(font, index == 1);
+                if (diskCache != null) {
+                    renderer.setDiskCache(diskCache);
+                }
+                cached.renderers[index] = renderer;
             }
 
             return renderer;
         }
 
+        /**
+         * Returns the number of bytes all renderers take on the atlas.
+         */
+        public long getAtlasBytes() {
+            long bytes = 0;
+            for (CachedRenderers cached : values()) {
+                bytes += cached.getAtlasBytes();
+            }
+
+            return bytes;
+        }
+
+        /**
+         * Disposes of the least recently used renderers until they take at most
+         * {@code maxBytes} of the atlas, keeping the ones used since
+         * {@code keepUsedSince}.
+         */
+        public void evict(long maxBytes, long keepUsedSince) {
+            long bytes = getAtlasBytes();
+
+            Iterator<Map.Entry<Font, CachedRenderers>> it = entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                CachedRenderers cached = it.next().getValue();
+                if (cached.lastUsed >= keepUsedSince) {
+                    // all the following ones were used later
+                    break;
+                }
+
+                bytes -= cached.getAtlasBytes();
+                cached.dispose();
+                it.remove();
+            }
+        }
+
         public void dispose() {
-            for (TextRenderer[] value : values()) {
-                if (value[0] != null) {
-                    value[0].dispose();
+            for (CachedRenderers cached : values()) {
+                cached.dispose();
+            }
+        }
+    }
+
+    /**
+     * The bitmap renderers of a font without and with antialiasing, and its
+     * distance field renderer.
+     */
+    protected static class CachedRenderers {
+        final TextRenderer[] renderers = new TextRenderer[3];
+
+        long lastUsed;
+
+        long getAtlasBytes() {
+            long bytes = 0;
+            for (TextRenderer renderer : renderers) {
+                if (renderer != null) {
+                    bytes += renderer.getAtlasBytes();
                 }
-                if (value[1] != null) {
-                    value[1].dispose();
+            }
+
+            return bytes;
+        }
+
+        void dispose() {
+            for (TextRenderer renderer : renderers) {
+                if (renderer != null) {
+                    renderer.dispose();
                 }
             }
         }
@@ -2,6 +2,7 @@ package net.opengrabeso.glg2d.impl.gl2;
 
 import com.github.opengrabeso.jaagl.GL2;
 import net.opengrabeso.opengl.util.awt.TextRenderer;
+import net.opengrabeso.opengl.util.packrect.PackingAlgorithm;
 
 import java.awt.*;
 
@@ -10,12 +11,22 @@ public class GL2StringDrawerImpl extends GL2StringDrawer {
     private final GL2 gl;
 
     public GL2StringDrawerImpl(GL2 gl) {
+        this(gl, PackingAlgorithm.LEVELS);
+    }
+
+    public GL2StringDrawerImpl(GL2 gl, PackingAlgorithm packingAlgorithm) {
+        super(gl, packingAlgorithm);
         this.gl = gl;
     }
 
     @Override
     protected TextRenderer createTextRenderer(Font font, boolean antialias) {
-        return new TextRenderer(gl, font, antialias, false);
+        return new TextRenderer(gl, font, antialias, false, null, atlas);
+    }
+
+    @Override
+    protected TextRenderer createDistanceFieldRenderer(Font font) {
+        return TextRenderer.createDistanceFieldRenderer(gl, font, atlas);
     }
 
     @Override
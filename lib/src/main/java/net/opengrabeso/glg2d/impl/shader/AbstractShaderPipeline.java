@@ -25,6 +25,7 @@ import java.util.List;
 
 import com.github.opengrabeso.jaagl.GL;
 import com.github.opengrabeso.jaagl.GL2GL3;
+import net.opengrabeso.glg2d.impl.shader.ShaderProgramRegistry.ProgramFactory;
 import net.opengrabeso.opengl.util.awt.ShaderLoader;
 
 public abstract class AbstractShaderPipeline implements ShaderPipeline {
@@ -46,12 +47,45 @@ public abstract class AbstractShaderPipeline implements ShaderPipeline {
         this.fragmentShaderFileName = directory + fragmentShaderFileName;
     }
 
+    /**
+     * Takes the program from the {@link ShaderProgramRegistry} of the context,
+     * linking it only if no other pipeline uses the same shaders.
+     */
     @Override
     public void setup(GL2GL3 gl) {
-        createProgramAndAttach(gl);
+        if (programId > 0) {
+            delete(gl);
+        }
+
+        programId = ShaderProgramRegistry.get(gl).acquire(gl, getProgramKey(gl), new ProgramFactory() {
+            @Override
+            public int create(GL2GL3 gl) {
+                createProgramAndAttach(gl);
+                // the program keeps the shaders it was linked from
+                deleteShaders(gl);
+                return programId;
+            }
+        });
         setupUniformsAndAttributes(gl);
     }
 
+    /**
+     * Returns what the program is shared by, the sources of its shaders.
+     * Subclasses which link the program with additional parameters must add
+     * them.
+     */
+    protected String getProgramKey(GL2GL3 gl) {
+        StringBuilder key = new StringBuilder();
+        for (String name : new String[] { vertexShaderFileName, geometryShaderFileName, fragmentShaderFileName }) {
+            if (name != null) {
+                key.append(readShader(getClass(), name));
+            }
+            key.append('\0');
+        }
+
+        return key.toString();
+    }
+
     @Override
     public boolean isSetup() {
         return programId > 0;
@@ -110,7 +144,9 @@ public abstract class AbstractShaderPipeline implements ShaderPipeline {
 
     @Override
     public void delete(GL2GL3 gl) {
-        gl.glDeleteProgram(programId);
+        if (programId > 0) {
+            ShaderProgramRegistry.get(gl).release(gl, programId);
+        }
         deleteShaders(gl);
 
         programId = 0;
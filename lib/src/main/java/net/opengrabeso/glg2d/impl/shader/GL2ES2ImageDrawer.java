@@ -17,32 +17,79 @@ package net.opengrabeso.glg2d.impl.shader;
 
 
 import java.awt.Color;
+import java.awt.color.ColorSpace;
 import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ColorConvertOp;
+import java.awt.image.ColorModel;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.awt.image.LookupOp;
+import java.awt.image.LookupTable;
+import java.awt.image.RescaleOp;
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import java.util.Arrays;
 
 import com.github.opengrabeso.jaagl.GL2GL3;
 
 import net.opengrabeso.opengl.util.buffers.Buffers;
 import net.opengrabeso.opengl.util.texture.Texture;
+import net.opengrabeso.opengl.util.texture.TextureData;
 import net.opengrabeso.glg2d.GLGraphics2D;
 import net.opengrabeso.glg2d.impl.AbstractImageHelper;
+import net.opengrabeso.glg2d.impl.IndexedTexture;
+
+import static net.opengrabeso.glg2d.impl.shader.GL2ES2ImageOpPipeline.*;
 
 
 public class GL2ES2ImageDrawer extends AbstractImageHelper {
+    private static final BufferedImage PROBE_IMAGE = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+
     protected GLShaderGraphics2D g2d;
     protected GL2GL3 gl;
 
     protected FloatBuffer vertTexCoords = Buffers.newDirectFloatBuffer(16);
     protected GL2ES2ImagePipeline shader;
 
+    /**
+     * Applies {@code BufferedImageOp}s while drawing, may be {@code null}.
+     */
+    protected GL2ES2ImageOpPipeline opShader;
+
+    /**
+     * The pipeline used between {@code begin} and {@code end}.
+     */
+    protected GL2ES2ImagePipeline current;
+
+    /**
+     * The tables of a {@code LookupOp}, 256 x 1 texels with one table in each
+     * channel.
+     */
+    protected Texture lookupTexture;
+    protected ByteBuffer lookupData = ByteBuffer.allocateDirect(256 * 4);
+
+    /**
+     * Holds the result of the first pass of a separable convolution.
+     */
+    protected Texture scratchTexture;
+    protected int scratchFramebuffer;
+    protected boolean scratchComplete;
+
     private final float[] white = new float[]{1, 1, 1, 1};
 
     public GL2ES2ImageDrawer(String shaderDirectory) {
-        this(new GL2ES2ImagePipeline(shaderDirectory));
+        this(new GL2ES2ImagePipeline(shaderDirectory), new GL2ES2ImageOpPipeline(shaderDirectory));
     }
 
     public GL2ES2ImageDrawer(GL2ES2ImagePipeline shader) {
+        this(shader, null);
+    }
+
+    public GL2ES2ImageDrawer(GL2ES2ImagePipeline shader, GL2ES2ImageOpPipeline opShader) {
         this.shader = shader;
+        this.opShader = opShader;
     }
 
     @Override
@@ -60,16 +107,84 @@ public class GL2ES2ImageDrawer extends AbstractImageHelper {
         if (!shader.isSetup()) {
             shader.setup(gl);
         }
+        if (opShader != null && !opShader.isSetup()) {
+            opShader.setup(gl);
+        }
     }
 
     @Override
     public void dispose() {
         super.dispose();
         shader.delete(gl);
+
+        if (opShader != null) {
+            opShader.delete(gl);
+        }
+        if (lookupTexture != null) {
+            lookupTexture.destroy(gl);
+            lookupTexture = null;
+        }
+        if (scratchTexture != null) {
+            scratchTexture.destroy(gl);
+            scratchTexture = null;
+        }
+        if (scratchFramebuffer != 0) {
+            gl.glDeleteFramebuffers(new int[]{scratchFramebuffer});
+            scratchFramebuffer = 0;
+        }
+    }
+
+    @Override
+    protected boolean isPaletteSupported() {
+        return opShader != null;
     }
 
     @Override
     protected void begin(Texture texture, AffineTransform xform, Color bgcolor) {
+        if (texture instanceof IndexedTexture) {
+            beginIndexed((IndexedTexture) texture, xform, bgcolor);
+            return;
+        }
+
+        gl.glActiveTexture(gl.GL_TEXTURE0());
+        texture.bind(gl);
+
+        if (setupFilter(texture, xform) && opShader != null) {
+            texture.setFilter(gl, gl.GL_NEAREST(), gl.GL_NEAREST());
+            begin(opShader, texture, xform, bgcolor);
+            opShader.setOp(gl, OP_BICUBIC);
+            opShader.setTextureSize(gl, texture.getWidth(), texture.getHeight());
+        } else {
+            begin(shader, texture, xform, bgcolor);
+        }
+    }
+
+    /**
+     * Resolves the palette in the shader. Bicubic interpolation falls back to
+     * bilinear and there are no mipmaps, since they'd mix the indices.
+     */
+    protected void beginIndexed(IndexedTexture texture, AffineTransform xform, Color bgcolor) {
+        gl.glActiveTexture(gl.GL_TEXTURE0() + 1);
+        texture.getPalette().bind(gl);
+        gl.glActiveTexture(gl.GL_TEXTURE0());
+        texture.bind(gl);
+        texture.setFilter(gl, gl.GL_NEAREST(), gl.GL_NEAREST());
+
+        begin(opShader, texture, xform, bgcolor);
+        opShader.setOp(gl, isNearestNeighbor() ? OP_PALETTE : OP_PALETTE_LINEAR);
+        opShader.setAuxTextureUnit(gl, 1);
+        opShader.setTextureSize(gl, texture.getWidth(), texture.getHeight());
+    }
+
+    /**
+     * Begins a draw with {@link #opShader}, which samples texels exactly.
+     */
+    protected void beginOp(Texture texture, AffineTransform xform) {
+        begin(opShader, texture, xform, null);
+        texture.setFilter(gl, gl.GL_NEAREST(), gl.GL_NEAREST());
+    }
+
+    protected void begin(GL2ES2ImagePipeline pipeline, Texture texture, AffineTransform xform, Color bgcolor) {
         /*
          * FIXME This is unexpected since we never disable blending, but in some
          * cases it interacts poorly with multiple split panes, scroll panes and the
@@ -77,31 +192,29 @@ public class GL2ES2ImageDrawer extends AbstractImageHelper {
          */
         g2d.setComposite(g2d.getComposite());
 
-        gl.glTexParameteri(gl.GL_TEXTURE_2D(), gl.GL_TEXTURE_MIN_FILTER(), gl.GL_NEAREST());
-        gl.glTexParameteri(gl.GL_TEXTURE_2D(), gl.GL_TEXTURE_MAG_FILTER(), gl.GL_NEAREST());
-
         gl.glActiveTexture(gl.GL_TEXTURE0());
         texture.enable(gl);
         texture.bind(gl);
 
-        shader.use(gl, true);
+        current = pipeline;
+        pipeline.use(gl, true);
 
         float alpha = g2d.getUniformsObject().colorHook.getAlpha();
         if (bgcolor == null) {
             white[3] = alpha;
-            shader.setColor(gl, white);
+            pipeline.setColor(gl, white);
         } else {
             float[] rgba = {bgcolor.getRed() / 255f, bgcolor.getGreen() / 255f, bgcolor.getBlue() / 255f, alpha};
-            shader.setColor(gl, rgba);
+            pipeline.setColor(gl, rgba);
         }
 
         if (xform == null) {
-            shader.setTransform(gl, g2d.getUniformsObject().transformHook.getGLMatrixData());
+            pipeline.setTransform(gl, g2d.getUniformsObject().transformHook.getGLMatrixData());
         } else {
-            shader.setTransform(gl, g2d.getUniformsObject().transformHook.getGLMatrixData(xform));
+            pipeline.setTransform(gl, g2d.getUniformsObject().transformHook.getGLMatrixData(xform));
         }
 
-        shader.setTextureUnit(gl, 0);
+        pipeline.setTextureUnit(gl, 0);
     }
 
     @Override
@@ -130,12 +243,328 @@ public class GL2ES2ImageDrawer extends AbstractImageHelper {
         vertTexCoords.put(sy2);
 
         vertTexCoords.flip();
-        shader.draw(gl, vertTexCoords);
+        current.draw(gl, vertTexCoords);
     }
 
     @Override
     protected void end(Texture texture) {
-        shader.use(gl, false);
+        current.use(gl, false);
         texture.disable(gl);
     }
+
+    @Override
+    protected boolean drawImage(Texture texture, BufferedImage img, BufferedImageOp op, AffineTransform xform) {
+        // the ops would see palette indices instead of colors
+        if (opShader != null && !(texture instanceof IndexedTexture)) {
+            if (op instanceof RescaleOp) {
+                return drawRescaled(texture, img.getColorModel(), (RescaleOp) op, xform);
+            } else if (op instanceof LookupOp) {
+                return drawLookup(texture, img.getColorModel(), (LookupOp) op, xform);
+            } else if (op instanceof ColorConvertOp && isConversionToGray((ColorConvertOp) op)) {
+                beginOp(texture, xform);
+                opShader.setOp(gl, OP_GRAY);
+                applyTexture(texture);
+                end(texture);
+                return true;
+            } else if (op instanceof ConvolveOp) {
+                return drawConvolved(texture, (ConvolveOp) op, xform);
+            }
+        }
+
+        return super.drawImage(texture, img, op, xform);
+    }
+
+    protected boolean drawRescaled(Texture texture, ColorModel colorModel, RescaleOp op, AffineTransform xform) {
+        float[] scale = toChannels(op.getScaleFactors(null), colorModel, 1);
+        float[] offset = toChannels(op.getOffsets(null), colorModel, 0);
+        if (scale == null || offset == null) {
+            return false;
+        }
+
+        for (int i = 0; i < offset.length; i++) {
+            offset[i] /= 255;
+        }
+
+        beginOp(texture, xform);
+        opShader.setOp(gl, OP_RESCALE);
+        opShader.setRescale(gl, scale, offset);
+        applyTexture(texture);
+        end(texture);
+        return true;
+    }
+
+    protected boolean drawLookup(Texture texture, ColorModel colorModel, LookupOp op, AffineTransform xform) {
+        LookupTable table = op.getTable();
+        int[] src = new int[table.getNumComponents()];
+        float[] bands = new float[src.length];
+
+        lookupData.clear();
+        for (int value = 0; value < 256; value++) {
+            Arrays.fill(src, value);
+            int[] dst;
+            try {
+                dst = table.lookupPixel(src, null);
+            } catch (ArrayIndexOutOfBoundsException e) {
+                // table doesn't cover all 8-bit values
+                return false;
+            }
+
+            for (int i = 0; i < bands.length; i++) {
+                bands[i] = dst[i];
+            }
+
+            float[] rgba = toChannels(bands, colorModel, value);
+            if (rgba == null) {
+                return false;
+            }
+
+            for (float channel : rgba) {
+                lookupData.put((byte) Math.max(0, Math.min(255, (int) channel)));
+            }
+        }
+
+        lookupData.flip();
+
+        TextureData data = new TextureData(gl.GL_RGBA(), 256, 1, 0, gl.GL_RGBA(), gl.GL_UNSIGNED_BYTE(), false, false, lookupData, null);
+        gl.glActiveTexture(gl.GL_TEXTURE0() + 1);
+        if (lookupTexture == null) {
+            lookupTexture = new Texture(gl, data);
+        } else {
+            lookupTexture.updateSubImage(gl, data, 0, 0, 0);
+        }
+        lookupTexture.bind(gl);
+        lookupTexture.setFilter(gl, gl.GL_NEAREST(), gl.GL_NEAREST());
+
+        beginOp(texture, xform);
+        opShader.setOp(gl, OP_LOOKUP);
+        opShader.setAuxTextureUnit(gl, 1);
+        applyTexture(texture);
+        end(texture);
+        return true;
+    }
+
+    protected boolean drawConvolved(Texture texture, ConvolveOp op, AffineTransform xform) {
+        Kernel kernel = op.getKernel();
+        int width = kernel.getWidth();
+        int height = kernel.getHeight();
+        float[] data = kernel.getKernelData(null);
+
+        // Java2D always centers the kernel, regardless of its origin
+        int originX = (width - 1) / 2;
+        int originY = (height - 1) / 2;
+
+        int texWidth = texture.getWidth();
+        int texHeight = texture.getHeight();
+        int edgeMode = op.getEdgeCondition() == ConvolveOp.EDGE_NO_OP ? EDGE_NO_OP : EDGE_ZERO_FILL;
+        int minX = width - 1 - originX;
+        int minY = height - 1 - originY;
+        int maxX = texWidth - 1 - originX;
+        int maxY = texHeight - 1 - originY;
+
+        float[][] separated = width > 1 && height > 1 ? separate(data, width, height) : null;
+        if (separated != null && width <= MAX_KERNEL_SIZE && height <= MAX_KERNEL_SIZE && ensureScratch(texWidth, texHeight)) {
+            // horizontal pass into the scratch texture, vertical pass onto the canvas
+            convolveRows(texture, separated[0], width, originX);
+
+            beginOp(scratchTexture, xform);
+            bindAuxTexture(texture);
+            opShader.setOp(gl, OP_CONVOLVE);
+            opShader.setTextureSize(gl, texWidth, texHeight);
+            opShader.setKernel(gl, separated[1], 1, height, 0, originY);
+            opShader.setEdge(gl, edgeMode, minX, minY, maxX, maxY);
+            opShader.setPremultiplied(gl, true, false);
+            applyTexture(scratchTexture, 0, 0, texWidth, texHeight, 0, 0, 1, 1);
+            end(scratchTexture);
+            return true;
+        } else if (width * height <= MAX_KERNEL_SIZE) {
+            beginOp(texture, xform);
+            bindAuxTexture(texture);
+            opShader.setOp(gl, OP_CONVOLVE);
+            opShader.setTextureSize(gl, texWidth, texHeight);
+            opShader.setKernel(gl, data, width, height, originX, originY);
+            opShader.setEdge(gl, edgeMode, minX, minY, maxX, maxY);
+            opShader.setPremultiplied(gl, false, false);
+            applyTexture(texture);
+            end(texture);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Renders the texture convolved with a single row kernel into the scratch
+     * texture. The result is premultiplied.
+     */
+    protected void convolveRows(Texture texture, float[] kernel, int width, int originX) {
+        int texWidth = texture.getWidth();
+        int texHeight = texture.getHeight();
+
+        int[] viewport = new int[4];
+        gl.glGetIntegerv(gl.GL_VIEWPORT(), viewport);
+        int framebuffer = gl.glGetInteger(gl.GL_FRAMEBUFFER_BINDING());
+        boolean scissor = gl.glIsEnabled(gl.GL_SCISSOR_TEST());
+        boolean stencil = gl.glIsEnabled(gl.GL_STENCIL_TEST());
+        gl.glDisable(gl.GL_SCISSOR_TEST());
+        gl.glDisable(gl.GL_STENCIL_TEST());
+        gl.glDisable(gl.GL_BLEND());
+
+        gl.glBindFramebuffer(gl.GL_FRAMEBUFFER(), scratchFramebuffer);
+        gl.glViewport(0, 0, texWidth, texHeight);
+
+        gl.glActiveTexture(gl.GL_TEXTURE0());
+        texture.bind(gl);
+        texture.setFilter(gl, gl.GL_NEAREST(), gl.GL_NEAREST());
+
+        // maps texels 1:1 to the pixels of the scratch texture
+        float[] ortho = {
+                2f / texWidth, 0, 0, 0,
+                0, 2f / texHeight, 0, 0,
+                0, 0, -1, 0,
+                -1, -1, 0, 1
+        };
+
+        current = opShader;
+        opShader.use(gl, true);
+        opShader.setTransform(gl, ortho);
+        opShader.setColor(gl, new float[]{1, 1, 1, 1});
+        opShader.setTextureUnit(gl, 0);
+        opShader.setOp(gl, OP_CONVOLVE);
+        opShader.setTextureSize(gl, texWidth, texHeight);
+        opShader.setKernel(gl, kernel, width, 1, originX, 0);
+        opShader.setEdge(gl, EDGE_NONE, 0, 0, 0, 0);
+        opShader.setPremultiplied(gl, false, true);
+        applyTexture(texture, 0, 0, texWidth, texHeight, 0, 0, 1, 1);
+        opShader.use(gl, false);
+
+        gl.glBindFramebuffer(gl.GL_FRAMEBUFFER(), framebuffer);
+        gl.glViewport(viewport[0], viewport[1], viewport[2], viewport[3]);
+        if (scissor) {
+            gl.glEnable(gl.GL_SCISSOR_TEST());
+        }
+        if (stencil) {
+            gl.glEnable(gl.GL_STENCIL_TEST());
+        }
+        gl.glEnable(gl.GL_BLEND());
+    }
+
+    /**
+     * Makes sure the scratch texture has the given size and can be rendered to.
+     */
+    protected boolean ensureScratch(int width, int height) {
+        if (!gl.versionAtLeast(3, 0) && !gl.isExtensionAvailable("GL_ARB_framebuffer_object")) {
+            return false;
+        }
+
+        if (scratchTexture == null || scratchTexture.getWidth() != width || scratchTexture.getHeight() != height) {
+            TextureData data = new TextureData(gl.GL_RGBA(), width, height, 0, gl.GL_RGBA(), gl.GL_UNSIGNED_BYTE(), false, false, null, null);
+            if (scratchTexture == null) {
+                scratchTexture = new Texture(gl, data);
+            } else {
+                scratchTexture.updateImage(gl, data);
+            }
+
+            if (scratchFramebuffer == 0) {
+                int[] framebuffers = new int[1];
+                gl.glGenFramebuffers(framebuffers);
+                scratchFramebuffer = framebuffers[0];
+            }
+
+            int framebuffer = gl.glGetInteger(gl.GL_FRAMEBUFFER_BINDING());
+            gl.glBindFramebuffer(gl.GL_FRAMEBUFFER(), scratchFramebuffer);
+            gl.glFramebufferTexture2D(gl.GL_FRAMEBUFFER(), gl.GL_COLOR_ATTACHMENT0(), gl.GL_TEXTURE_2D(), scratchTexture.getTextureObject(gl), 0);
+            scratchComplete = gl.glCheckFramebufferStatus(gl.GL_FRAMEBUFFER()) == gl.GL_FRAMEBUFFER_COMPLETE();
+            gl.glBindFramebuffer(gl.GL_FRAMEBUFFER(), framebuffer);
+        }
+
+        return scratchComplete;
+    }
+
+    protected void bindAuxTexture(Texture texture) {
+        gl.glActiveTexture(gl.GL_TEXTURE0() + 1);
+        texture.bind(gl);
+        gl.glActiveTexture(gl.GL_TEXTURE0());
+        opShader.setAuxTextureUnit(gl, 1);
+    }
+
+    /**
+     * Expands per-band values of an op to the RGBA channels of the texture.
+     * Channels the op doesn't touch get {@code identity}. Returns {@code null}
+     * if the number of values doesn't fit the color model, Java2D would throw
+     * for such ops.
+     */
+    protected static float[] toChannels(float[] values, ColorModel colorModel, float identity) {
+        int colors = colorModel.getNumColorComponents();
+        if (colors != 1 && colors != 3) {
+            return null;
+        }
+
+        float[] rgba = {identity, identity, identity, identity};
+        if (values.length == 1) {
+            rgba[0] = rgba[1] = rgba[2] = values[0];
+        } else if (values.length == colors || (colorModel.hasAlpha() && values.length == colors + 1)) {
+            for (int i = 0; i < 3; i++) {
+                rgba[i] = values[colors == 1 ? 0 : i];
+            }
+            if (values.length > colors) {
+                rgba[3] = values[colors];
+            }
+        } else {
+            return null;
+        }
+
+        return rgba;
+    }
+
+    /**
+     * Java2D converts into a gray color space for effects like disabled icons,
+     * which can be done in the shader. The target color space isn't accessible,
+     * but it determines the type of the destination image.
+     */
+    protected static boolean isConversionToGray(ColorConvertOp op) {
+        try {
+            BufferedImage dest = op.createCompatibleDestImage(PROBE_IMAGE, null);
+            return dest.getColorModel().getColorSpace().getType() == ColorSpace.TYPE_GRAY;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Splits the kernel into a row and a column whose outer product is the
+     * kernel, so it can be applied in two passes. Returns {@code null} if the
+     * kernel isn't separable.
+     */
+    protected static float[][] separate(float[] kernel, int width, int height) {
+        int maxIndex = 0;
+        for (int i = 1; i < kernel.length; i++) {
+            if (Math.abs(kernel[i]) > Math.abs(kernel[maxIndex])) {
+                maxIndex = i;
+            }
+        }
+
+        float max = kernel[maxIndex];
+        if (max == 0) {
+            return null;
+        }
+
+        int maxRow = maxIndex / width;
+        int maxColumn = maxIndex % width;
+        float[] row = Arrays.copyOfRange(kernel, maxRow * width, maxRow * width + width);
+        float[] column = new float[height];
+        for (int y = 0; y < height; y++) {
+            column[y] = kernel[y * width + maxColumn] / max;
+        }
+
+        float tolerance = Math.abs(max) * 1e-5f;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (Math.abs(column[y] * row[x] - kernel[y * width + x]) > tolerance) {
+                    return null;
+                }
+            }
+        }
+
+        return new float[][]{row, column};
+    }
 }
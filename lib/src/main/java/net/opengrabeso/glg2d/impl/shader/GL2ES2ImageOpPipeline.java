@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.opengrabeso.glg2d.impl.shader;
+
+import com.github.opengrabeso.jaagl.GL2GL3;
+
+/**
+ * Draws a texture with a {@code BufferedImageOp} applied in the fragment
+ * shader.
+ */
+public class GL2ES2ImageOpPipeline extends GL2ES2ImagePipeline {
+    public static final int OP_RESCALE = 0;
+    public static final int OP_LOOKUP = 1;
+    public static final int OP_GRAY = 2;
+    public static final int OP_CONVOLVE = 3;
+    public static final int OP_BICUBIC = 4;
+    public static final int OP_PALETTE = 5;
+    public static final int OP_PALETTE_LINEAR = 6;
+
+    public static final int EDGE_NONE = -1;
+    public static final int EDGE_ZERO_FILL = 0;
+    public static final int EDGE_NO_OP = 1;
+
+    /**
+     * Must match the size of the {@code u_kernel} array in the shader.
+     */
+    public static final int MAX_KERNEL_SIZE = 64;
+
+    protected int auxTextureLocation = -1;
+    protected int opLocation = -1;
+    protected int scaleLocation = -1;
+    protected int offsetLocation = -1;
+    protected int texSizeLocation = -1;
+    protected int kernelLocation = -1;
+    protected int kernelSizeLocation = -1;
+    protected int kernelOriginLocation = -1;
+    protected int edgeModeLocation = -1;
+    protected int edgeLocation = -1;
+    protected int premultipliedLocation = -1;
+    protected int keepPremultipliedLocation = -1;
+
+    public GL2ES2ImageOpPipeline(String shaderDirectory) {
+        this(shaderDirectory, "TextureShader.v", "ImageOpShader.f");
+    }
+
+    public GL2ES2ImageOpPipeline(String shaderDirectory, String vertexShaderFileName, String fragmentShaderFileName) {
+        super(shaderDirectory, vertexShaderFileName, fragmentShaderFileName);
+    }
+
+    public void setOp(GL2GL3 gl, int op) {
+        if (opLocation >= 0) {
+            gl.glUniform1i(opLocation, op);
+        }
+    }
+
+    /**
+     * Sets the texture unit of the lookup table for {@link #OP_LOOKUP}, the
+     * palette for {@link #OP_PALETTE}, or the unfiltered source for
+     * {@link #EDGE_NO_OP}.
+     */
+    public void setAuxTextureUnit(GL2GL3 gl, int unit) {
+        if (auxTextureLocation >= 0) {
+            gl.glUniform1i(auxTextureLocation, unit);
+        }
+    }
+
+    /**
+     * Sets the factors for {@link #OP_RESCALE}, offsets are normalized to
+     * {@code [0, 1]}.
+     */
+    public void setRescale(GL2GL3 gl, float[] scale, float[] offset) {
+        if (scaleLocation >= 0) {
+            gl.glUniform4fv(scaleLocation, 1, scale, 0);
+        }
+        if (offsetLocation >= 0) {
+            gl.glUniform4fv(offsetLocation, 1, offset, 0);
+        }
+    }
+
+    public void setTextureSize(GL2GL3 gl, int width, int height) {
+        if (texSizeLocation >= 0) {
+            gl.glUniform2f(texSizeLocation, width, height);
+        }
+    }
+
+    /**
+     * Sets the kernel for {@link #OP_CONVOLVE}. The kernel is stored row by row
+     * and can't have more than {@link #MAX_KERNEL_SIZE} elements.
+     */
+    public void setKernel(GL2GL3 gl, float[] kernel, int width, int height, int originX, int originY) {
+        if (kernelLocation >= 0) {
+            gl.glUniform1fv(kernelLocation, width * height, kernel, 0);
+        }
+        if (kernelSizeLocation >= 0) {
+            gl.glUniform2f(kernelSizeLocation, width, height);
+        }
+        if (kernelOriginLocation >= 0) {
+            gl.glUniform2f(kernelOriginLocation, originX, originY);
+        }
+    }
+
+    /**
+     * Sets how pixels are treated when the kernel doesn't fit into the image.
+     * Pixels outside of {@code (minX, minY) - (maxX, maxY)} are edge pixels.
+     */
+    public void setEdge(GL2GL3 gl, int edgeMode, int minX, int minY, int maxX, int maxY) {
+        if (edgeModeLocation >= 0) {
+            gl.glUniform1i(edgeModeLocation, edgeMode);
+        }
+        if (edgeLocation >= 0) {
+            gl.glUniform4fv(edgeLocation, 1, new float[]{minX, minY, maxX, maxY}, 0);
+        }
+    }
+
+    /**
+     * Sets whether the texels of the convolved texture are premultiplied, and
+     * whether the result is written premultiplied and without the color
+     * applied.
+     */
+    public void setPremultiplied(GL2GL3 gl, boolean premultiplied, boolean keepPremultiplied) {
+        if (premultipliedLocation >= 0) {
+            gl.glUniform1i(premultipliedLocation, premultiplied ? 1 : 0);
+        }
+        if (keepPremultipliedLocation >= 0) {
+            gl.glUniform1i(keepPremultipliedLocation, keepPremultiplied ? 1 : 0);
+        }
+    }
+
+    @Override
+    protected void setupUniformsAndAttributes(GL2GL3 gl) {
+        super.setupUniformsAndAttributes(gl);
+
+        auxTextureLocation = gl.glGetUniformLocation(programId, "u_aux");
+        opLocation = gl.glGetUniformLocation(programId, "u_op");
+        scaleLocation = gl.glGetUniformLocation(programId, "u_scale");
+        offsetLocation = gl.glGetUniformLocation(programId, "u_offset");
+        texSizeLocation = gl.glGetUniformLocation(programId, "u_texSize");
+        kernelLocation = gl.glGetUniformLocation(programId, "u_kernel");
+        kernelSizeLocation = gl.glGetUniformLocation(programId, "u_kernelSize");
+        kernelOriginLocation = gl.glGetUniformLocation(programId, "u_kernelOrigin");
+        edgeModeLocation = gl.glGetUniformLocation(programId, "u_edgeMode");
+        edgeLocation = gl.glGetUniformLocation(programId, "u_edge");
+        premultipliedLocation = gl.glGetUniformLocation(programId, "u_premultiplied");
+        keepPremultipliedLocation = gl.glGetUniformLocation(programId, "u_keepPremultiplied");
+    }
+}
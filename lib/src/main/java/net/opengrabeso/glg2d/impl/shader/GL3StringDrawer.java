@@ -17,9 +17,12 @@ package net.opengrabeso.glg2d.impl.shader;
 
 import com.github.opengrabeso.jaagl.GL2GL3;
 import net.opengrabeso.opengl.util.awt.TextRenderer;
+import net.opengrabeso.opengl.util.packrect.PackingAlgorithm;
+import net.opengrabeso.glg2d.GLGraphics2D;
 import net.opengrabeso.glg2d.impl.gl2.GL2StringDrawer;
 
 import java.awt.*;
+import java.awt.font.GlyphVector;
 
 /**
  * Modification of {{GLGraphics2D}} class so that is can be used with {@code GLShaderGraphics2D}
@@ -28,13 +31,55 @@ public class GL3StringDrawer extends GL2StringDrawer {
 
     private final GL2GL3 gl;
 
+    // Meshes of the glyphs too large for the atlas
+    private final GlyphOutlineCache outlines;
+
     public GL3StringDrawer(GL2GL3 gl) {
+        this(gl, PackingAlgorithm.LEVELS);
+    }
+
+    public GL3StringDrawer(GL2GL3 gl, PackingAlgorithm packingAlgorithm) {
+        super(gl, packingAlgorithm);
         this.gl = gl;
+        outlines = new GlyphOutlineCache(gl.isGL3() ? "gl3/" : "gl2/");
+    }
+
+    @Override
+    public void setG2D(GLGraphics2D g2d) {
+        super.setG2D(g2d);
+        outlines.setup(gl);
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        outlines.dispose(gl);
+    }
+
+    @Override
+    protected boolean drawOutlines(GlyphVector glyphs, float x, float y, Color color) {
+        // keep the order with the text batched so far
+        flush();
+
+        float[] matrix = ((GLShaderGraphics2D) g2d).getUniformsObject().transformHook.getGLMatrixData();
+        outlines.draw(gl, glyphs, x, y, respectComposite(color).getRGBComponents(null), matrix);
+        return true;
+    }
+
+    @Override
+    protected boolean preloadOutlines(GlyphVector glyphs) {
+        outlines.preload(gl, glyphs);
+        return true;
     }
 
     @Override
     protected TextRenderer createTextRenderer(Font font, boolean antialias) {
-        return new TextRenderer(gl, font, antialias, false);
+        return new TextRenderer(gl, font, antialias, false, null, atlas);
+    }
+
+    @Override
+    protected TextRenderer createDistanceFieldRenderer(Font font) {
+        return TextRenderer.createDistanceFieldRenderer(gl, font, atlas);
     }
 
     @Override
@@ -44,8 +89,6 @@ public class GL3StringDrawer extends GL2StringDrawer {
 
     @Override
     protected float[] getTransform(TextRenderer renderer) {
-        setTextColorRespectComposite(renderer);
-
         float[] matrix = ((GLShaderGraphics2D) g2d).getUniformsObject().transformHook.getGLMatrixData();
         return matrix;
     }
@@ -181,6 +181,11 @@ public class GeometryShaderStrokePipeline extends AbstractShaderPipeline {
         gl.glProgramParameteri(programId, gl.GL_GEOMETRY_VERTICES_OUT(), maxVerticesOut);
     }
 
+    @Override
+    protected String getProgramKey(GL2GL3 gl) {
+        return super.getProgramKey(gl) + maxVerticesOut;
+    }
+
     @Override
     public void delete(GL2GL3 gl) {
         super.delete(gl);
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2015 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.opengrabeso.glg2d.impl.shader;
+
+
+import java.awt.Font;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.opengrabeso.jaagl.GL;
+import com.github.opengrabeso.jaagl.GL2GL3;
+
+import net.opengrabeso.glg2d.GLGraphics2D;
+import net.opengrabeso.glg2d.VertexBuffer;
+import net.opengrabeso.glg2d.impl.AbstractShapeHelper;
+import net.opengrabeso.glg2d.impl.AbstractTesselatorVisitor;
+
+/**
+ * Draws glyphs from triangle meshes of their outlines. Each glyph is
+ * tessellated once, at {@link #REFERENCE_SIZE}, and scaled to the size it's
+ * drawn at. This is meant for glyphs too large for the glyph atlas, which
+ * would otherwise be tessellated again on every draw.
+ */
+public class GlyphOutlineCache {
+    /**
+     * The font size the outlines are tessellated at. Curves are flattened to
+     * a quarter of a unit at this size, so they stay smooth up to about four
+     * times larger.
+     */
+    public static final float REFERENCE_SIZE = 256;
+
+    private static final double FLATNESS = 0.25;
+
+    /**
+     * How many glyph meshes are kept.
+     */
+    public static final int MAX_CACHED_GLYPHS = 1024;
+
+    private static final FontRenderContext REFERENCE_CONTEXT = new FontRenderContext(null, true, true);
+
+    private final AnyModePipeline pipeline;
+
+    private final Map<GlyphKey, float[]> meshes = new LinkedHashMap<GlyphKey, float[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<GlyphKey, float[]> eldest) {
+            return size() > MAX_CACHED_GLYPHS;
+        }
+    };
+
+    private final GlyphKey lookupKey = new GlyphKey();
+
+    private final VertexBuffer vertices = new VertexBuffer(1024);
+
+    private MeshTesselator tesselator;
+
+    // The font last drawn and its reference size variant
+    private Font lastFont;
+    private Font lastReferenceFont;
+
+    public GlyphOutlineCache(String shaderDirectory) {
+        pipeline = new AnyModePipeline(shaderDirectory);
+    }
+
+    /**
+     * Draws the glyphs with their origin at the given point in user space.
+     * The font of the glyphs must not be transformed.
+     */
+    public void draw(GL2GL3 gl, GlyphVector glyphs, float x, float y, float[] rgba, float[] glMatrixData) {
+        Font font = glyphs.getFont();
+        Font referenceFont = getReferenceFont(font);
+
+        float scale = font.getSize2D() / REFERENCE_SIZE;
+        int numGlyphs = glyphs.getNumGlyphs();
+        float[] positions = glyphs.getGlyphPositions(0, numGlyphs, null);
+
+        vertices.clear();
+        for (int i = 0; i < numGlyphs; i++) {
+            float[] mesh = getMesh(gl, referenceFont, glyphs.getGlyphCode(i));
+            float glyphX = x + positions[i * 2];
+            float glyphY = y + positions[i * 2 + 1];
+            for (int j = 0; j < mesh.length; j += 2) {
+                vertices.addVertex(glyphX + mesh[j] * scale, glyphY + mesh[j + 1] * scale);
+            }
+        }
+
+        FloatBuffer buffer = vertices.getBuffer();
+        if (buffer.position() == 0) {
+            return;
+        }
+
+        setup(gl);
+
+        buffer.flip();
+        pipeline.use(gl, true);
+        pipeline.setColor(gl, rgba);
+        pipeline.setTransform(gl, glMatrixData);
+        pipeline.draw(gl, gl.GL_TRIANGLES(), buffer);
+        pipeline.use(gl, false);
+    }
+
+    /**
+     * Tessellates the glyphs ahead of drawing them.
+     */
+    public void preload(GL2GL3 gl, GlyphVector glyphs) {
+        Font referenceFont = getReferenceFont(glyphs.getFont());
+        for (int i = 0; i < glyphs.getNumGlyphs(); i++) {
+            getMesh(gl, referenceFont, glyphs.getGlyphCode(i));
+        }
+    }
+
+    public void setup(GL2GL3 gl) {
+        if (!pipeline.isSetup()) {
+            pipeline.setup(gl);
+        }
+    }
+
+    /**
+     * Returns the number of glyph meshes kept.
+     */
+    public int size() {
+        return meshes.size();
+    }
+
+    public void clear() {
+        meshes.clear();
+    }
+
+    public void dispose(GL2GL3 gl) {
+        clear();
+        pipeline.delete(gl);
+    }
+
+    private Font getReferenceFont(Font font) {
+        if (font != lastFont) {
+            lastFont = font;
+            lastReferenceFont = font.getSize2D() == REFERENCE_SIZE ? font : font.deriveFont(REFERENCE_SIZE);
+        }
+
+        return lastReferenceFont;
+    }
+
+    private float[] getMesh(GL2GL3 gl, Font referenceFont, int glyphCode) {
+        float[] mesh = meshes.get(lookupKey.set(referenceFont, glyphCode));
+        if (mesh == null) {
+            if (tesselator == null) {
+                tesselator = new MeshTesselator(gl);
+            }
+
+            GlyphVector glyph = referenceFont.createGlyphVector(REFERENCE_CONTEXT, new int[] { glyphCode });
+            // Flattened here rather than by the path visitor, which would
+            // flatten for the current transform
+            PathIterator outline = glyph.getGlyphOutline(0).getPathIterator(null, FLATNESS);
+            Path2D.Float flattened = new Path2D.Float(outline.getWindingRule());
+            flattened.append(outline, false);
+            mesh = tesselator.tesselate(flattened);
+            meshes.put(new GlyphKey().set(referenceFont, glyphCode), mesh);
+        }
+
+        return mesh;
+    }
+
+    /**
+     * Collects the tessellated triangles, converting strips and fans to
+     * separate triangles so that many glyphs can go to a single draw.
+     */
+    private static class MeshTesselator extends AbstractTesselatorVisitor {
+        private final GL2GL3 gl;
+
+        private float[] triangles = new float[256];
+        private int size;
+
+        MeshTesselator(GL2GL3 gl) {
+            this.gl = gl;
+        }
+
+        @Override
+        public void setGLContext(GL context, GLGraphics2D g2d) {
+            // only collects the triangles
+        }
+
+        @Override
+        public GLGraphics2D getGLG2D() {
+            return null;
+        }
+
+        float[] tesselate(Shape shape) {
+            size = 0;
+            AbstractShapeHelper.visitShape(shape, this);
+            return Arrays.copyOf(triangles, size);
+        }
+
+        @Override
+        protected void endTess() {
+            FloatBuffer buf = vBuffer.getBuffer();
+            buf.flip();
+
+            int count = buf.limit() / 2;
+            for (int i = 2; i < count; i++) {
+                if (drawMode == gl.GL_TRIANGLE_FAN()) {
+                    addTriangle(buf, 0, i - 1, i);
+                } else if (drawMode == gl.GL_TRIANGLE_STRIP()) {
+                    // keep the winding of every other triangle
+                    if ((i & 1) == 0) {
+                        addTriangle(buf, i - 2, i - 1, i);
+                    } else {
+                        addTriangle(buf, i - 1, i - 2, i);
+                    }
+                } else if (i % 3 == 2) {
+                    addTriangle(buf, i - 2, i - 1, i);
+                }
+            }
+        }
+
+        private void addTriangle(FloatBuffer buf, int a, int b, int c) {
+            if (size + 6 > triangles.length) {
+                triangles = Arrays.copyOf(triangles, triangles.length * 2);
+            }
+
+            triangles[size++] = buf.get(a * 2);
+            triangles[size++] = buf.get(a * 2 + 1);
+            triangles[size++] = buf.get(b * 2);
+            triangles[size++] = buf.get(b * 2 + 1);
+            triangles[size++] = buf.get(c * 2);
+            triangles[size++] = buf.get(c * 2 + 1);
+        }
+    }
+
+    private static class GlyphKey {
+        Font font;
+        int glyphCode;
+
+        GlyphKey set(Font font, int glyphCode) {
+            this.font = font;
+            this.glyphCode = glyphCode;
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return font.hashCode() * 31 + glyphCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof GlyphKey)) {
+                return false;
+            }
+
+            GlyphKey other = (GlyphKey) obj;
+            return glyphCode == other.glyphCode && font.equals(other.font);
+        }
+    }
+}
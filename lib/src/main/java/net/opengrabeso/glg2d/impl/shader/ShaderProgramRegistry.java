@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.opengrabeso.glg2d.impl.shader;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.github.opengrabeso.jaagl.GL2GL3;
+
+/**
+ * Shares linked shader programs between the pipelines of a GL context, so that
+ * pipelines built from the same shader sources, such as the fill, tessellation
+ * and stroke visitors, compile them only once. Programs are reference counted
+ * and deleted when the last pipeline using them releases them.
+ *
+ * <p>
+ * There is one registry per {@code GL} object, which stands for its context.
+ * The registry doesn't keep the {@code GL} object, so that it's dropped with
+ * the context, and is removed as soon as it has no programs. Pipelines
+ * sharing a program must set the uniforms they need before each draw, as the
+ * values are shared as well.
+ * </p>
+ */
+public class ShaderProgramRegistry {
+    private static final Map<GL2GL3, ShaderProgramRegistry> registries = new WeakHashMap<GL2GL3, ShaderProgramRegistry>();
+
+    private final Map<String, Program> programsByKey = new HashMap<String, Program>();
+    private final Map<Integer, Program> programsById = new HashMap<Integer, Program>();
+
+    private long compileCount;
+
+    protected ShaderProgramRegistry() {
+    }
+
+    /**
+     * Returns the registry of the context.
+     */
+    public static synchronized ShaderProgramRegistry get(GL2GL3 gl) {
+        ShaderProgramRegistry registry = registries.get(gl);
+        if (registry == null) {
+            registry = new ShaderProgramRegistry();
+            registries.put(gl, registry);
+        }
+
+        return registry;
+    }
+
+    /**
+     * Returns the program for the key, linking it with the factory if there's
+     * none yet. Each call must be paired with {@link #release}.
+     *
+     * @param key
+     *          identifies the program, such as its shader sources
+     */
+    public int acquire(GL2GL3 gl, String key, ProgramFactory factory) {
+        Program program = programsByKey.get(key);
+        if (program == null) {
+            program = new Program(key, factory.create(gl));
+            compileCount++;
+            programsByKey.put(key, program);
+            programsById.put(program.id, program);
+        }
+
+        program.references++;
+        return program.id;
+    }
+
+    /**
+     * Releases the program acquired before, deleting it if nothing else uses
+     * it. Programs not from this registry are deleted right away.
+     */
+    public void release(GL2GL3 gl, int programId) {
+        Program program = programsById.get(programId);
+        if (program == null) {
+            gl.glDeleteProgram(programId);
+            return;
+        }
+
+        if (--program.references == 0) {
+            programsByKey.remove(program.key);
+            programsById.remove(programId);
+            gl.glDeleteProgram(programId);
+
+            if (programsById.isEmpty()) {
+                remove(gl, this);
+            }
+        }
+    }
+
+    private static synchronized void remove(GL2GL3 gl, ShaderProgramRegistry registry) {
+        if (registries.get(gl) == registry) {
+            registries.remove(gl);
+        }
+    }
+
+    /**
+     * Returns the number of programs in use.
+     */
+    public int getProgramCount() {
+        return programsById.size();
+    }
+
+    /**
+     * Returns how many programs were linked, to see how many were shared.
+     */
+    public long getCompileCount() {
+        return compileCount;
+    }
+
+    /**
+     * Links a program when the registry doesn't have it yet.
+     */
+    public interface ProgramFactory {
+        int create(GL2GL3 gl);
+    }
+
+    private static class Program {
+        final String key;
+        final int id;
+        int references;
+
+        Program(String key, int id) {
+            this.key = key;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.opengrabeso.opengl.util.awt;
+
+import java.util.Arrays;
+
+/**
+ * Maps Unicode code points, including the supplementary ones, to ints.
+ * The code points are split into pages of 256 entries and a page is
+ * allocated only when an entry in it is set, so that the map covers the
+ * whole Unicode range while paying only for the scripts actually used.
+ */
+class CodePointMap {
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int PAGE_COUNT = (Character.MAX_CODE_POINT + 1) >> PAGE_BITS;
+
+    private final int missingValue;
+    private final int[][] pages = new int[PAGE_COUNT][];
+
+    /**
+     * @param missingValue the value returned for code points which weren't set
+     */
+    CodePointMap(final int missingValue) {
+        this.missingValue = missingValue;
+    }
+
+    int get(final int codePoint) {
+        if (codePoint < 0 || codePoint > Character.MAX_CODE_POINT) {
+            return missingValue;
+        }
+
+        final int[] page = pages[codePoint >> PAGE_BITS];
+        return page == null ? missingValue : page[codePoint & PAGE_MASK];
+    }
+
+    /**
+     * Sets the value of the code point. Values outside of the Unicode range
+     * aren't stored, {@link #get get} returns the missing value for them.
+     */
+    void put(final int codePoint, final int value) {
+        if (codePoint < 0 || codePoint > Character.MAX_CODE_POINT) {
+            return;
+        }
+
+        int[] page = pages[codePoint >> PAGE_BITS];
+        if (page == null) {
+            page = new int[PAGE_SIZE];
+            Arrays.fill(page, missingValue);
+            pages[codePoint >> PAGE_BITS] = page;
+        }
+
+        page[codePoint & PAGE_MASK] = value;
+    }
+
+    void remove(final int codePoint) {
+        if (codePoint < 0 || codePoint > Character.MAX_CODE_POINT) {
+            return;
+        }
+
+        final int[] page = pages[codePoint >> PAGE_BITS];
+        if (page != null) {
+            page[codePoint & PAGE_MASK] = missingValue;
+        }
+    }
+
+    void clear() {
+        Arrays.fill(pages, null);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.opengrabeso.opengl.util.awt;
+
+/**
+ * Turns a rasterized glyph into a signed distance field. The distances are
+ * exact Euclidean distances computed with the separable algorithm of
+ * Felzenszwalb and Huttenlocher, "Distance Transforms of Sampled Functions".
+ */
+class DistanceField {
+    private static final float INF = 1e20f;
+
+    private DistanceField() {
+    }
+
+    /**
+     * Replaces the 8-bit coverage values with the signed distance to the
+     * outline. Pixels covered at least by half are inside. The outline maps to
+     * 128, and {@code spread} pixels inside or outside map to 255 or 0.
+     */
+    static void compute(final byte[] pixels, final int width, final int height, final float spread) {
+        final int size = width * height;
+        final float[] outside = new float[size];
+        final float[] inside = new float[size];
+
+        for (int i = 0; i < size; i++) {
+            final boolean in = (pixels[i] & 0xff) >= 128;
+            outside[i] = in ? 0 : INF;
+            inside[i] = in ? INF : 0;
+        }
+
+        transform(outside, width, height);
+        transform(inside, width, height);
+
+        for (int i = 0; i < size; i++) {
+            // distances are between pixel centers, the outline is half way
+            float d = (float) (Math.sqrt(outside[i]) - Math.sqrt(inside[i]));
+            d += d > 0 ? -0.5f : 0.5f;
+
+            final int value = Math.round(255 * (0.5f - d / (2 * spread)));
+            pixels[i] = (byte) Math.max(0, Math.min(255, value));
+        }
+    }
+
+    // squared distance transform of a 2D grid, in place
+    private static void transform(final float[] grid, final int width, final int height) {
+        final int n = Math.max(width, height);
+        final float[] f = new float[n];
+        final float[] d = new float[n];
+        final int[] v = new int[n];
+        final float[] z = new float[n + 1];
+
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                f[y] = grid[y * width + x];
+            }
+            transform(f, height, d, v, z);
+            for (int y = 0; y < height; y++) {
+                grid[y * width + x] = d[y];
+            }
+        }
+
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(grid, y * width, f, 0, width);
+            transform(f, width, d, v, z);
+            System.arraycopy(d, 0, grid, y * width, width);
+        }
+    }
+
+    // squared distance transform of a 1D function, the lower envelope of parabolas
+    private static void transform(final float[] f, final int n, final float[] d, final int[] v, final float[] z) {
+        int k = 0;
+        v[0] = 0;
+        z[0] = -INF;
+        z[1] = INF;
+
+        for (int q = 1; q < n; q++) {
+            float s = intersection(f, q, v[k]);
+            while (s <= z[k]) {
+                k--;
+                s = intersection(f, q, v[k]);
+            }
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = INF;
+        }
+
+        k = 0;
+        for (int q = 0; q < n; q++) {
+            while (z[k + 1] < q) {
+                k++;
+            }
+            final int dq = q - v[k];
+            d[q] = dq * dq + f[v[k]];
+        }
+    }
+
+    private static float intersection(final float[] f, final int q, final int p) {
+        return ((f[q] + q * q) - (f[p] + p * p)) / (2 * q - 2 * p);
+    }
+}
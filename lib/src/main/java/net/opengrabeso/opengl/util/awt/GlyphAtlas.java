@@ -0,0 +1,1048 @@
+/*
+ * Copyright (c) 2006 Sun Microsystems, Inc. All Rights Reserved.
+ * Copyright (c) 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. ALL
+ * EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED. SUN
+ * MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL SUN OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * SUN HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed or intended for use
+ * in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ */
+package net.opengrabeso.opengl.util.awt;
+
+import com.github.opengrabeso.jaagl.GL2GL3;
+import net.opengrabeso.glg2d.impl.shader.AnyModePipeline;
+import net.opengrabeso.glg2d.impl.shader.ShaderProgramRegistry;
+import net.opengrabeso.opengl.util.packrect.*;
+import net.opengrabeso.opengl.util.texture.Texture;
+import net.opengrabeso.opengl.util.texture.TextureCoords;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Backing store shared by any number of {@link TextRenderer}s. Glyphs and
+ * strings of all fonts are packed onto a list of pages, each page being a
+ * {@link TextureRenderer} with its own texture. All pages are drawn with a
+ * single quad pipeline, and one text program for coverage bitmaps and one for
+ * distance fields. The text color is stored in the vertices, so text in
+ * different fonts and colors ends up in the same draw call as long as it comes
+ * from the same page, uses the same transform and the same kind of entries.
+ * <p>
+ * Pages are {@link #PAGE_SIZE} square and never grow, which would mean
+ * reallocating and uploading the whole page. When no page has room for a new
+ * entry, a new page is added. Compaction of a fragmented page moves the
+ * entries to the new texture with framebuffer blits where the driver supports
+ * them, so nothing has to be uploaded again.
+ * </p>
+ * <p>
+ * The entries are kept within a byte budget, see {@link #setMaxBytes}. Each
+ * entry remembers the frame it was last drawn in, and when the budget is
+ * exceeded the least recently drawn ones are evicted. Entries drawn in the
+ * current frame are never evicted. The owner of a shared atlas calls
+ * {@link #nextFrame} once per frame; a renderer with a private atlas counts
+ * each of its render cycles as a frame.
+ * </p>
+ * <p>
+ * The atlas doesn't touch OpenGL until something is drawn.
+ * </p>
+ */
+public class GlyphAtlas {
+    static final int PAGE_SIZE = 1024;
+
+    // Entries larger than a page get a page of their own, up to this size
+    static final int MAX_PAGE_SIZE = 2048;
+
+    /**
+     * Default for {@link #setMaxBytes}.
+     */
+    public static final long MAX_BYTES = 16L * 1024 * 1024;
+
+    // The amount of vertical dead space on a page before we force a
+    // compaction
+    private static final float MAX_VERTICAL_FRAGMENTATION = 0.7f;
+
+    // Side of the solid entry on each page which rectangles drawn with the
+    // text map, sampled at its center so that filtering stays inside it
+    private static final int SOLID_SIZE = 4;
+
+    // Once over budget, at least this share of the budget is evicted
+    // at once, so that the entries aren't sorted for every addition
+    private static final int EVICTION_FRACTION = 16;
+
+    private static final Comparator<Rect> lastUsedComparator = new Comparator<Rect>() {
+        @Override
+        public int compare(final Rect r1, final Rect r2) {
+            final long l1 = ((TextRenderer.TextData) r1.getUserData()).lastUsed;
+            final long l2 = ((TextRenderer.TextData) r2.getUserData()).lastUsed;
+            return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+        }
+    };
+
+    private final GL2GL3 gl;
+
+    private final PackingAlgorithm packingAlgorithm;
+
+    private final List<Page> pages = new ArrayList<Page>();
+    private int maxPageSize;
+
+    private long maxBytes = MAX_BYTES;
+
+    // Sum of the areas of all entries, which take a byte per pixel
+    private long usedBytes;
+
+    private long frame;
+
+    private long uses;
+    private long misses;
+    private long evictions;
+
+    // Incremented whenever entries move on the pages
+    private long compactions;
+
+    // Whether GL_LINEAR filtering is enabled for the pages
+    private boolean smoothing = true;
+
+    private final TextProgram textProgram = new TextProgram("TextShader.f");
+    private final TextProgram distanceFieldProgram = new TextProgram("DistanceFieldShader.f");
+
+    // Whether the collected quads come from distance fields
+    private boolean distanceField;
+
+    private Pipelined_QuadRenderer quadRenderer;
+
+    // Read and draw framebuffers for copying between page textures, null
+    // until first needed
+    private int[] copyFramebuffers;
+    private final int[] savedFramebuffer = new int[1];
+    private boolean savedScissorTest;
+
+    // The page of the quads waiting in the quad renderer
+    private Page currentPage;
+
+    private float[] transform;
+    private final float[] color = new float[]{1, 1, 1, 1};
+
+    // Whether the quads are kept until flush() is called
+    private boolean batching;
+
+    public GlyphAtlas(final GL2GL3 gl) {
+        this(gl, PackingAlgorithm.LEVELS);
+    }
+
+    /**
+     * Creates an atlas placing the entries on its pages with the given
+     * algorithm.
+     */
+    public GlyphAtlas(final GL2GL3 gl, final PackingAlgorithm packingAlgorithm) {
+        this.gl = gl;
+        this.packingAlgorithm = packingAlgorithm;
+    }
+
+    /**
+     * Returns the number of pages allocated so far.
+     */
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * Sets how many bytes the entries may take before the least recently
+     * drawn ones are evicted. Entries drawn in the current frame are kept
+     * even above the budget. Defaults to {@link #MAX_BYTES}.
+     */
+    public void setMaxBytes(final long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the number of bytes the entries take.
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Starts a new frame. Evicts entries beyond the budget, which can be left
+     * over when the last frame needed more, and releases pages which became
+     * empty.
+     */
+    public void nextFrame() {
+        frame++;
+
+        if (usedBytes > maxBytes) {
+            evict(usedBytes - maxBytes);
+        }
+
+        for (int i = pages.size() - 1; i > 0; i--) {
+            final Page page = pages.get(i);
+            if (page.isEmpty()) {
+                if (page == currentPage) {
+                    flush();
+                    currentPage = null;
+                }
+                page.dispose();
+                pages.remove(i);
+            }
+        }
+    }
+
+    public long getFrame() {
+        return frame;
+    }
+
+    /**
+     * Returns how many times an entry was drawn which already was on the
+     * atlas.
+     */
+    public long getHitCount() {
+        return uses - misses;
+    }
+
+    /**
+     * Returns how many entries had to be rasterized and added to the atlas.
+     */
+    public long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns how many entries were evicted to make room for others.
+     */
+    public long getEvictionCount() {
+        return evictions;
+    }
+
+    public void resetStatistics() {
+        uses = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Returns how many times entries were moved to compact a page. Texture
+     * coordinates computed before are not valid any more.
+     */
+    long getCompactionCount() {
+        return compactions;
+    }
+
+    /**
+     * Returns the share of the allocated page area covered by entries,
+     * between 0 and 1, or 0 if no page was allocated yet.
+     */
+    public float getOccupancy() {
+        long used = 0;
+        long total = 0;
+        for (final Page page : pages) {
+            used += (long) (page.packer.getOccupancy() * page.packer.w() * page.packer.h());
+            total += (long) page.packer.w() * page.packer.h();
+        }
+
+        return total == 0 ? 0 : (float) used / total;
+    }
+
+    /**
+     * Returns a line per page with its size and occupancy, for tuning
+     * the page size and the packing algorithm.
+     */
+    public String getOccupancyReport() {
+        final StringBuilder report = new StringBuilder();
+        for (int i = 0; i < pages.size(); i++) {
+            final RectanglePacker packer = pages.get(i).packer;
+            report.append(String.format("page %d: %dx%d, %.1f%% occupied, %.1f%% fragmented%n",
+                    i, packer.w(), packer.h(), 100 * packer.getOccupancy(),
+                    100 * packer.verticalFragmentationRatio()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Sets whether smoothing (i.e., GL_LINEAR filtering) is enabled for all
+     * pages of this atlas.
+     */
+    public void setSmoothing(final boolean smoothing) {
+        this.smoothing = smoothing;
+        for (final Page page : pages) {
+            page.getBackingStore().setSmoothing(smoothing);
+        }
+    }
+
+    public boolean getSmoothing() {
+        return smoothing;
+    }
+
+    /**
+     * Sets whether the quads are kept across {@link #endRendering} calls until
+     * {@link #flush} is called. The owner of a batching atlas must flush it
+     * before changing any GL state the text depends on, and before drawing
+     * anything else. Defaults to false.
+     */
+    public void setBatching(final boolean batching) {
+        this.batching = batching;
+    }
+
+    public boolean isBatching() {
+        return batching;
+    }
+
+    /**
+     * Starts drawing text with the given transform. Quads are collected until
+     * {@link #endRendering} (or {@link #flush} when batching), a transform
+     * change or a page change.
+     */
+    public void beginRendering(final float[] transform) {
+        if (this.transform == null || !Arrays.equals(this.transform, transform)) {
+            flush();
+            this.transform = transform.clone();
+        }
+
+        gl.glEnable(gl.GL_BLEND());
+        gl.glBlendFunc(gl.GL_ONE(), gl.GL_ONE_MINUS_SRC_ALPHA());
+    }
+
+    public void endRendering() {
+        if (!batching) {
+            flush();
+        }
+    }
+
+    /**
+     * Sets whether the following quads map signed distance fields rather than
+     * coverage bitmaps.
+     */
+    public void setDistanceField(final boolean distanceField) {
+        if (distanceField != this.distanceField) {
+            flush();
+            this.distanceField = distanceField;
+        }
+    }
+
+    /**
+     * Changes the text color, non-premultiplied components ranging from 0 to 1.
+     * The color is stored in the vertices, so this doesn't need a flush.
+     */
+    public void setColor(final float r, final float g, final float b, final float a) {
+        color[0] = r;
+        color[1] = g;
+        color[2] = b;
+        color[3] = a;
+    }
+
+    /**
+     * Draws all collected quads.
+     */
+    public void flush() {
+        if (quadRenderer != null && !quadRenderer.isEmpty()) {
+            quadRenderer.draw();
+
+            // The OpenGL spec is unclear about whether this changes the
+            // buffer bindings, so preemptively zero out the GL_ARRAY_BUFFER
+            // binding
+            gl.glBindBuffer(gl.GL_ARRAY_BUFFER(), 0);
+        }
+    }
+
+    /**
+     * Creates the text programs and the vertex buffer, which otherwise happens
+     * when text is drawn for the first time. Needs a current GL context.
+     */
+    public void setup() {
+        textProgram.ensureSetup();
+        distanceFieldProgram.ensureSetup();
+
+        if (quadRenderer == null) {
+            createQuadRenderer();
+        }
+    }
+
+    /**
+     * Uploads the entries added since the pages were last drawn to their
+     * textures, which otherwise happens when they are drawn.
+     */
+    public void upload() {
+        for (final Page page : pages) {
+            final TextureRenderer renderer = page.getBackingStore();
+            if (renderer != null) {
+                renderer.getTexture(); // triggers texture uploads
+            }
+        }
+    }
+
+    /**
+     * Disposes of all pages and the text programs. The atlas may be used again
+     * afterwards, it will start empty.
+     */
+    public void dispose() {
+        for (final Page page : pages) {
+            page.dispose();
+        }
+        pages.clear();
+        currentPage = null;
+        transform = null;
+        usedBytes = 0;
+
+        if (quadRenderer != null) {
+            quadRenderer.dispose();
+            quadRenderer = null;
+        }
+
+        textProgram.dispose();
+        distanceFieldProgram.dispose();
+
+        if (copyFramebuffers != null) {
+            gl.glDeleteFramebuffers(copyFramebuffers);
+            copyFramebuffers = null;
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // Internals only below this point
+    //
+
+    /**
+     * Places the rectangle on one of the pages and stores the page in its
+     * {@link TextRenderer.TextData}.
+     */
+    void add(final Rect rect) {
+        final TextRenderer.TextData data = (TextRenderer.TextData) rect.getUserData();
+        final long bytes = (long) rect.w() * rect.h();
+        if (usedBytes + bytes > maxBytes) {
+            evict(Math.max(usedBytes + bytes - maxBytes, maxBytes / EVICTION_FRACTION));
+        }
+
+        Page page = tryAdd(rect);
+
+        if (page == null) {
+            int size = Math.min(PAGE_SIZE, getMaxPageSize());
+            // leaving room for the solid entry
+            while (size < Math.max(rect.w(), rect.h()) + SOLID_SIZE && size < getMaxPageSize()) {
+                size = Math.min(size * 2, getMaxPageSize());
+            }
+
+            page = new Page(size);
+            pages.add(page);
+            page.packer.add(rect);
+        }
+
+        data.page = page;
+        // Not evicted before it's drawn
+        data.lastUsed = frame;
+        usedBytes += bytes;
+        misses++;
+    }
+
+    /**
+     * Records that the entry is drawn in the current frame.
+     */
+    void use(final TextRenderer.TextData data) {
+        data.lastUsed = frame;
+        uses++;
+    }
+
+    private Page tryAdd(final Rect rect) {
+        for (final Page page : pages) {
+            if (page.packer.tryAdd(rect)) {
+                return page;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Evicts the least recently drawn entries until at least the given number
+     * of bytes is freed, or only entries drawn in the current frame are left.
+     */
+    void evict(final long bytes) {
+        // the quads waiting to be drawn might use the removed entries
+        flush();
+
+        final List<Rect> candidates = new ArrayList<Rect>();
+        for (final Page page : pages) {
+            page.packer.visit(new RectVisitor() {
+                @Override
+                public void visit(final Rect rect) {
+                    if (rect != page.solid && ((TextRenderer.TextData) rect.getUserData()).lastUsed < frame) {
+                        candidates.add(rect);
+                    }
+                }
+            });
+        }
+
+        Collections.sort(candidates, lastUsedComparator);
+
+        long freed = 0;
+        for (int i = 0; i < candidates.size() && freed < bytes; i++) {
+            final Rect r = candidates.get(i);
+            final TextRenderer.TextData data = (TextRenderer.TextData) r.getUserData();
+            data.page.packer.remove(r);
+            data.page.evicted = true;
+            freed += (long) r.w() * r.h();
+            evictions++;
+            data.owner.evicted(r);
+        }
+        usedBytes -= freed;
+
+        for (final Page page : pages) {
+            // If we removed rectangles from the page, try to do a compaction
+            if (page.evicted && page.packer.verticalFragmentationRatio() > MAX_VERTICAL_FRAGMENTATION) {
+                page.packer.compact();
+            }
+            page.evicted = false;
+        }
+    }
+
+    /**
+     * Removes a single entry, calling back its owner as on eviction.
+     */
+    void remove(final Rect rect) {
+        // the quads waiting to be drawn might use the entry
+        flush();
+
+        final TextRenderer.TextData data = (TextRenderer.TextData) rect.getUserData();
+        data.page.packer.remove(rect);
+        usedBytes -= (long) rect.w() * rect.h();
+        data.owner.evicted(rect);
+    }
+
+    /**
+     * Removes all entries of the given renderer.
+     */
+    void remove(final TextRenderer owner) {
+        flush();
+
+        for (final Page page : pages) {
+            final List<Rect> ownedRects = new ArrayList<Rect>();
+
+            page.packer.visit(new RectVisitor() {
+                @Override
+                public void visit(final Rect rect) {
+                    if (rect != page.solid && ((TextRenderer.TextData) rect.getUserData()).owner == owner) {
+                        ownedRects.add(rect);
+                    }
+                }
+            });
+
+            for (final Rect r : ownedRects) {
+                page.packer.remove(r);
+                usedBytes -= (long) r.w() * r.h();
+            }
+        }
+    }
+
+    void quad(final Page page, final float x, final float y, final float z,
+              final float width, final float height, final TextureCoords coords) {
+        quad(page, x, y, z, width, height, coords.left(), coords.bottom(), coords.right(), coords.top());
+    }
+
+    void quad(final Page page, final float x, final float y, final float z,
+              final float width, final float height,
+              final float left, final float bottom, final float right, final float top) {
+        if (page != currentPage) {
+            flush();
+            currentPage = page;
+        }
+
+        if (quadRenderer == null) {
+            createQuadRenderer();
+        }
+
+        quadRenderer.quad(x, y, z, width, height, left, bottom, right, top, color);
+    }
+
+    /**
+     * Draws a rectangle in the current color, in the coordinates of the text.
+     * It maps the solid entry of the page of the quads collected so far, so
+     * that it goes into the same draw call as the text around it.
+     */
+    public void fillRect(final float x, final float y, final float z, final float width, final float height) {
+        Page page = currentPage;
+        if (page == null) {
+            if (pages.isEmpty()) {
+                pages.add(new Page(Math.min(PAGE_SIZE, getMaxPageSize())));
+            }
+            page = pages.get(0);
+        }
+
+        final TextureRenderer renderer = page.getBackingStore();
+        // Handles case where NPOT texture is used for backing store
+        final TextureCoords wholeImageTexCoords = renderer.getTexture().getImageTexCoords();
+        final float s = wholeImageTexCoords.right() * (page.solid.x() + SOLID_SIZE / 2f) / renderer.getWidth();
+        final float t = wholeImageTexCoords.bottom() * (page.solid.y() + SOLID_SIZE / 2f) / renderer.getHeight();
+
+        quad(page, x, y, z, width, height, s, t, s, t);
+    }
+
+    private void createQuadRenderer() {
+        quadRenderer = new Pipelined_QuadRenderer(gl) {
+            @Override
+            protected void uploadTexture() {
+                currentPage.getBackingStore().getTexture(); // triggers texture uploads
+            }
+
+            @Override
+            protected void setupDraw() {
+                currentPage.getBackingStore().begin3DRendering();
+                (distanceField ? distanceFieldProgram : textProgram).setupVertexAttributes();
+            }
+
+            @Override
+            protected void cleanupDraw() {
+                (distanceField ? distanceFieldProgram : textProgram).cleanupVertexAttributes();
+                currentPage.getBackingStore().end3DRendering();
+            }
+        };
+    }
+
+    private int getMaxPageSize() {
+        if (maxPageSize == 0) {
+            // Query OpenGL for the maximum texture size to keep the pages
+            // from expanding too large
+            final int[] sz = new int[1];
+            gl.glGetIntegerv(gl.GL_MAX_TEXTURE_SIZE(), sz);
+            maxPageSize = Math.min(MAX_PAGE_SIZE, sz[0]);
+        }
+
+        return maxPageSize;
+    }
+
+    /**
+     * Prepares copying from the texture of one page backing store to another
+     * with framebuffer blits. Returns false if that isn't possible, in which
+     * case the target has to be uploaded from its image.
+     */
+    private boolean beginCopy(final TextureRenderer source, final TextureRenderer target) {
+        if (!gl.versionAtLeast(3, 0) && !gl.isExtensionAvailable("GL_ARB_framebuffer_object")) {
+            return false;
+        }
+
+        // Brings the source texture up to date
+        final Texture sourceTexture = source.getTexture();
+        final Texture targetTexture = target.allocateTexture();
+        if (targetTexture == null) {
+            return false;
+        }
+
+        gl.glGetIntegerv(gl.GL_FRAMEBUFFER_BINDING(), savedFramebuffer);
+        // Blits are subject to the scissor test
+        savedScissorTest = gl.glIsEnabled(gl.GL_SCISSOR_TEST());
+        gl.glDisable(gl.GL_SCISSOR_TEST());
+
+        if (copyFramebuffers == null) {
+            copyFramebuffers = new int[2];
+            gl.glGenFramebuffers(copyFramebuffers);
+        }
+
+        gl.glBindFramebuffer(gl.GL_READ_FRAMEBUFFER(), copyFramebuffers[0]);
+        gl.glFramebufferTexture2D(gl.GL_READ_FRAMEBUFFER(), gl.GL_COLOR_ATTACHMENT0(), gl.GL_TEXTURE_2D(),
+                sourceTexture.getTextureObject(), 0);
+        gl.glBindFramebuffer(gl.GL_DRAW_FRAMEBUFFER(), copyFramebuffers[1]);
+        gl.glFramebufferTexture2D(gl.GL_DRAW_FRAMEBUFFER(), gl.GL_COLOR_ATTACHMENT0(), gl.GL_TEXTURE_2D(),
+                targetTexture.getTextureObject(), 0);
+
+        // Luminance textures of the fixed function pipeline can't be
+        // attached
+        if (gl.glCheckFramebufferStatus(gl.GL_READ_FRAMEBUFFER()) != gl.GL_FRAMEBUFFER_COMPLETE() ||
+                gl.glCheckFramebufferStatus(gl.GL_DRAW_FRAMEBUFFER()) != gl.GL_FRAMEBUFFER_COMPLETE()) {
+            endCopy();
+            target.markDirty(0, 0, target.getWidth(), target.getHeight());
+            return false;
+        }
+
+        return true;
+    }
+
+    private void copy(final Rect from, final Rect to) {
+        gl.glBlitFramebuffer(from.x(), from.y(), from.x() + from.w(), from.y() + from.h(),
+                to.x(), to.y(), to.x() + to.w(), to.y() + to.h(),
+                gl.GL_COLOR_BUFFER_BIT(), gl.GL_NEAREST());
+    }
+
+    private void endCopy() {
+        // Detach the textures, the target is the only one to survive
+        gl.glFramebufferTexture2D(gl.GL_DRAW_FRAMEBUFFER(), gl.GL_COLOR_ATTACHMENT0(), gl.GL_TEXTURE_2D(), 0, 0);
+        gl.glBindFramebuffer(gl.GL_READ_FRAMEBUFFER(), copyFramebuffers[0]);
+        gl.glFramebufferTexture2D(gl.GL_READ_FRAMEBUFFER(), gl.GL_COLOR_ATTACHMENT0(), gl.GL_TEXTURE_2D(), 0, 0);
+
+        gl.glBindFramebuffer(gl.GL_FRAMEBUFFER(), savedFramebuffer[0]);
+        if (savedScissorTest) {
+            gl.glEnable(gl.GL_SCISSOR_TEST());
+        }
+    }
+
+    static private String readResource(Class<?> context, String path) {
+        InputStream stream = null;
+        if (context != null) {
+            stream = context.getResourceAsStream(path);
+        }
+
+        if (stream == null) {
+            stream = GlyphAtlas.class.getResourceAsStream(path);
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
+        StringBuilder sb = new StringBuilder();
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sb.append(line).append("\n");
+            }
+        } catch (IOException ignored) {
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * The shader program for one kind of atlas entries, all of them share the
+     * vertex format and the vertex shader.
+     */
+    private class TextProgram {
+        private final String fragmentShader;
+
+        private int program;
+        private int transformUniform = -1;
+        private int vertCoordAttrib = -1;
+        private int texCoordAttrib = -1;
+        private int colorAttrib = -1;
+
+        private boolean useVAO = false; // avoid using VAO on older OpenGL
+        private int vao = -1;
+        private boolean vaoSetupDone = false;
+
+        TextProgram(final String fragmentShader) {
+            this.fragmentShader = fragmentShader;
+        }
+
+        // create the program and similar OpenGL objects
+        private void setup() {
+            gl.glGetError(); // flush any pending errors
+
+            String directory = gl.isGL3() ? "gl3/" : "gl2/";
+
+            final String vsSource = readResource(AnyModePipeline.class, directory + "TextShader.v");
+            final String fsSource = readResource(AnyModePipeline.class, directory + fragmentShader);
+
+            // shared with the atlases of other drawers on the context
+            program = ShaderProgramRegistry.get(gl).acquire(gl, vsSource + '\0' + fsSource, new ShaderProgramRegistry.ProgramFactory() {
+                @Override
+                public int create(final GL2GL3 gl) {
+                    return ShaderLoader.loadProgram(gl, vsSource, fsSource);
+                }
+            });
+
+            transformUniform = gl.glGetUniformLocation(program, "MVPMatrix");
+
+            vertCoordAttrib = gl.glGetAttribLocation(program, "MCVertex");
+            texCoordAttrib = gl.glGetAttribLocation(program, "TexCoord0");
+            colorAttrib = gl.glGetAttribLocation(program, "VertexColor");
+
+            // try VAO support
+            // it seems when there is no VAO glGenVertexArrays fails gracefully by returning -1,
+            // but as it is hard to test this on older implementations, using an additional try should do no harm
+            try {
+                int[] vao = new int[]{0};
+                gl.glGenVertexArrays(vao);
+                this.vao = vao[0];
+                this.useVAO = this.vao > 0;
+
+            } catch (Exception ex) {
+                this.useVAO = false;
+            }
+        }
+
+        private void setupVertexAttributesImpl() {
+            gl.glEnableVertexAttribArray(vertCoordAttrib);
+            gl.glEnableVertexAttribArray(texCoordAttrib);
+            gl.glEnableVertexAttribArray(colorAttrib);
+
+            final int stride = TextRenderer.oneVertexSizeInBytes;
+            gl.glVertexAttribPointer(vertCoordAttrib, 3, gl.GL_FLOAT(), false, stride, 0);
+            gl.glVertexAttribPointer(texCoordAttrib, 2, gl.GL_FLOAT(), false, stride, 3 * Float.BYTES);
+            gl.glVertexAttribPointer(colorAttrib, 4, gl.GL_FLOAT(), false, stride, 5 * Float.BYTES);
+        }
+
+        void ensureSetup() {
+            if (program == 0) {
+                setup();
+            }
+        }
+
+        void setupVertexAttributes() {
+            ensureSetup();
+
+            if (useVAO) {
+                gl.glBindVertexArray(vao);
+                if (!vaoSetupDone) {
+                    setupVertexAttributesImpl();
+                    vaoSetupDone = true;
+                }
+            } else {
+                setupVertexAttributesImpl();
+            }
+
+            gl.glUseProgram(program);
+            gl.glUniformMatrix4fv(transformUniform, 1, false, transform, 0);
+        }
+
+        void cleanupVertexAttributes() {
+            gl.glUseProgram(0);
+
+            if (useVAO) {
+                gl.glBindVertexArray(0);
+            } else {
+                gl.glDisableVertexAttribArray(vertCoordAttrib);
+                gl.glDisableVertexAttribArray(texCoordAttrib);
+                gl.glDisableVertexAttribArray(colorAttrib);
+            }
+        }
+
+        void dispose() {
+            if (program != 0) {
+                ShaderProgramRegistry.get(gl).release(gl, program);
+                program = 0;
+            }
+
+            if (useVAO) {
+                gl.glDeleteVertexArrays(new int[]{vao});
+                useVAO = false;
+                vaoSetupDone = false;
+            }
+        }
+    }
+
+    /**
+     * One texture of the atlas, with the packer deciding where the entries go.
+     */
+    class Page implements BackingStoreManager {
+        final RectanglePacker packer;
+
+        private TextureRenderer cachedBackingStore;
+        private Graphics2D cachedGraphics;
+
+        // Graphics used while moving entries during a compaction
+        private Graphics2D movementGraphics;
+
+        // Whether the entries being moved are also copied on the GPU
+        private boolean copyingTextures;
+
+        // Whether entries were evicted from the page by the running
+        // eviction
+        boolean evicted;
+
+        // White entry for drawing rectangles, never evicted
+        final Rect solid = new Rect(0, 0, SOLID_SIZE, SOLID_SIZE, null);
+
+        Page(final int size) {
+            packer = new RectanglePacker(this, size, size, packingAlgorithm);
+            packer.setMaxSize(size, size);
+            addSolid();
+        }
+
+        private void addSolid() {
+            packer.add(solid);
+            getGraphics().fillRect(solid.x(), solid.y(), solid.w(), solid.h());
+            getBackingStore().markDirty(solid.x(), solid.y(), solid.w(), solid.h());
+        }
+
+        TextureRenderer getBackingStore() {
+            final TextureRenderer renderer = (TextureRenderer) packer.getBackingStore();
+
+            if (renderer != cachedBackingStore) {
+                // Backing store changed since last time; discard any cached Graphics2D
+                if (cachedGraphics != null) {
+                    cachedGraphics.dispose();
+                    cachedGraphics = null;
+                }
+
+                cachedBackingStore = renderer;
+            }
+
+            return cachedBackingStore;
+        }
+
+        /**
+         * Returns the graphics for rasterizing entries onto this page, set up
+         * with AlphaComposite.Src and the color white. Font and rendering hints
+         * are left to the caller.
+         */
+        Graphics2D getGraphics() {
+            final TextureRenderer renderer = getBackingStore();
+
+            if (cachedGraphics == null) {
+                cachedGraphics = renderer.createGraphics();
+                cachedGraphics.setComposite(AlphaComposite.Src);
+                cachedGraphics.setColor(Color.WHITE);
+            }
+
+            return cachedGraphics;
+        }
+
+        boolean isEmpty() {
+            // only the solid entry is left
+            return Math.round(packer.getOccupancy() * packer.w() * packer.h()) <= SOLID_SIZE * SOLID_SIZE;
+        }
+
+        void dispose() {
+            if (cachedGraphics != null) {
+                cachedGraphics.dispose();
+                cachedGraphics = null;
+            }
+
+            packer.dispose();
+            cachedBackingStore = null;
+        }
+
+        @Override
+        public Object allocateBackingStore(final int w, final int h) {
+            final TextureRenderer renderer = TextureRenderer.createAlphaOnlyRenderer(gl, w, h);
+            renderer.setSmoothing(smoothing);
+            return renderer;
+        }
+
+        @Override
+        public void deleteBackingStore(final Object backingStore) {
+            ((TextureRenderer) backingStore).dispose();
+        }
+
+        @Override
+        public boolean preExpand(final Rect cause, final int attemptNumber) {
+            // Only try this one time; clear out potentially obsolete entries
+            if (attemptNumber == 0) {
+                evict((long) cause.w() * cause.h());
+                return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        public boolean additionFailed(final Rect cause, final int attemptNumber) {
+            // Heavy hammer -- drop everything on this page
+            flush();
+
+            final List<Rect> rects = new ArrayList<Rect>();
+            packer.visit(new RectVisitor() {
+                @Override
+                public void visit(final Rect rect) {
+                    rects.add(rect);
+                }
+            });
+
+            packer.clear();
+            for (final Rect r : rects) {
+                if (r == solid) {
+                    continue;
+                }
+                usedBytes -= (long) r.w() * r.h();
+                evictions++;
+                ((TextRenderer.TextData) r.getUserData()).owner.evicted(r);
+            }
+            addSolid();
+
+            return attemptNumber == 0;
+        }
+
+        @Override
+        public boolean canCompact() {
+            return true;
+        }
+
+        @Override
+        public void beginMovement(final Object oldBackingStore, final Object newBackingStore) {
+            // Draw any outstanding glyphs from their current locations
+            flush();
+
+            movementGraphics = ((TextureRenderer) newBackingStore).createGraphics();
+            copyingTextures = oldBackingStore != newBackingStore &&
+                    beginCopy((TextureRenderer) oldBackingStore, (TextureRenderer) newBackingStore);
+        }
+
+        @Override
+        public void move(final Object oldBackingStore, final Rect oldLocation,
+                         final Object newBackingStore, final Rect newLocation) {
+            final TextureRenderer oldRenderer = (TextureRenderer) oldBackingStore;
+            final TextureRenderer newRenderer = (TextureRenderer) newBackingStore;
+
+            if (oldRenderer == newRenderer) {
+                // Movement on the same backing store -- easy case
+                movementGraphics.copyArea(oldLocation.x(), oldLocation.y(), oldLocation.w(),
+                        oldLocation.h(), newLocation.x() - oldLocation.x(),
+                        newLocation.y() - oldLocation.y());
+                newRenderer.markDirty(newLocation.x(), newLocation.y(), newLocation.w(), newLocation.h());
+            } else {
+                // Keep the new renderer's image in sync even when the
+                // texture is copied on the GPU, it's the master copy
+                final Raster src = ((BufferedImage) oldRenderer.getImage()).getRaster().createChild(
+                        oldLocation.x(), oldLocation.y(), oldLocation.w(), oldLocation.h(), 0, 0, null);
+                ((BufferedImage) newRenderer.getImage()).getRaster().setRect(newLocation.x(), newLocation.y(), src);
+
+                if (copyingTextures) {
+                    copy(oldLocation, newLocation);
+                } else {
+                    newRenderer.markDirty(newLocation.x(), newLocation.y(), newLocation.w(), newLocation.h());
+                }
+            }
+        }
+
+        @Override
+        public void endMovement(final Object oldBackingStore, final Object newBackingStore) {
+            movementGraphics.dispose();
+            movementGraphics = null;
+
+            if (copyingTextures) {
+                endCopy();
+                copyingTextures = false;
+            }
+            compactions++;
+        }
+    }
+}
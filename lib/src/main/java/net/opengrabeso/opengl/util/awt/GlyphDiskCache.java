@@ -0,0 +1,374 @@
+/*
+ * Copyright 2015 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.opengrabeso.opengl.util.awt;
+
+import java.awt.Font;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Keeps the rasterized glyphs of {@link TextRenderer}s in a directory, so that
+ * they don't have to be rasterized again after a restart. Each font has a file
+ * with the pixels and the placement of its glyphs, which is read when a
+ * renderer of the font is attached with {@link TextRenderer#setDiskCache}.
+ * The file is read into memory rather than mapped, so that nothing holds it
+ * open when it's replaced or deleted.
+ * The glyphs rasterized since are written by {@link #save}.
+ * <p>
+ * A file is only used if it was written for the same font, size, style and
+ * rendering mode, by the same Java version on the same operating system.
+ * Otherwise it is ignored and replaced on the next save. Files are replaced
+ * atomically where the file system supports it, and a damaged file is
+ * ignored like a stale one.
+ * </p>
+ */
+public class GlyphDiskCache {
+    /**
+     * Default for {@link #setMaxBytes}.
+     */
+    public static final long MAX_BYTES = 16L * 1024 * 1024;
+
+    private static final int MAGIC = 0x474c4743;
+    // Bump whenever the file layout or the way glyphs are rasterized changes
+    private static final int VERSION = 1;
+
+    private static final String SUFFIX = ".glyphs";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File directory;
+    private final Map<String, FontGlyphs> fonts = new HashMap<String, FontGlyphs>();
+
+    private long maxBytes = MAX_BYTES;
+    private long addedBytes;
+
+    public GlyphDiskCache(final File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Sets how many bytes of glyph pixels are recorded for saving, so that
+     * text in many fonts and scripts doesn't keep all its glyphs in memory.
+     * Defaults to {@link #MAX_BYTES}.
+     */
+    public synchronized void setMaxBytes(final long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Writes the files of all fonts which got new glyphs. If some file can't
+     * be written, the others are still saved and the first error is thrown.
+     */
+    public synchronized void save() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        IOException error = null;
+        for (final FontGlyphs glyphs : fonts.values()) {
+            try {
+                glyphs.save();
+            } catch (final IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Deletes all files of the cache and forgets the glyphs recorded so far.
+     */
+    public synchronized void clear() {
+        fonts.clear();
+        addedBytes = 0;
+
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                if (file.getName().endsWith(SUFFIX)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the glyphs of the font rendered in the given mode, loading
+     * them from their file on first use.
+     */
+    synchronized FontGlyphs getGlyphs(final Font font, final boolean antialiased,
+                                      final boolean useFractionalMetrics, final boolean distanceField) {
+        final String key = font.getFontName(Locale.ROOT) + '|' + font.getStyle() + '|' + font.getSize2D() + '|' +
+                font.getNumGlyphs() + '|' + antialiased + '|' + useFractionalMetrics + '|' + distanceField + '|' +
+                System.getProperty("java.vendor") + ' ' + System.getProperty("java.version") + '|' +
+                System.getProperty("os.name") + ' ' + System.getProperty("os.version");
+
+        FontGlyphs glyphs = fonts.get(key);
+        if (glyphs == null) {
+            // The key is checked against the one in the file, so collisions
+            // only cost a miss
+            glyphs = new FontGlyphs(key, new File(directory, Integer.toHexString(key.hashCode()) + SUFFIX));
+            glyphs.load();
+            fonts.put(key, glyphs);
+        }
+
+        return glyphs;
+    }
+
+    /**
+     * A glyph bitmap with its placement, see {@link TextRenderer.TextData}.
+     */
+    static class Entry {
+        final int glyphCode;
+        final int originX;
+        final int originY;
+        // The pre-normalized bounds of the glyph
+        final int boundsX;
+        final int boundsY;
+        final int boundsWidth;
+        final int boundsHeight;
+        // The size of the atlas entry
+        final int width;
+        final int height;
+        final byte[] pixels;
+
+        Entry(final int glyphCode, final int originX, final int originY,
+              final int boundsX, final int boundsY, final int boundsWidth, final int boundsHeight,
+              final int width, final int height, final byte[] pixels) {
+            this.glyphCode = glyphCode;
+            this.originX = originX;
+            this.originY = originY;
+            this.boundsX = boundsX;
+            this.boundsY = boundsY;
+            this.boundsWidth = boundsWidth;
+            this.boundsHeight = boundsHeight;
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
+
+        static Entry read(final ByteBuffer buf) {
+            final int glyphCode = buf.getInt();
+            final int originX = buf.getInt();
+            final int originY = buf.getInt();
+            final int boundsX = buf.getInt();
+            final int boundsY = buf.getInt();
+            final int boundsWidth = buf.getInt();
+            final int boundsHeight = buf.getInt();
+            final int width = buf.getInt();
+            final int height = buf.getInt();
+            if (width < 0 || height < 0 || (long) width * height > buf.remaining()) {
+                throw new IllegalArgumentException("Damaged glyph entry");
+            }
+
+            final byte[] pixels = new byte[width * height];
+            buf.get(pixels);
+            return new Entry(glyphCode, originX, originY, boundsX, boundsY, boundsWidth, boundsHeight,
+                    width, height, pixels);
+        }
+
+        void write(final DataOutputStream out) throws IOException {
+            out.writeInt(glyphCode);
+            out.writeInt(originX);
+            out.writeInt(originY);
+            out.writeInt(boundsX);
+            out.writeInt(boundsY);
+            out.writeInt(boundsWidth);
+            out.writeInt(boundsHeight);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.write(pixels);
+        }
+    }
+
+    /**
+     * The glyphs of a single font and rendering mode: the ones read from the
+     * file and the ones rasterized since.
+     */
+    class FontGlyphs {
+        private final String key;
+        private final File file;
+
+        // The contents of the file
+        private ByteBuffer stored;
+        // Offsets of the entries in the file by glyph code
+        private final Map<Integer, Integer> offsets = new HashMap<Integer, Integer>();
+        private final Map<Integer, Entry> added = new HashMap<Integer, Entry>();
+
+        FontGlyphs(final String key, final File file) {
+            this.key = key;
+            this.file = file;
+        }
+
+        /**
+         * Returns the glyph, or null if it isn't cached.
+         */
+        Entry get(final int glyphCode) {
+            synchronized (GlyphDiskCache.this) {
+                final Entry entry = added.get(glyphCode);
+                if (entry != null) {
+                    return entry;
+                }
+
+                final Integer offset = offsets.get(glyphCode);
+                if (offset == null) {
+                    return null;
+                }
+
+                final ByteBuffer buf = stored.duplicate();
+                buf.position(offset);
+                try {
+                    return Entry.read(buf);
+                } catch (final RuntimeException e) {
+                    // Damaged after all, don't use the file any more
+                    offsets.clear();
+                    stored = null;
+                    return null;
+                }
+            }
+        }
+
+        boolean contains(final int glyphCode) {
+            synchronized (GlyphDiskCache.this) {
+                return added.containsKey(glyphCode) || offsets.containsKey(glyphCode);
+            }
+        }
+
+        /**
+         * Records a rasterized glyph for saving, unless the budget is used up.
+         */
+        void add(final Entry entry) {
+            synchronized (GlyphDiskCache.this) {
+                if (addedBytes + entry.pixels.length > maxBytes || contains(entry.glyphCode)) {
+                    return;
+                }
+
+                added.put(entry.glyphCode, entry);
+                addedBytes += entry.pixels.length;
+            }
+        }
+
+        private void load() {
+            if (!file.isFile()) {
+                return;
+            }
+
+            try {
+                final ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+                if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                    return;
+                }
+
+                final byte[] keyBytes = new byte[buf.getShort() & 0xffff];
+                buf.get(keyBytes);
+                if (!key.equals(new String(keyBytes, UTF8))) {
+                    return;
+                }
+
+                final int count = buf.getInt();
+                for (int i = 0; i < count; i++) {
+                    final int offset = buf.position();
+                    final int glyphCode = buf.getInt();
+                    buf.position(offset + 7 * 4);
+                    final int width = buf.getInt();
+                    final int height = buf.getInt();
+                    if (width < 0 || height < 0 || (long) width * height > buf.remaining()) {
+                        throw new IllegalArgumentException("Damaged glyph entry");
+                    }
+                    buf.position(buf.position() + width * height);
+                    offsets.put(glyphCode, offset);
+                }
+
+                stored = buf;
+            } catch (final IOException e) {
+                offsets.clear();
+            } catch (final RuntimeException e) {
+                // Truncated or otherwise damaged
+                offsets.clear();
+            }
+        }
+
+        private void save() throws IOException {
+            if (added.isEmpty()) {
+                return;
+            }
+
+            final List<Entry> entries = new ArrayList<Entry>(added.values());
+            for (final Integer glyphCode : offsets.keySet()) {
+                if (!added.containsKey(glyphCode)) {
+                    final Entry entry = get(glyphCode);
+                    if (entry == null) {
+                        // the old file turned out damaged, drop the rest of it
+                        break;
+                    }
+                    entries.add(entry);
+                }
+            }
+
+            final File temp = File.createTempFile(file.getName(), ".tmp", directory);
+            try {
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+                try {
+                    final byte[] keyBytes = key.getBytes(UTF8);
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeShort(keyBytes.length);
+                    out.write(keyBytes);
+                    out.writeInt(entries.size());
+                    for (final Entry entry : entries) {
+                        entry.write(out);
+                    }
+                } finally {
+                    out.close();
+                }
+
+                try {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (final AtomicMoveNotSupportedException e) {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                temp.delete();
+            }
+
+            // Read back the merged file rather than keeping both
+            for (final Entry entry : added.values()) {
+                addedBytes -= entry.pixels.length;
+            }
+            added.clear();
+            offsets.clear();
+            stored = null;
+            load();
+        }
+    }
+}
@@ -38,6 +38,10 @@ public abstract class Pipelined_QuadRenderer {
         mVert.put(v1);
     }
 
+    private void glColor4f(final float[] color) {
+        mVert.put(color, 0, 4);
+    }
+
     private void glVertex3f(final float inX, final float inY, final float inZ) {
         mVert.put(inX);
         mVert.put(inY);
@@ -85,23 +89,41 @@ public abstract class Pipelined_QuadRenderer {
         gl.glDeleteBuffers(vbos);
     }
 
-    public void quad(float xx, float yy, float z, float width, float height, TextureCoords coords) {
+    public void quad(float xx, float yy, float z, float width, float height, TextureCoords coords, float[] color) {
+        quad(xx, yy, z, width, height, coords.left(), coords.bottom(), coords.right(), coords.top(), color);
+    }
+
+    public void quad(float xx, float yy, float z, float width, float height,
+                     float left, float bottom, float right, float top, float[] color) {
         glVertex3f(xx, yy, z);
-        glTexCoord2f(coords.left(), coords.bottom());
+        glTexCoord2f(left, bottom);
+        glColor4f(color);
         glVertex3f(xx + width, yy, z);
-        glTexCoord2f(coords.right(), coords.bottom());
+        glTexCoord2f(right, bottom);
+        glColor4f(color);
         glVertex3f(xx + width, yy + height, z);
-        glTexCoord2f(coords.right(), coords.top());
+        glTexCoord2f(right, top);
+        glColor4f(color);
 
         addedVertices(3);
 
         glVertex3f(xx, yy, z);
-        glTexCoord2f(coords.left(), coords.bottom());
+        glTexCoord2f(left, bottom);
+        glColor4f(color);
         glVertex3f(xx + width, yy + height, z);
-        glTexCoord2f(coords.right(), coords.top());
+        glTexCoord2f(right, top);
+        glColor4f(color);
         glVertex3f(xx, yy + height, z);
-        glTexCoord2f(coords.left(), coords.top());
+        glTexCoord2f(left, top);
+        glColor4f(color);
 
         addedVertices(3);
     }
+
+    /**
+     * Returns whether there are quads waiting to be drawn.
+     */
+    public boolean isEmpty() {
+        return mOutstandingGlyphsVerticesPipeline == 0;
+    }
 }
@@ -49,13 +49,15 @@ import java.awt.Color;
 import java.awt.Font;
 import java.awt.Frame;
 import java.awt.Graphics2D;
-import java.awt.Image;
 import java.awt.Point;
 import java.awt.RenderingHints;
 import java.awt.font.*;
 import java.awt.geom.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 
 /**
@@ -117,23 +119,37 @@ public class TextRenderer {
     // These are occasionally useful for more in-depth debugging
     private static final boolean DISABLE_GLYPH_CACHE = false;
 
-    static final int kSize = 256;
+    /**
+     * The font size distance field renderers rasterize their glyphs at,
+     * see {@link #createDistanceFieldRenderer createDistanceFieldRenderer}.
+     */
+    public static final float DISTANCE_FIELD_SIZE = 48;
+
+    // How far from the outline, in pixels at DISTANCE_FIELD_SIZE, the
+    // distance field reaches
+    private static final int DISTANCE_FIELD_SPREAD = 6;
+
+    // Glyph misses in a single draw from which on they are rasterized
+    // in parallel
+    private static final int MIN_PARALLEL_GLYPHS = 16;
 
-    // Every certain number of render cycles, flush the strings which
-    // haven't been used recently
-    private static final int CYCLES_PER_FLUSH = 100;
+    // Worker threads rasterizing glyph misses, shared by all renderers
+    private static ExecutorService rasterizerPool;
+
+    /**
+     * Default for {@link #setMaxCachedStrings}.
+     */
+    public static final int MAX_CACHED_STRINGS = 1024;
 
-    // The amount of vertical dead space on the backing store before we
-    // force a compaction
-    private static final float MAX_VERTICAL_FRAGMENTATION = 0.7f;
-    static final int quadsPerBuffer = 100;
+    static final int quadsPerBuffer = 1024;
     static final int posFloats = 3;
     static final int uvFloats = 2;
+    static final int colorFloats = 4;
     static final int vertsPerQuad = 6;
     static final int vertsPerBuffer = quadsPerBuffer * vertsPerQuad;
 
     // 4 is sizeof(float)
-    static final int oneVertexSizeInBytes = (posFloats + uvFloats) * 4;
+    static final int oneVertexSizeInBytes = (posFloats + uvFloats + colorFloats) * 4;
     static final int kTotalBufferSizeBytes = oneVertexSizeInBytes * vertsPerQuad * quadsPerBuffer;
 
     private final Font font;
@@ -141,22 +157,58 @@ public class TextRenderer {
     private final boolean useFractionalMetrics;
     private final GL2GL3 gl;
 
-    // Whether we're attempting to use automatic mipmap generation support
-    final private boolean mipmap = false;
-    private RectanglePacker packer;
-    private boolean haveMaxSize;
+    // The backing store, possibly shared with other renderers
+    private final GlyphAtlas atlas;
+    private final boolean ownsAtlas;
     private final RenderDelegate renderDelegate;
-    private TextureRenderer cachedBackingStore;
-    private Graphics2D cachedGraphics;
-    private FontRenderContext cachedFontRenderContext;
-    private final Map<String, Rect> stringLocations = new HashMap<String, Rect>();
+    private final FontRenderContext fontRenderContext;
+
+    // Whether the atlas entries are signed distance fields rather than
+    // coverage bitmaps
+    private final boolean distanceField;
+    // Strings drawn whole rather than by glyphs, least recently used
+    // first. When there are too many, the eldest is removed from the atlas.
+    private final Map<TextKey, Rect> stringLocations = new LinkedHashMap<TextKey, Rect>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<TextKey, Rect> eldest) {
+            if (size() > maxCachedStrings) {
+                // Calls back evicted, which removes the entry
+                atlas.remove(eldest.getValue());
+            }
+            return false;
+        }
+    };
     private final GlyphProducer mGlyphProducer;
 
-    private int numRenderCycles;
+    // Quads of strings drawn from single glyphs, to draw them again
+    // without looking up the glyphs
+    private final Map<TextKey, TextMesh> meshes = new LinkedHashMap<TextKey, TextMesh>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<TextKey, TextMesh> eldest) {
+            return size() > maxCachedStrings;
+        }
+    };
+
+    // The mesh the glyphs being drawn are recorded into, if any
+    private TextMesh recording;
+
+    // Incremented whenever one of our entries leaves the atlas, which
+    // makes the meshes referring to it invalid
+    private long evictionCount;
+
+    // Reused to look up strings without copying them
+    private final TextKey lookupKey = new TextKey();
+
+    private int maxCachedStrings = MAX_CACHED_STRINGS;
+
+    // Area of our entries on the atlas, which is one byte per pixel
+    private long atlasBytes;
+
+    // Our glyphs in the disk cache, if any
+    private GlyphDiskCache.FontGlyphs diskGlyphs;
 
     // Need to keep track of whether we're in a beginRendering() /
-    // endRendering() cycle so we can re-enter the exact same state if
-    // we have to reallocate the backing store
+    // endRendering() cycle so that color changes reach the atlas
     private boolean inBeginEndPair;
 
     // For resetting the color after disposal of the old backing store
@@ -167,11 +219,6 @@ public class TextRenderer {
 
     // Debugging purposes only
     private boolean debugged;
-    Pipelined_QuadRenderer mPipelinedQuadRenderer;
-
-    // Whether GL_LINEAR filtering is enabled for the backing store
-    private boolean smoothing = true;
-    private float[] transform;
 
     /**
      * Creates a new TextRenderer with the given Font, specified font
@@ -211,15 +258,70 @@ public class TextRenderer {
      */
     public TextRenderer(final GL2GL3 gl, final Font font, final boolean antialiased,
                         final boolean useFractionalMetrics, RenderDelegate renderDelegate
+    ) {
+        this(gl, font, antialiased, useFractionalMetrics, renderDelegate, null, PackingAlgorithm.LEVELS, false);
+    }
+
+    /**
+     * Creates a new TextRenderer with a private {@link GlyphAtlas
+     * GlyphAtlas} placing the glyphs with the given algorithm.
+     *
+     * @param font                 the font to render with
+     * @param antialiased          whether to use antialiased fonts
+     * @param useFractionalMetrics whether to use fractional font
+     *                             metrics at the Java 2D level
+     * @param renderDelegate       the render delegate to use to draw the
+     *                             text's bitmap, or null to use the default one
+     * @param packingAlgorithm     how the atlas places the glyphs
+     */
+    public TextRenderer(final GL2GL3 gl, final Font font, final boolean antialiased,
+                        final boolean useFractionalMetrics, RenderDelegate renderDelegate,
+                        final PackingAlgorithm packingAlgorithm
+    ) {
+        this(gl, font, antialiased, useFractionalMetrics, renderDelegate, null, packingAlgorithm, false);
+    }
+
+    /**
+     * Creates a new TextRenderer which places its glyphs and strings
+     * on the given {@link GlyphAtlas GlyphAtlas}. Renderers sharing an
+     * atlas share its texture pages and its text program, so that
+     * switching between them doesn't require any new GL objects.
+     *
+     * @param font                 the font to render with
+     * @param antialiased          whether to use antialiased fonts
+     * @param useFractionalMetrics whether to use fractional font
+     *                             metrics at the Java 2D level
+     * @param renderDelegate       the render delegate to use to draw the
+     *                             text's bitmap, or null to use the default one
+     * @param atlas                the atlas to place the text on, or null
+     *                             to create a private one
+     */
+    public TextRenderer(final GL2GL3 gl, final Font font, final boolean antialiased,
+                        final boolean useFractionalMetrics, RenderDelegate renderDelegate,
+                        final GlyphAtlas atlas
+    ) {
+        this(gl, font, antialiased, useFractionalMetrics, renderDelegate, atlas, PackingAlgorithm.LEVELS, false);
+    }
+
+    private TextRenderer(final GL2GL3 gl, final Font font, final boolean antialiased,
+                         final boolean useFractionalMetrics, RenderDelegate renderDelegate,
+                         final GlyphAtlas atlas, final PackingAlgorithm packingAlgorithm,
+                         final boolean distanceField
     ) {
         this.gl = gl;
+        this.distanceField = distanceField;
         this.font = font;
         this.antialiased = antialiased;
         this.useFractionalMetrics = useFractionalMetrics;
+        this.fontRenderContext = new FontRenderContext(null, antialiased, useFractionalMetrics);
 
-        // FIXME: consider adjusting the size based on font size
-        // (it will already automatically resize if necessary)
-        packer = new RectanglePacker(new Manager(), kSize, kSize);
+        if (atlas != null) {
+            this.atlas = atlas;
+            this.ownsAtlas = false;
+        } else {
+            this.atlas = new GlyphAtlas(gl, packingAlgorithm);
+            this.ownsAtlas = true;
+        }
 
         if (renderDelegate == null) {
             renderDelegate = new DefaultRenderDelegate();
@@ -230,6 +332,31 @@ public class TextRenderer {
         mGlyphProducer = new GlyphProducer(font.getNumGlyphs());
     }
 
+    /**
+     * Creates a TextRenderer which stores signed distance fields of the
+     * glyphs instead of their bitmaps. The glyphs are rasterized once
+     * from the given font derived to {@link #DISTANCE_FIELD_SIZE} and
+     * stay sharp at any scale and rotation, so a single renderer can
+     * serve all sizes of the font: draw with a scale factor of
+     * {@code size / DISTANCE_FIELD_SIZE}. Fonts and bounds reported by
+     * the renderer are at {@link #DISTANCE_FIELD_SIZE}.
+     *
+     * @param font  the font to render with, its size doesn't matter
+     * @param atlas the atlas to place the text on, or null to create
+     *              a private one
+     */
+    public static TextRenderer createDistanceFieldRenderer(final GL2GL3 gl, final Font font, final GlyphAtlas atlas) {
+        return new TextRenderer(gl, font.deriveFont(DISTANCE_FIELD_SIZE), true, true, null, atlas, PackingAlgorithm.LEVELS, true);
+    }
+
+    /**
+     * Returns whether this renderer stores distance fields, see {@link
+     * #createDistanceFieldRenderer createDistanceFieldRenderer}.
+     */
+    public boolean isDistanceField() {
+        return distanceField;
+    }
+
     /**
      * Returns the bounding rectangle of the given String, assuming it
      * was rendered at the origin. See {@link #getBounds(CharSequence)
@@ -258,7 +385,7 @@ public class TextRenderer {
      */
     public Rectangle2D getBounds(final CharSequence str) {
         // FIXME: this should be more optimized and use the glyph cache
-        final Rect r = stringLocations.get(str);
+        final Rect r = stringLocations.get(lookupKey.set(str));
 
         if (r != null) {
             final TextData data = (TextData) r.getUserData();
@@ -289,11 +416,14 @@ public class TextRenderer {
      * endRendering} pairs.
      */
     public FontRenderContext getFontRenderContext() {
-        if (cachedFontRenderContext == null) {
-            cachedFontRenderContext = getGraphics2D().getFontRenderContext();
-        }
+        return fontRenderContext;
+    }
 
-        return cachedFontRenderContext;
+    /**
+     * Returns the atlas this renderer places its text on.
+     */
+    public GlyphAtlas getAtlas() {
+        return atlas;
     }
 
     /**
@@ -337,14 +467,12 @@ public class TextRenderer {
      *          transparent, 1.0f = completely opaque
      */
     public void setColor(final float r, final float g, final float b, final float a) {
-        final boolean noNeedForFlush = (r == cachedRGBA[0]) && (g == cachedRGBA[1]) && (b == cachedRGBA[2]) &&
-                (a == cachedRGBA[3]);
+        cachedRGBA = new float[]{r, g, b, a};
 
-        if (!noNeedForFlush) {
-            flushGlyphPipeline();
+        // The color goes into the vertices, so no flush is needed
+        if (inBeginEndPair) {
+            atlas.setColor(r, g, b, a);
         }
-
-        cachedRGBA = new float[]{r, g, b, a};
     }
 
     /**
@@ -372,6 +500,50 @@ public class TextRenderer {
         internal_draw3D(str, x, y, z, scaleFactor, verticalFlip);
     }
 
+    /**
+     * Draws the glyphs of the supplied GlyphVector at the desired 3D
+     * location using the renderer's current color, placing them at
+     * the positions stored in the vector. The GlyphVector must have
+     * been created for the Font of this renderer. Nothing is drawn if
+     * some of the glyphs can't be taken from the glyph cache (e.g.
+     * because the vector has per-glyph transforms).
+     *
+     * @return whether the glyphs were drawn
+     */
+    public boolean draw3D(final GlyphVector glyphs, final float x, final float y, final float z,
+                          final float scaleFactor, final boolean verticalFlip) {
+        if (DISABLE_GLYPH_CACHE || !mGlyphProducer.getGlyphs(glyphs)) {
+            return false;
+        }
+
+        // A distance field renderer draws vectors of any font size
+        final float glyphScale = scaleFactor * glyphs.getFont().getSize2D() / font.getSize2D();
+        uploadMissing(mGlyphProducer.glyphsOutput);
+        drawPositionedGlyphs(mGlyphProducer.glyphsOutput, mGlyphProducer.getGlyphPositions(),
+                x, y, z, scaleFactor, glyphScale, verticalFlip);
+        return true;
+    }
+
+    /**
+     * Places the glyphs of the given characters on the atlas and rasterizes
+     * them, without drawing anything, so that drawing them later doesn't
+     * have to. Characters which aren't kept as single glyphs are skipped.
+     * The atlas textures are only updated when drawn or by
+     * {@link GlyphAtlas#upload}.
+     */
+    public void preload(final CharSequence chars) {
+        final List<Glyph> glyphs = mGlyphProducer.getGlyphs(chars);
+        // The characters aren't drawn as this string
+        mGlyphProducer.fullGlyphVectorCache.remove(lookupKey.set(chars));
+
+        uploadMissing(glyphs);
+        for (final Glyph glyph : glyphs) {
+            if (glyph.str == null && glyph.glyphRectForTextureMapping == null) {
+                glyph.upload();
+            }
+        }
+    }
+
     /**
      * Returns the pixel width of the given character.
      */
@@ -379,6 +551,14 @@ public class TextRenderer {
         return mGlyphProducer.getGlyphPixelWidth(inChar);
     }
 
+    /**
+     * Returns the pixel width of the given code point, which may be
+     * a supplementary character.
+     */
+    public float getCodePointWidth(final int codePoint) {
+        return mGlyphProducer.getGlyphPixelWidth(codePoint);
+    }
+
     /**
      * Causes the TextRenderer to flush any internal caches it may be
      * maintaining and draw its rendering results to the screen. This
@@ -405,14 +585,15 @@ public class TextRenderer {
      * valid to use the TextRenderer after this method is called.
      */
     public void dispose() {
-        if (null != mPipelinedQuadRenderer) {
-            mPipelinedQuadRenderer.dispose();
+        if (ownsAtlas) {
+            atlas.dispose();
+        } else {
+            atlas.remove(this);
         }
-        packer.dispose();
-        packer = null;
-        cachedBackingStore = null;
-        cachedGraphics = null;
-        cachedFontRenderContext = null;
+        atlasBytes = 0;
+        stringLocations.clear();
+        meshes.clear();
+        mGlyphProducer.fullGlyphVectorCache.clear();
 
         if (dbgFrame != null) {
             dbgFrame.dispose();
@@ -444,7 +625,8 @@ public class TextRenderer {
         // NOTE that this boundary is quite heuristic and is related
         // to how far away in 3D we may view the text --
         // heuristically, 1.5% of the font's height
-        final int boundary = (int) Math.max(1, 0.015 * font.getSize());
+        // Distance fields need room for the whole spread
+        final int boundary = distanceField ? DISTANCE_FIELD_SPREAD + 1 : (int) Math.max(1, 0.015 * font.getSize());
 
         return new Rectangle2D.Double((int) Math.floor(src.getMinX() - boundary),
                 (int) Math.floor(src.getMinY() - boundary),
@@ -452,205 +634,418 @@ public class TextRenderer {
                 (int) Math.ceil(src.getHeight()) + 2 * boundary);
     }
 
-    private TextureRenderer getBackingStore() {
-        final TextureRenderer renderer = (TextureRenderer) packer.getBackingStore();
-
-        if (renderer != cachedBackingStore) {
-            // Backing store changed since last time; discard any cached Graphics2D
-            if (cachedGraphics != null) {
-                cachedGraphics.dispose();
-                cachedGraphics = null;
-                cachedFontRenderContext = null;
-            }
+    private Graphics2D getGraphics2D(final GlyphAtlas.Page page) {
+        final Graphics2D g = page.getGraphics();
+
+        // The page is shared by other fonts, so the font and rendering
+        // hints are set up each time
+        g.setFont(font);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                (antialiased ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON
+                        : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF));
+        g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS,
+                (useFractionalMetrics
+                        ? RenderingHints.VALUE_FRACTIONALMETRICS_ON
+                        : RenderingHints.VALUE_FRACTIONALMETRICS_OFF));
+
+        return g;
+    }
 
-            cachedBackingStore = renderer;
-        }
+    private void beginRendering(float[] transform) {
+        inBeginEndPair = true;
 
-        return cachedBackingStore;
+        atlas.beginRendering(transform);
+        atlas.setDistanceField(distanceField);
+        atlas.setColor(cachedRGBA[0], cachedRGBA[1], cachedRGBA[2], cachedRGBA[3]);
     }
 
-    private Graphics2D getGraphics2D() {
-        final TextureRenderer renderer = getBackingStore();
+    /**
+     * emzic: here the call to glBindBuffer crashes on certain graphicscard/driver combinations
+     * this is why the ugly try-catch block has been added, which falls back to the old textrenderer
+     */
+    private void endRendering() {
+        atlas.endRendering();
 
-        if (cachedGraphics == null) {
-            cachedGraphics = renderer.createGraphics();
+        inBeginEndPair = false;
 
-            // Set up composite, font and rendering hints
-            cachedGraphics.setComposite(AlphaComposite.Src);
-            cachedGraphics.setColor(Color.WHITE);
-            cachedGraphics.setFont(font);
-            cachedGraphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
-                    (antialiased ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON
-                            : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF));
-            cachedGraphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS,
-                    (useFractionalMetrics
-                            ? RenderingHints.VALUE_FRACTIONALMETRICS_ON
-                            : RenderingHints.VALUE_FRACTIONALMETRICS_OFF));
+        // Nobody else counts the frames of a private atlas
+        if (ownsAtlas) {
+            atlas.nextFrame();
         }
-
-        return cachedGraphics;
     }
 
-    private void beginRendering(float[] transform) {
-        this.transform = transform;
-
-        inBeginEndPair = true;
-
-        getBackingStore().begin3DRendering();
+    /**
+     * Returns the number of bytes the entries of this renderer take on the
+     * atlas.
+     */
+    public long getAtlasBytes() {
+        return atlasBytes;
+    }
 
-        if (!haveMaxSize) {
-            // Query OpenGL for the maximum texture size and set it in the
-            // RectanglePacker to keep it from expanding too large
-            final int[] sz = new int[1];
-            gl.glGetIntegerv(gl.GL_MAX_TEXTURE_SIZE(), sz);
-            packer.setMaxSize(sz[0], sz[0]);
-            haveMaxSize = true;
+    /**
+     * Sets the cache to take the glyph bitmaps from instead of rasterizing
+     * them, and to record newly rasterized glyphs in. Null turns it off. Not
+     * used for transformed fonts and custom render delegates, which might
+     * draw differently than the cached glyphs were drawn.
+     */
+    public void setDiskCache(final GlyphDiskCache diskCache) {
+        if (diskCache != null && !font.isTransformed() && renderDelegate instanceof DefaultRenderDelegate) {
+            diskGlyphs = diskCache.getGlyphs(font, antialiased, useFractionalMetrics, distanceField);
+        } else {
+            diskGlyphs = null;
         }
+    }
 
+    /**
+     * Sets how many strings and string layouts this renderer caches. The
+     * least recently drawn ones are dropped first. Defaults to
+     * {@link #MAX_CACHED_STRINGS}.
+     */
+    public void setMaxCachedStrings(final int maxCachedStrings) {
+        this.maxCachedStrings = maxCachedStrings;
+    }
+
+    public int getMaxCachedStrings() {
+        return maxCachedStrings;
     }
 
     /**
-     * emzic: here the call to glBindBuffer crashes on certain graphicscard/driver combinations
-     * this is why the ugly try-catch block has been added, which falls back to the old textrenderer
+     * Returns the number of strings this renderer keeps on the atlas whole,
+     * rather than as separate glyphs.
      */
-    private void endRendering() {
-        flushGlyphPipeline();
+    public int getCachedStringCount() {
+        return stringLocations.size();
+    }
 
-        inBeginEndPair = false;
+    /**
+     * Returns the number of strings whose glyph quads this renderer keeps
+     * to draw them again.
+     */
+    public int getCachedMeshCount() {
+        return meshes.size();
+    }
 
-        // The OpenGL spec is unclear about whether this changes the
-        // buffer bindings, so preemptively zero out the GL_ARRAY_BUFFER
-        // binding
-        gl.glBindBuffer(gl.GL_ARRAY_BUFFER(), 0);
+    /**
+     * Returns the number of strings whose layout this renderer caches.
+     */
+    public int getCachedLayoutCount() {
+        return mGlyphProducer.fullGlyphVectorCache.size();
+    }
 
-        getBackingStore().end3DRendering();
+    /**
+     * Called by the atlas when one of our entries was removed from it.
+     */
+    void evicted(final Rect rect) {
+        final TextData data = (TextData) rect.getUserData();
+        atlasBytes -= (long) rect.w() * rect.h();
+        evictionCount++;
+        if (data.string() != null) {
+            stringLocations.remove(lookupKey.set(data.string()));
+        }
 
-        if (++numRenderCycles >= CYCLES_PER_FLUSH) {
-            numRenderCycles = 0;
+        final int glyphToClearFromCache = data.glyphCode;
 
-            clearUnusedEntries();
+        if (glyphToClearFromCache >= 0) {
+            mGlyphProducer.clearCacheEntry(glyphToClearFromCache);
         }
     }
 
-    private void clearUnusedEntries() {
-        final List<Rect> deadRects = new ArrayList<Rect>();
+    private void internal_draw3D(final CharSequence str, float x, final float y, final float z,
+                                 final float scaleFactor, final boolean verticalFlip) {
+        final TextMesh cached = meshes.get(lookupKey.set(str));
+        if (cached != null && cached.isValid(scaleFactor, verticalFlip)) {
+            cached.draw(x, y, z);
+            return;
+        }
 
-        // Iterate through the contents of the backing store, removing
-        // text strings that haven't been used recently
-        packer.visit(new RectVisitor() {
-            @Override
-            public void visit(final Rect rect) {
-                final TextData data = (TextData) rect.getUserData();
+        final List<Glyph> glyphs = mGlyphProducer.getGlyphs(str);
+        final float[] positions = mGlyphProducer.getGlyphPositions();
+        uploadMissing(glyphs);
 
-                if (data.used()) {
-                    data.clearUsed();
-                } else {
-                    deadRects.add(rect);
+        recording = canRecord(glyphs) ? new TextMesh(x, y, scaleFactor, verticalFlip) : null;
+        try {
+            if (positions != null) {
+                // Laid out text; place each glyph where the layout put it
+                drawPositionedGlyphs(glyphs, positions, x, y, z, scaleFactor, scaleFactor, verticalFlip);
+            } else {
+                for (final Glyph glyph : glyphs) {
+                    final float advance = glyph.draw3D(x, y, z, scaleFactor, verticalFlip);
+                    x += advance * scaleFactor;
                 }
             }
-        });
 
-        for (final Rect r : deadRects) {
-            packer.remove(r);
-            stringLocations.remove(((TextData) r.getUserData()).string());
+            // Placing a glyph might have evicted or moved the ones recorded
+            // before it
+            if (recording != null && recording.isValid(scaleFactor, verticalFlip)) {
+                meshes.put(new TextKey().set(str.toString()), recording);
+            }
+        } finally {
+            recording = null;
+        }
+    }
+
+    // Only single glyphs are recorded, strings drawn whole are looked up
+    // anyway
+    private static boolean canRecord(final List<Glyph> glyphs) {
+        for (final Glyph glyph : glyphs) {
+            if (glyph.str != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void drawPositionedGlyphs(final List<Glyph> glyphs, final float[] positions,
+                                      final float x, final float y, final float z,
+                                      final float scaleFactor, final float glyphScale,
+                                      final boolean verticalFlip) {
+        // The positions are in Java 2D coordinates, with Y going down
+        final float yScale = verticalFlip ? scaleFactor : -scaleFactor;
+        for (int i = 0; i < glyphs.size(); i++) {
+            glyphs.get(i).draw3D(x + positions[i * 2] * scaleFactor,
+                    y + positions[i * 2 + 1] * yScale, z, glyphScale, verticalFlip);
+        }
+    }
+
+    // Draws the string or the glyphs into the rectangle just added to
+    // the atlas, origin being the leftmost point of the baseline
+    // relative to the rectangle
+    private void rasterize(final Rect rect, final Point origin, final String str, final GlyphVector gv) {
+        if (distanceField) {
+            store(rect, rasterize(rect.w(), rect.h(), origin, str, gv));
+            return;
+        }
+
+        // Fetch the page only now in case the addition of the rectangle
+        // caused the old backing store to be thrown away
+        final GlyphAtlas.Page page = ((TextData) rect.getUserData()).page;
+        atlasBytes += (long) rect.w() * rect.h();
+
+        final Graphics2D g = getGraphics2D(page);
 
-            final int unicodeToClearFromCache = ((TextData) r.getUserData()).unicodeID;
+        // Clear out the area we're going to draw into
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(rect.x(), rect.y(), rect.w(), rect.h());
+        g.setComposite(AlphaComposite.Src);
 
-            if (unicodeToClearFromCache > 0) {
-                mGlyphProducer.clearCacheEntry(unicodeToClearFromCache);
+        draw(g, str, gv, rect.x() + origin.x, rect.y() + origin.y);
+
+        // Mark this region of the TextureRenderer as dirty
+        page.getBackingStore().markDirty(rect.x(), rect.y(), rect.w(),
+                rect.h());
+    }
+
+    // Draws the string or the glyphs into a new gray image of the given
+    // size and returns its pixels, or their distance field. Touches no
+    // shared state, so it may run on any thread.
+    private byte[] rasterize(final int width, final int height, final Point origin, final String str, final GlyphVector gv) {
+        final BufferedImage mask = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        final Graphics2D g = mask.createGraphics();
+        g.setColor(Color.WHITE);
+        g.setFont(font);
+        // Distance fields are computed from a sharp mask
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                (antialiased && !distanceField ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON
+                        : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF));
+        g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS,
+                (useFractionalMetrics
+                        ? RenderingHints.VALUE_FRACTIONALMETRICS_ON
+                        : RenderingHints.VALUE_FRACTIONALMETRICS_OFF));
+        draw(g, str, gv, origin.x, origin.y);
+        g.dispose();
+
+        final byte[] pixels = ((DataBufferByte) mask.getRaster().getDataBuffer()).getData();
+        if (distanceField) {
+            DistanceField.compute(pixels, width, height, DISTANCE_FIELD_SPREAD);
+        }
+
+        return pixels;
+    }
+
+    // Copies pixels from rasterize(width, height, ...) into the
+    // rectangle just added to the atlas
+    private void store(final Rect rect, final byte[] pixels) {
+        final GlyphAtlas.Page page = ((TextData) rect.getUserData()).page;
+        atlasBytes += (long) rect.w() * rect.h();
+
+        final BufferedImage image = (BufferedImage) page.getBackingStore().getImage();
+        image.getRaster().setDataElements(rect.x(), rect.y(), rect.w(), rect.h(), pixels);
+
+        page.getBackingStore().markDirty(rect.x(), rect.y(), rect.w(),
+                rect.h());
+    }
+
+    // Places all glyphs which aren't on the atlas yet and rasterizes
+    // them on the worker threads, instead of one by one as they are
+    // drawn. Does nothing for a few misses, which aren't worth the
+    // hand-off.
+    private void uploadMissing(final List<Glyph> glyphs) {
+        int misses = 0;
+        for (final Glyph glyph : glyphs) {
+            if (glyph.str == null && glyph.glyphRectForTextureMapping == null && !glyph.load()) {
+                misses++;
             }
+        }
 
+        // Custom delegates might not expect to be called from other threads
+        if (misses < MIN_PARALLEL_GLYPHS || !(renderDelegate instanceof DefaultRenderDelegate)) {
+            return;
         }
 
-        // If we removed dead rectangles this cycle, try to do a compaction
-        final float frag = packer.verticalFragmentationRatio();
+        final ExecutorService pool = getRasterizerPool();
+        if (pool == null) {
+            return;
+        }
+
+        final List<Glyph> placed = new ArrayList<Glyph>(misses);
+        final List<Rect> rects = new ArrayList<Rect>(misses);
+        final List<Callable<byte[]>> tasks = new ArrayList<Callable<byte[]>>(misses);
 
-        if (!deadRects.isEmpty() && (frag > MAX_VERTICAL_FRAGMENTATION)) {
+        for (final Glyph glyph : glyphs) {
+            if (glyph.str != null || glyph.glyphRectForTextureMapping != null) {
+                continue;
+            }
 
-            packer.compact();
+            final GlyphVector gv = glyph.getGlyphVector();
+            final Rect rect = glyph.place(gv);
+            final TextData data = (TextData) rect.getUserData();
+            glyph.producer.register(glyph);
+
+            placed.add(glyph);
+            rects.add(rect);
+            tasks.add(new Callable<byte[]>() {
+                @Override
+                public byte[] call() {
+                    return rasterize(rect.w(), rect.h(), data.origin(), null, gv);
+                }
+            });
+        }
+
+        List<Future<byte[]>> results = null;
+        try {
+            results = pool.invokeAll(tasks);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
 
+        for (int i = 0; i < placed.size(); i++) {
+            final Rect rect = rects.get(i);
+            if (placed.get(i).glyphRectForTextureMapping != rect) {
+                // Evicted again while placing the others; it will be
+                // uploaded when drawn
+                continue;
+            }
+
+            byte[] pixels = null;
+            if (results != null) {
+                try {
+                    pixels = results.get(i).get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (final ExecutionException e) {
+                    // Rasterized again below, where the error surfaces
+                }
+            }
+
+            if (pixels != null) {
+                store(rect, pixels);
+            } else {
+                final GlyphVector gv = placed.get(i).getGlyphVector();
+                rasterize(rect, ((TextData) rect.getUserData()).origin(), null, gv);
+            }
+            record(rect, pixels);
+        }
     }
 
-    private void internal_draw3D(final CharSequence str, float x, final float y, final float z,
-                                 final float scaleFactor, final boolean verticalFlip) {
-        for (final Glyph glyph : mGlyphProducer.getGlyphs(str)) {
-            final float advance = glyph.draw3D(x, y, z, scaleFactor, verticalFlip);
-            x += advance * scaleFactor;
+    // Keeps a newly rasterized glyph for the disk cache. Without the pixels
+    // at hand, they are read back from the page.
+    private void record(final Rect rect, byte[] pixels) {
+        final TextData data = (TextData) rect.getUserData();
+        if (diskGlyphs == null || diskGlyphs.contains(data.glyphCode)) {
+            return;
+        }
+
+        if (pixels == null) {
+            final BufferedImage image = (BufferedImage) data.page.getBackingStore().getImage();
+            pixels = (byte[]) image.getRaster().getDataElements(rect.x(), rect.y(), rect.w(), rect.h(), null);
         }
+
+        final Rectangle2D bounds = data.origRect();
+        diskGlyphs.add(new GlyphDiskCache.Entry(data.glyphCode, data.origin().x, data.origin().y,
+                (int) bounds.getX(), (int) bounds.getY(), (int) bounds.getWidth(), (int) bounds.getHeight(),
+                rect.w(), rect.h(), pixels));
     }
 
-    private void flushGlyphPipeline() {
-        if (mPipelinedQuadRenderer != null) {
-            mPipelinedQuadRenderer.draw();
+    private static synchronized ExecutorService getRasterizerPool() {
+        if (rasterizerPool == null) {
+            final int threads = Runtime.getRuntime().availableProcessors();
+            if (threads < 2) {
+                return null;
+            }
+
+            rasterizerPool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread thread = new Thread(r, "TextRenderer rasterizer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
         }
+
+        return rasterizerPool;
     }
 
-    private void draw3D_ROBUST(final CharSequence str, final float x, final float y, final float z,
-                               final float scaleFactor, final boolean verticalFlip) {
-        String curStr;
-        if (str instanceof String) {
-            curStr = (String) str;
+    private void draw(final Graphics2D g, final String str, final GlyphVector gv, final int x, final int y) {
+        if (gv != null) {
+            renderDelegate.drawGlyphVector(g, gv, x, y);
         } else {
-            curStr = str.toString();
+            renderDelegate.draw(g, str, x, y);
         }
+    }
+
+    private void flushGlyphPipeline() {
+        atlas.flush();
+    }
 
+    private void draw3D_ROBUST(final CharSequence str, final float x, final float y, final float z,
+                               final float scaleFactor, final boolean verticalFlip) {
         // Look up the string on the backing store
-        Rect rect = stringLocations.get(curStr);
+        Rect rect = stringLocations.get(lookupKey.set(str));
 
         if (rect == null) {
+            final String curStr = str.toString();
+
             // Rasterize this string and place it on the backing store
-            Graphics2D g = getGraphics2D();
             final Rectangle2D origBBox = preNormalize(renderDelegate.getBounds(curStr, font, getFontRenderContext()));
             final Rectangle2D bbox = normalize(origBBox);
             final Point origin = new Point((int) -bbox.getMinX(),
                     (int) -bbox.getMinY());
             rect = new Rect(0, 0, (int) bbox.getWidth(),
                     (int) bbox.getHeight(),
-                    new TextData(curStr, origin, origBBox, -1));
-
-            packer.add(rect);
-            stringLocations.put(curStr, rect);
+                    new TextData(this, curStr, origin, origBBox, -1));
 
-            // Re-fetch the Graphics2D in case the addition of the rectangle
-            // caused the old backing store to be thrown away
-            g = getGraphics2D();
+            atlas.add(rect);
+            stringLocations.put(new TextKey().set(curStr), rect);
 
             // OK, should now have an (x, y) for this rectangle; rasterize
             // the String
-            final int strx = rect.x() + origin.x;
-            final int stry = rect.y() + origin.y;
-
-            // Clear out the area we're going to draw into
-            g.setComposite(AlphaComposite.Clear);
-            g.fillRect(rect.x(), rect.y(), rect.w(), rect.h());
-            g.setComposite(AlphaComposite.Src);
-
-            // Draw the string
-            renderDelegate.draw(g, curStr, strx, stry);
-
-            // Mark this region of the TextureRenderer as dirty
-            getBackingStore().markDirty(rect.x(), rect.y(), rect.w(),
-                    rect.h());
+            rasterize(rect, origin, curStr, null);
         }
 
-        // OK, now draw the portion of the backing store to the screen
-        final TextureRenderer renderer = getBackingStore();
-
         // NOTE that the rectangles managed by the packer have their
         // origin at the upper-left but the TextureRenderer's origin is
         // at its lower left!!!
         final TextData data = (TextData) rect.getUserData();
-        data.markUsed();
+        atlas.use(data);
+
+        // OK, now draw the portion of the backing store to the screen
+        final TextureRenderer renderer = data.page.getBackingStore();
 
         final Rectangle2D origRect = data.origRect();
 
         // Align the leftmost point of the baseline to the (x, y, z) coordinate requested
 
-        createPipelinedRenderer();
-
-        Pipelined_QuadRenderer piped = mPipelinedQuadRenderer;
-
         final float verticalScale = verticalFlip ? -scaleFactor : scaleFactor;
 
         float xx = x - (scaleFactor * data.origOriginX());
@@ -665,7 +1060,7 @@ public class TextRenderer {
                 texturex + width,
                 texturey + height);
 
-        piped.quad(
+        atlas.quad(data.page,
                 xx, yy, z, width * scaleFactor, height * verticalScale,
                 coords
         );
@@ -745,6 +1140,118 @@ public class TextRenderer {
                                     int x, int y);
     }
 
+    /**
+     * The quads of a string drawn from single glyphs, relative to the point
+     * the string was drawn at. Valid while none of the glyphs left the atlas
+     * or moved on it.
+     */
+    private class TextMesh {
+        private static final int FLOATS_PER_QUAD = 8;
+
+        private final float originX;
+        private final float originY;
+        private final float scaleFactor;
+        private final boolean verticalFlip;
+
+        private final long evictions = evictionCount;
+        private final long compactions = atlas.getCompactionCount();
+
+        private TextData[] entries = new TextData[8];
+        private float[] quads = new float[entries.length * FLOATS_PER_QUAD];
+        private int count;
+
+        TextMesh(final float originX, final float originY, final float scaleFactor, final boolean verticalFlip) {
+            this.originX = originX;
+            this.originY = originY;
+            this.scaleFactor = scaleFactor;
+            this.verticalFlip = verticalFlip;
+        }
+
+        boolean isValid(final float scaleFactor, final boolean verticalFlip) {
+            return this.scaleFactor == scaleFactor && this.verticalFlip == verticalFlip &&
+                    evictions == evictionCount && compactions == atlas.getCompactionCount();
+        }
+
+        void add(final TextData data, final float x, final float y, final float width, final float height,
+                 final float left, final float bottom, final float right, final float top) {
+            if (count == entries.length) {
+                entries = Arrays.copyOf(entries, count * 2);
+                quads = Arrays.copyOf(quads, count * 2 * FLOATS_PER_QUAD);
+            }
+
+            entries[count] = data;
+            int i = count * FLOATS_PER_QUAD;
+            quads[i++] = x - originX;
+            quads[i++] = y - originY;
+            quads[i++] = width;
+            quads[i++] = height;
+            quads[i++] = left;
+            quads[i++] = bottom;
+            quads[i++] = right;
+            quads[i] = top;
+            count++;
+        }
+
+        void draw(final float x, final float y, final float z) {
+            for (int q = 0; q < count; q++) {
+                final TextData data = entries[q];
+                atlas.use(data);
+
+                final int i = q * FLOATS_PER_QUAD;
+                atlas.quad(data.page, x + quads[i], y + quads[i + 1], z, quads[i + 2], quads[i + 3],
+                        quads[i + 4], quads[i + 5], quads[i + 6], quads[i + 7]);
+            }
+        }
+    }
+
+    /**
+     * Key of the string caches comparing the characters of any CharSequence,
+     * so that looking up a StringBuilder doesn't need a copy of it. Keys put
+     * into a map must be set to immutable strings.
+     */
+    private static final class TextKey {
+        private CharSequence text;
+        private int hash;
+
+        TextKey set(final CharSequence text) {
+            this.text = text;
+            if (text instanceof String) {
+                hash = text.hashCode();
+            } else {
+                // Same as String.hashCode
+                int h = 0;
+                for (int i = 0; i < text.length(); i++) {
+                    h = 31 * h + text.charAt(i);
+                }
+                hash = h;
+            }
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof TextKey)) {
+                return false;
+            }
+
+            final CharSequence other = ((TextKey) obj).text;
+            if (other.length() != text.length()) {
+                return false;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                if (other.charAt(i) != text.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     private static class CharSequenceIterator implements CharacterIterator {
         CharSequence mSequence;
         int mLength;
@@ -837,13 +1344,19 @@ public class TextRenderer {
 
     // Data associated with each rectangle of text
     static class TextData {
+        // The renderer which placed this entry on the atlas
+        final TextRenderer owner;
+
+        // The atlas page this entry was placed on
+        GlyphAtlas.Page page;
+
         // Back-pointer to String this TextData describes, if it
         // represents a String rather than a single glyph
         private final String str;
 
         // If this TextData represents a single glyph, this is its
-        // unicode ID
-        int unicodeID;
+        // glyph code, otherwise -1
+        final int glyphCode;
 
         // The following must be defined and used VERY precisely. This is
         // the offset from the upper-left corner of this rectangle (Java
@@ -860,13 +1373,15 @@ public class TextRenderer {
         // equivalent to the origin above.
         private final Rectangle2D origRect;
 
-        private boolean used; // Whether this text was used recently
+        // The atlas frame this entry was last drawn in
+        long lastUsed;
 
-        TextData(final String str, final Point origin, final Rectangle2D origRect, final int unicodeID) {
+        TextData(final TextRenderer owner, final String str, final Point origin, final Rectangle2D origRect, final int glyphCode) {
+            this.owner = owner;
             this.str = str;
             this.origin = origin;
             this.origRect = origRect;
-            this.unicodeID = unicodeID;
+            this.glyphCode = glyphCode;
         }
 
         String string() {
@@ -890,150 +1405,6 @@ public class TextRenderer {
         Rectangle2D origRect() {
             return origRect;
         }
-
-        boolean used() {
-            return used;
-        }
-
-        void markUsed() {
-            used = true;
-        }
-
-        void clearUsed() {
-            used = false;
-        }
-    }
-
-    class Manager implements BackingStoreManager {
-        private Graphics2D g;
-
-        @Override
-        public Object allocateBackingStore(final int w, final int h) {
-            // FIXME: should consider checking Font's attributes to see
-            // whether we're likely to need to support a full RGBA backing
-            // store (i.e., non-default Paint, foreground color, etc.), but
-            // for now, let's just be more efficient
-            TextureRenderer renderer;
-
-            if (renderDelegate.intensityOnly()) {
-                renderer = TextureRenderer.createAlphaOnlyRenderer(gl, w, h, mipmap);
-            } else {
-                renderer = new TextureRenderer(gl, w, h, true, mipmap);
-            }
-            renderer.setSmoothing(smoothing);
-
-            return renderer;
-        }
-
-        @Override
-        public void deleteBackingStore(final Object backingStore) {
-            ((TextureRenderer) backingStore).dispose();
-        }
-
-        @Override
-        public boolean preExpand(final Rect cause, final int attemptNumber) {
-            // Only try this one time; clear out potentially obsolete entries
-            // NOTE: this heuristic and the fact that it clears the used bit
-            // of all entries seems to cause cycling of entries in some
-            // situations, where the backing store becomes small compared to
-            // the amount of text on the screen (see the TextFlow demo) and
-            // the entries continually cycle in and out of the backing
-            // store, decreasing performance. If we added a little age
-            // information to the entries, and only cleared out entries
-            // above a certain age, this behavior would be eliminated.
-            // However, it seems the system usually stabilizes itself, so
-            // for now we'll just keep things simple. Note that if we don't
-            // clear the used bit here, the backing store tends to increase
-            // very quickly to its maximum size, at least with the TextFlow
-            // demo when the text is being continually re-laid out.
-            if (attemptNumber == 0) {
-                if (inBeginEndPair) {
-                    // Draw any outstanding glyphs
-                    flush();
-                }
-
-                clearUnusedEntries();
-
-                return true;
-            }
-
-            return false;
-        }
-
-        @Override
-        public boolean additionFailed(final Rect cause, final int attemptNumber) {
-            // Heavy hammer -- might consider doing something different
-            packer.clear();
-            stringLocations.clear();
-            mGlyphProducer.clearAllCacheEntries();
-
-            if (attemptNumber == 0) {
-                return true;
-            }
-
-            return false;
-        }
-
-        @Override
-        public boolean canCompact() {
-            return true;
-        }
-
-        @Override
-        public void beginMovement(final Object oldBackingStore, final Object newBackingStore) {
-            // Exit the begin / end pair if necessary
-            if (inBeginEndPair) {
-                // Draw any outstanding glyphs
-                flush();
-
-                // The OpenGL spec is unclear about whether this changes the
-                // buffer bindings, so preemptively zero out the GL_ARRAY_BUFFER
-                // binding
-                gl.glBindBuffer(gl.GL_ARRAY_BUFFER(), 0);
-
-                ((TextureRenderer) oldBackingStore).end3DRendering();
-            }
-
-            final TextureRenderer newRenderer = (TextureRenderer) newBackingStore;
-            g = newRenderer.createGraphics();
-        }
-
-        @Override
-        public void move(final Object oldBackingStore, final Rect oldLocation,
-                         final Object newBackingStore, final Rect newLocation) {
-            final TextureRenderer oldRenderer = (TextureRenderer) oldBackingStore;
-            final TextureRenderer newRenderer = (TextureRenderer) newBackingStore;
-
-            if (oldRenderer == newRenderer) {
-                // Movement on the same backing store -- easy case
-                g.copyArea(oldLocation.x(), oldLocation.y(), oldLocation.w(),
-                        oldLocation.h(), newLocation.x() - oldLocation.x(),
-                        newLocation.y() - oldLocation.y());
-            } else {
-                // Need to draw from the old renderer's image into the new one
-                final Image img = oldRenderer.getImage();
-                g.drawImage(img, newLocation.x(), newLocation.y(),
-                        newLocation.x() + newLocation.w(),
-                        newLocation.y() + newLocation.h(), oldLocation.x(),
-                        oldLocation.y(), oldLocation.x() + oldLocation.w(),
-                        oldLocation.y() + oldLocation.h(), null);
-            }
-        }
-
-        @Override
-        public void endMovement(final Object oldBackingStore, final Object newBackingStore) {
-            g.dispose();
-
-            // Sync the whole surface
-            final TextureRenderer newRenderer = (TextureRenderer) newBackingStore;
-            newRenderer.markDirty(0, 0, newRenderer.getWidth(),
-                    newRenderer.getHeight());
-
-            // Re-enter the begin / end pair if necessary
-            if (inBeginEndPair) {
-                ((TextureRenderer) newBackingStore).begin3DRendering();
-            }
-        }
     }
 
     public static class DefaultRenderDelegate implements RenderDelegate {
@@ -1077,8 +1448,22 @@ public class TextRenderer {
     // Glyph-by-glyph rendering support
     //
 
-    // A temporary to prevent excessive garbage creation
+    // Temporaries to prevent excessive garbage creation
     private final char[] singleUnicode = new char[1];
+    private final char[] surrogatePair = new char[2];
+    private final int[] singleGlyph = new int[1];
+
+    // Returns the UTF-16 encoding of the code point in one of the
+    // temporaries above
+    private char[] toChars(final int codePoint) {
+        if (Character.isBmpCodePoint(codePoint)) {
+            singleUnicode[0] = (char) codePoint;
+            return singleUnicode;
+        }
+
+        Character.toChars(codePoint, surrogatePair, 0);
+        return surrogatePair;
+    }
 
     /**
      * A Glyph represents either a single unicode glyph or a
@@ -1095,8 +1480,9 @@ public class TextRenderer {
 
     class Glyph {
         // If this Glyph represents an individual unicode glyph, this
-        // is its unicode ID. If it represents a String, this is -1.
-        private int unicodeID;
+        // is its unicode ID. If it represents a String, or a glyph
+        // coming from laid out text, this is -1.
+        private int unicodeID = -1;
         // If the above field isn't -1, then these fields are used.
         // The glyph code in the font
         private int glyphCode;
@@ -1104,9 +1490,9 @@ public class TextRenderer {
         private GlyphProducer producer;
         // The advance of this glyph
         private float advance;
-        // The GlyphVector for this single character; this is passed
-        // in during construction but cleared during the upload
-        // process
+        // The GlyphVector for this single character, or null if the
+        // glyph comes from laid out text; this is passed in during
+        // construction but cleared during the upload process
         private GlyphVector singleUnicodeGlyphVector;
         // The rectangle of this glyph on the backing store, or null
         // if it has been cleared due to space pressure
@@ -1183,18 +1569,16 @@ public class TextRenderer {
                 upload();
             }
 
-            createPipelinedRenderer();
+            final Rect rect = glyphRectForTextureMapping;
+            final TextData data = (TextData) rect.getUserData();
+            atlas.use(data);
 
-            final TextureRenderer renderer = getBackingStore();
+            final TextureRenderer renderer = data.page.getBackingStore();
             // Handles case where NPOT texture is used for backing store
             final TextureCoords wholeImageTexCoords = renderer.getTexture().getImageTexCoords();
             final float xScale = wholeImageTexCoords.right();
             final float yScale = wholeImageTexCoords.bottom();
 
-            final Rect rect = glyphRectForTextureMapping;
-            final TextData data = (TextData) rect.getUserData();
-            data.markUsed();
-
             final Rectangle2D origRect = data.origRect();
 
             final float verticalScale = verticalFlip ? -scaleFactor : scaleFactor;
@@ -1211,8 +1595,10 @@ public class TextRenderer {
             final float tx2 = xScale * (texturex + width) / renderer.getWidth();
             final float ty2 = yScale * (1.0f - ((float) (texturey + height) / (float) renderer.getHeight()));
 
-            TextureCoords coords = new TextureCoords(tx1, ty1, tx2, ty2);
-            mPipelinedQuadRenderer.quad(x, y, z, width * scaleFactor, height * verticalScale, coords);
+            atlas.quad(data.page, x, y, z, width * scaleFactor, height * verticalScale, tx1, ty1, tx2, ty2);
+            if (recording != null) {
+                recording.add(data, x, y, width * scaleFactor, height * verticalScale, tx1, ty1, tx2, ty2);
+            }
             return advance;
         }
 
@@ -1224,35 +1610,55 @@ public class TextRenderer {
         }
 
         private void upload() {
+            if (load()) {
+                return;
+            }
+
             final GlyphVector gv = getGlyphVector();
+            final Rect rect = place(gv);
+            // OK, should now have an (x, y) for this rectangle; rasterize
+            // the glyph
+            rasterize(rect, ((TextData) rect.getUserData()).origin(), null, gv);
+            record(rect, null);
+            // Re-register ourselves with our producer
+            producer.register(this);
+        }
+
+        // Places the glyph on the atlas from the disk cache, if it's there
+        private boolean load() {
+            if (diskGlyphs == null) {
+                return false;
+            }
+
+            final GlyphDiskCache.Entry entry = diskGlyphs.get(glyphCode);
+            if (entry == null) {
+                return false;
+            }
+
+            final Rect rect = new Rect(0, 0, entry.width, entry.height,
+                    new TextData(TextRenderer.this, null, new Point(entry.originX, entry.originY),
+                            new Rectangle2D.Double(entry.boundsX, entry.boundsY, entry.boundsWidth, entry.boundsHeight),
+                            glyphCode));
+            atlas.add(rect);
+            glyphRectForTextureMapping = rect;
+            store(rect, entry.pixels);
+            singleUnicodeGlyphVector = null;
+            producer.register(this);
+            return true;
+        }
+
+        // Finds room for the glyph on the atlas
+        private Rect place(final GlyphVector gv) {
             final Rectangle2D origBBox = preNormalize(renderDelegate.getBounds(gv, getFontRenderContext()));
             final Rectangle2D bbox = normalize(origBBox);
             final Point origin = new Point((int) -bbox.getMinX(),
                     (int) -bbox.getMinY());
             final Rect rect = new Rect(0, 0, (int) bbox.getWidth(),
                     (int) bbox.getHeight(),
-                    new TextData(null, origin, origBBox, unicodeID));
-            packer.add(rect);
+                    new TextData(TextRenderer.this, null, origin, origBBox, glyphCode));
+            atlas.add(rect);
             glyphRectForTextureMapping = rect;
-            final Graphics2D g = getGraphics2D();
-            // OK, should now have an (x, y) for this rectangle; rasterize
-            // the glyph
-            final int strx = rect.x() + origin.x;
-            final int stry = rect.y() + origin.y;
-
-            // Clear out the area we're going to draw into
-            g.setComposite(AlphaComposite.Clear);
-            g.fillRect(rect.x(), rect.y(), rect.w(), rect.h());
-            g.setComposite(AlphaComposite.Src);
-
-            // Draw the string
-            renderDelegate.drawGlyphVector(g, gv, strx, stry);
-
-            // Mark this region of the TextureRenderer as dirty
-            getBackingStore().markDirty(rect.x(), rect.y(), rect.w(),
-                    rect.h());
-            // Re-register ourselves with our producer
-            producer.register(this);
+            return rect;
         }
 
         private GlyphVector getGlyphVector() {
@@ -1261,155 +1667,208 @@ public class TextRenderer {
                 singleUnicodeGlyphVector = null; // Don't need this anymore
                 return gv;
             }
-            singleUnicode[0] = (char) unicodeID;
-            return font.createGlyphVector(getFontRenderContext(), singleUnicode);
-        }
-    }
-
-    private void createPipelinedRenderer() {
-        if (mPipelinedQuadRenderer == null) {
-            mPipelinedQuadRenderer = new Pipelined_QuadRenderer(gl) {
-                @Override
-                protected void uploadTexture() {
-                    getBackingStore().getTexture(); // triggers texture uploads.  Maybe this should be more obvious?
-                }
-
-                @Override
-                protected void setupDraw() {
-                    getBackingStore().setupVertexAttributes(transform, cachedRGBA);
-                }
-
-                @Override
-                protected void cleanupDraw() {
-                    getBackingStore().cleanupVertexAttributes();
-                }
-            };
+            // Atlas entries are keyed by glyph code, so recreate the
+            // glyph from the code rather than from the character
+            singleGlyph[0] = glyphCode;
+            return font.createGlyphVector(getFontRenderContext(), singleGlyph);
         }
     }
 
     class GlyphProducer {
         static final int undefined = -2;
-        final FontRenderContext fontRenderContext = null; // FIXME: Never initialized!
         List<Glyph> glyphsOutput = new ArrayList<Glyph>();
-        HashMap<String, GlyphVector> fullGlyphVectorCache = new HashMap<String, GlyphVector>();
-        HashMap<Character, GlyphMetrics> glyphMetricsCache = new HashMap<Character, GlyphMetrics>();
-        // The mapping from unicode character to font-specific glyph ID
-        int[] unicodes2Glyphs;
+        // Layouts of the strings, least recently used first
+        LinkedHashMap<TextKey, GlyphVector> fullGlyphVectorCache = new LinkedHashMap<TextKey, GlyphVector>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<TextKey, GlyphVector> eldest) {
+                return size() > maxCachedStrings;
+            }
+        };
+        HashMap<Integer, GlyphMetrics> glyphMetricsCache = new HashMap<Integer, GlyphMetrics>();
+        // The mapping from unicode code point to font-specific glyph ID
+        final CodePointMap unicodes2Glyphs = new CodePointMap(undefined);
         // The mapping from glyph ID to Glyph
         Glyph[] glyphCache;
         // We re-use this for each incoming string
         CharSequenceIterator iter = new CharSequenceIterator();
+        // The positions of the glyphs in glyphsOutput if the string
+        // was laid out, otherwise null
+        float[] glyphPositions;
+        float[] positionsBuffer = new float[64];
 
         GlyphProducer(final int fontLengthInGlyphs) {
-            unicodes2Glyphs = new int[512];
             glyphCache = new Glyph[fontLengthInGlyphs];
-            clearAllCacheEntries();
         }
 
         public List<Glyph> getGlyphs(final CharSequence inString) {
             glyphsOutput.clear();
+            glyphPositions = null;
             GlyphVector fullRunGlyphVector;
-            fullRunGlyphVector = fullGlyphVectorCache.get(inString.toString());
+            fullRunGlyphVector = fullGlyphVectorCache.get(lookupKey.set(inString));
             if (fullRunGlyphVector == null) {
                 iter.initFromCharSequence(inString);
                 fullRunGlyphVector = font.createGlyphVector(getFontRenderContext(), iter);
-                fullGlyphVectorCache.put(inString.toString(), fullRunGlyphVector);
+                fullGlyphVectorCache.put(new TextKey().set(inString.toString()), fullRunGlyphVector);
             }
             final boolean complex = (fullRunGlyphVector.getLayoutFlags() != 0);
-            if (complex || DISABLE_GLYPH_CACHE) {
+            if (DISABLE_GLYPH_CACHE || (complex && !getPositionedGlyphs(fullRunGlyphVector))) {
                 // Punt to the robust version of the renderer
+                glyphsOutput.clear();
+                glyphPositions = null;
                 glyphsOutput.add(new Glyph(inString.toString(), false));
                 return glyphsOutput;
             }
+            if (complex) {
+                return glyphsOutput;
+            }
 
-            final int lengthInGlyphs = fullRunGlyphVector.getNumGlyphs();
+            // Without any layout the glyphs correspond to the chars one
+            // to one; the low surrogate of a pair gets an invisible glyph
+            final int length = Math.min(inString.length(), fullRunGlyphVector.getNumGlyphs());
             int i = 0;
-            while (i < lengthInGlyphs) {
-                final Character letter = CharacterCache.valueOf(inString.charAt(i));
-                GlyphMetrics metrics = glyphMetricsCache.get(letter);
+            while (i < length) {
+                final int unicodeID = Character.codePointAt(inString, i);
+                GlyphMetrics metrics = glyphMetricsCache.get(unicodeID);
                 if (metrics == null) {
                     metrics = fullRunGlyphVector.getGlyphMetrics(i);
-                    glyphMetricsCache.put(letter, metrics);
+                    glyphMetricsCache.put(unicodeID, metrics);
                 }
-                final Glyph glyph = getGlyph(inString, metrics, i);
+                final Glyph glyph = getGlyph(unicodeID, metrics);
                 if (glyph != null) {
                     glyphsOutput.add(glyph);
-                    i++;
+                    i += Character.charCount(unicodeID);
                 } else {
                     // Assemble a run of characters that don't fit in
                     // the cache
                     final StringBuilder buf = new StringBuilder();
-                    while (i < lengthInGlyphs &&
-                            getGlyph(inString, fullRunGlyphVector.getGlyphMetrics(i), i) == null) {
-                        buf.append(inString.charAt(i++));
+                    while (i < length) {
+                        final int codePoint = Character.codePointAt(inString, i);
+                        if (getGlyph(codePoint, fullRunGlyphVector.getGlyphMetrics(i)) != null) {
+                            break;
+                        }
+                        buf.appendCodePoint(codePoint);
+                        i += Character.charCount(codePoint);
                     }
                     glyphsOutput.add(new Glyph(buf.toString(),
                             // Any more glyphs after this run?
-                            i < lengthInGlyphs));
+                            i < length));
                 }
             }
             return glyphsOutput;
         }
 
-        public void clearCacheEntry(final int unicodeID) {
-            final int glyphID = unicodes2Glyphs[unicodeID];
-            if (glyphID != undefined) {
-                final Glyph glyph = glyphCache[glyphID];
-                if (glyph != null) {
-                    glyph.clear();
+        /**
+         * Collects the glyphs of an already laid out GlyphVector, see
+         * {@link #getGlyphPositions getGlyphPositions}. Returns false if
+         * some glyph can't be taken from the cache.
+         */
+        public boolean getGlyphs(final GlyphVector glyphVector) {
+            glyphsOutput.clear();
+            glyphPositions = null;
+            return getPositionedGlyphs(glyphVector);
+        }
+
+        /**
+         * Returns the positions of the glyphs returned by the last
+         * {@link #getGlyphs getGlyphs} call, relative to the start of
+         * the string, or null if they should be placed by their
+         * advances.
+         */
+        public float[] getGlyphPositions() {
+            return glyphPositions;
+        }
+
+        // Fills glyphsOutput and glyphPositions from a laid out glyph
+        // vector. Returns false if some glyph can't be taken from the
+        // cache, in which case the whole string has to be rendered at
+        // once.
+        private boolean getPositionedGlyphs(final GlyphVector fullRunGlyphVector) {
+            if ((fullRunGlyphVector.getLayoutFlags() & GlyphVector.FLAG_HAS_TRANSFORMS) != 0) {
+                return false;
+            }
+
+            final int lengthInGlyphs = fullRunGlyphVector.getNumGlyphs();
+            if (positionsBuffer.length < lengthInGlyphs * 2) {
+                positionsBuffer = new float[lengthInGlyphs * 2];
+            }
+
+            for (int i = 0; i < lengthInGlyphs; i++) {
+                final int glyphCode = fullRunGlyphVector.getGlyphCode(i);
+                if (glyphCode >= glyphCache.length) {
+                    // Invisible glyphs (0xFFFF, 0xFFFE) are left out by
+                    // the layout, anything else can't be cached
+                    if (glyphCode >= 0xFFFE) {
+                        continue;
+                    }
+                    return false;
+                }
+
+                Glyph glyph = glyphCache[glyphCode];
+                if (glyph == null) {
+                    glyph = new Glyph(-1, glyphCode,
+                            fullRunGlyphVector.getGlyphMetrics(i).getAdvance(), null, this);
+                    register(glyph);
                 }
-                glyphCache[glyphID] = null;
+
+                final Point2D position = fullRunGlyphVector.getGlyphPosition(i);
+                positionsBuffer[glyphsOutput.size() * 2] = (float) position.getX();
+                positionsBuffer[glyphsOutput.size() * 2 + 1] = (float) position.getY();
+                glyphsOutput.add(glyph);
             }
-            unicodes2Glyphs[unicodeID] = undefined;
+
+            glyphPositions = positionsBuffer;
+            return true;
+        }
+
+        public void clearCacheEntry(final int glyphCode) {
+            final Glyph glyph = glyphCache[glyphCode];
+            if (glyph != null) {
+                glyph.clear();
+            }
+            glyphCache[glyphCode] = null;
         }
 
         public void clearAllCacheEntries() {
-            for (int i = 0; i < unicodes2Glyphs.length; i++) {
-                clearCacheEntry(i);
+            for (int i = 0; i < glyphCache.length; i++) {
+                if (glyphCache[i] != null) {
+                    glyphCache[i].clear();
+                    glyphCache[i] = null;
+                }
             }
+            unicodes2Glyphs.clear();
         }
 
         public void register(final Glyph glyph) {
-            unicodes2Glyphs[glyph.getUnicodeID()] = glyph.getGlyphCode();
+            if (glyph.getUnicodeID() >= 0) {
+                unicodes2Glyphs.put(glyph.getUnicodeID(), glyph.getGlyphCode());
+            }
             glyphCache[glyph.getGlyphCode()] = glyph;
         }
 
-        public float getGlyphPixelWidth(final char unicodeID) {
+        public float getGlyphPixelWidth(final int unicodeID) {
             final Glyph glyph = getGlyph(unicodeID);
             if (glyph != null) {
                 return glyph.getAdvance();
             }
 
             // Have to do this the hard / uncached way
-            singleUnicode[0] = unicodeID;
-            if (null == fontRenderContext) { // FIXME: Never initialized!
-                throw new InternalError("fontRenderContext never initialized!");
-            }
-            final GlyphVector gv = font.createGlyphVector(fontRenderContext,
-                    singleUnicode);
+            final GlyphVector gv = font.createGlyphVector(getFontRenderContext(),
+                    toChars(unicodeID));
             return gv.getGlyphMetrics(0).getAdvance();
         }
 
-        // Returns a glyph object for this single glyph. Returns null
-        // if the unicode or glyph ID would be out of bounds of the
-        // glyph cache.
-        private Glyph getGlyph(final CharSequence inString,
-                               final GlyphMetrics glyphMetrics,
-                               final int index) {
-            final char unicodeID = inString.charAt(index);
-
-            if (unicodeID >= unicodes2Glyphs.length) {
-                return null;
-            }
-
-            final int glyphID = unicodes2Glyphs[unicodeID];
-            if (glyphID != undefined) {
-                return glyphCache[glyphID];
+        // Returns a glyph object for this single code point. Returns
+        // null if the glyph ID would be out of bounds of the glyph
+        // cache.
+        private Glyph getGlyph(final int unicodeID,
+                               final GlyphMetrics glyphMetrics) {
+            final Glyph cached = getCachedGlyph(unicodeID);
+            if (cached != null) {
+                return cached;
             }
 
             // Must fabricate the glyph
-            singleUnicode[0] = unicodeID;
-            final GlyphVector gv = font.createGlyphVector(getFontRenderContext(), singleUnicode);
+            final GlyphVector gv = font.createGlyphVector(getFontRenderContext(), toChars(unicodeID));
             return getGlyph(unicodeID, gv, glyphMetrics);
         }
 
@@ -1417,19 +1876,22 @@ public class TextRenderer {
         // optimal results than if we can see the entire GlyphVector
         // for the incoming string
         private Glyph getGlyph(final int unicodeID) {
-            if (unicodeID >= unicodes2Glyphs.length) {
-                return null;
+            final Glyph cached = getCachedGlyph(unicodeID);
+            if (cached != null) {
+                return cached;
             }
 
-            final int glyphID = unicodes2Glyphs[unicodeID];
-            if (glyphID != undefined) {
-                return glyphCache[glyphID];
-            }
-            singleUnicode[0] = (char) unicodeID;
-            final GlyphVector gv = font.createGlyphVector(getFontRenderContext(), singleUnicode);
+            final GlyphVector gv = font.createGlyphVector(getFontRenderContext(), toChars(unicodeID));
             return getGlyph(unicodeID, gv, gv.getGlyphMetrics(0));
         }
 
+        private Glyph getCachedGlyph(final int unicodeID) {
+            final int glyphID = unicodes2Glyphs.get(unicodeID);
+            // The mapping stays valid when the glyph is evicted from the
+            // atlas, in which case it has to be fabricated again
+            return glyphID != undefined ? glyphCache[glyphID] : null;
+        }
+
         private Glyph getGlyph(final int unicodeID,
                                final GlyphVector singleUnicodeGlyphVector,
                                final GlyphMetrics metrics) {
@@ -1438,6 +1900,11 @@ public class TextRenderer {
             if (glyphCode >= glyphCache.length) {
                 return null;
             }
+            if (glyphCache[glyphCode] != null) {
+                // Already cached for another code point or laid out text
+                unicodes2Glyphs.put(unicodeID, glyphCode);
+                return glyphCache[glyphCode];
+            }
             final Glyph glyph = new Glyph(unicodeID,
                     glyphCode,
                     metrics.getAdvance(),
@@ -1448,35 +1915,15 @@ public class TextRenderer {
         }
     }
 
-    private static class CharacterCache {
-        private CharacterCache() {
-        }
-
-        static final Character cache[] = new Character[127 + 1];
-
-        static {
-            for (int i = 0; i < cache.length; i++) {
-                cache[i] = Character.valueOf((char) i);
-            }
-        }
-
-        public static Character valueOf(final char c) {
-            if (c <= 127) { // must cache
-                return CharacterCache.cache[c];
-            }
-            return Character.valueOf(c);
-        }
-    }
-
     /**
      * Sets whether smoothing (i.e., GL_LINEAR filtering) is enabled
      * in the backing TextureRenderer of this TextRenderer. A few
      * graphics cards do not behave well when this is enabled,
-     * resulting in fuzzy text. Defaults to true.
+     * resulting in fuzzy text. Defaults to true. The setting applies
+     * to all renderers sharing the atlas.
      */
     public void setSmoothing(final boolean smoothing) {
-        this.smoothing = smoothing;
-        getBackingStore().setSmoothing(smoothing);
+        atlas.setSmoothing(smoothing);
     }
 
     /**
@@ -1486,7 +1933,7 @@ public class TextRenderer {
      * Defaults to true.
      */
     public boolean getSmoothing() {
-        return smoothing;
+        return atlas.getSmoothing();
     }
 
 }
@@ -46,13 +46,10 @@ import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Rectangle;
 import java.awt.image.*;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.github.opengrabeso.jaagl.GL2GL3;
-import net.opengrabeso.glg2d.impl.shader.AnyModePipeline;
 import net.opengrabeso.opengl.util.texture.*;
 import net.opengrabeso.opengl.util.texture.awt.*;
 
@@ -66,6 +63,10 @@ import net.opengrabeso.opengl.util.texture.awt.*;
  */
 
 public class TextureRenderer {
+    // Beyond this many separate dirty regions, new ones are merged into
+    // the region they enlarge the least
+    private static final int MAX_DIRTY_REGIONS = 32;
+
     // For now, we supply only a BufferedImage back-end for this
     // renderer. In theory we could use the Java 2D/JOGL bridge to fully
     // accelerate the rendering paths, but there are restrictions on
@@ -88,19 +89,9 @@ public class TextureRenderer {
     private Texture texture;
     private AWTTextureData textureData;
     private boolean mustReallocateTexture;
-    private Rectangle dirtyRegion;
-
-    private int program;
-
-    private int transformUniform = -1;
-    private int colorUniform = -1;
-    private int vertCoordAttrib = -1;
-    private int texCoordAttrib = -1;
-
-    private boolean useVAO = false; // avoid using VAO on older OpenGL
-    private int vao = -1;
-    private boolean vaoSetupDone = false;
-
+    // Disjoint regions to upload; overlapping and adjacent ones are
+    // merged, distant ones are uploaded separately
+    private final List<Rectangle> dirtyRegions = new ArrayList<Rectangle>();
 
     /**
      * Creates a new renderer with backing store of the specified width
@@ -123,117 +114,6 @@ public class TextureRenderer {
     private TextureRenderer(final GL2GL3 gl, final int width, final int height, final boolean alpha, final boolean intensity, final boolean mipmap) {
         this.gl = gl;
         init(width, height);
-        setup();
-    }
-
-    static private String readResource(Class<?> context, String path) {
-        InputStream stream = null;
-        if (context != null) {
-            stream = context.getResourceAsStream(path);
-        }
-
-        if (stream == null) {
-            stream = TextureRenderer.class.getResourceAsStream(path);
-        }
-
-        BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
-        StringBuilder sb = new StringBuilder();
-        try {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line).append("\n");
-            }
-        } catch(IOException ignored) {
-        } finally {
-            try {
-                stream.close();
-            } catch (IOException ignored) {
-            }
-        }
-
-        return sb.toString();
-    }
-
-    // create shaders and similar OpenGL objects
-    private void setup() {
-        gl.glGetError(); // flush any pending errors
-
-        String directory = gl.isGL3() ? "gl3/" : "gl2/";
-
-        String vsSource = readResource(AnyModePipeline.class, directory + "TextShader.v");
-        String fsSource = readResource(AnyModePipeline.class, directory + "TextShader.f");
-
-        program = ShaderLoader.loadProgram(gl, vsSource, fsSource);
-
-        transformUniform = gl.glGetUniformLocation(program, "MVPMatrix");
-        colorUniform = gl.glGetUniformLocation(program, "Color");
-
-        vertCoordAttrib = gl.glGetAttribLocation(program, "MCVertex");
-        texCoordAttrib = gl.glGetAttribLocation(program, "TexCoord0");
-
-        // try VAO support
-        // it seems when there is no VAO glGenVertexArrays fails gracefully by returning -1,
-        // but as it is hard to test this on older implementations, using an additional try should do no harm
-        try {
-            int[] vao = new int[]{0};
-            gl.glGenVertexArrays(vao);
-            this.vao = vao[0];
-            this.useVAO = this.vao > 0;
-
-        } catch (Exception ex) {
-            this.useVAO = false;
-        }
-
-        if (false) {
-            // crashes on MacOS - VAO not provided
-            // validating has no sense - we have no fallback anyway
-            ShaderLoader.validateProgram(gl, program);
-        }
-    }
-
-    private void setupVertexAttributesImpl() {
-        gl.glEnableVertexAttribArray(vertCoordAttrib);
-        gl.glEnableVertexAttribArray(texCoordAttrib);
-
-        gl.glVertexAttribPointer(vertCoordAttrib, 3, gl.GL_FLOAT(), false, 5 * Float.BYTES, 0);
-        gl.glVertexAttribPointer(texCoordAttrib, 2, gl.GL_FLOAT(), false, 5 * Float.BYTES, 3 * Float.BYTES);
-    }
-
-    private void cleanupVertexAttributesImpl() {
-        gl.glDisableVertexAttribArray(vertCoordAttrib);
-        gl.glDisableVertexAttribArray(texCoordAttrib);
-    }
-
-    public void setupVertexAttributes(float[] transform, float[] color) {
-        // TODO: VBA
-        if (useVAO) {
-            gl.glBindVertexArray(vao);
-            if (!vaoSetupDone) {
-                setupVertexAttributesImpl();
-                vaoSetupDone = true;
-            }
-        } else {
-            setupVertexAttributesImpl();
-        }
-
-        gl.glUseProgram(program);
-        gl.glUniformMatrix4fv(transformUniform, 1, false, transform, 0);
-        gl.glUniform4fv(colorUniform, 1, color, 0);
-    }
-
-    public void cleanupVertexAttributes() {
-        gl.glUseProgram(0);
-
-        if (useVAO) {
-            gl.glBindVertexArray(0);
-        } else {
-            cleanupVertexAttributesImpl();
-        }
-    }
-
-
-    private void cleanup() {
-        gl.glDeleteProgram(program);
     }
 
     /**
@@ -378,7 +258,8 @@ public class TextureRenderer {
      * region, and any previously set dirty regions, will be
      * automatically synchronized with the underlying Texture during
      * the next {@link #getTexture getTexture} operation, at which
-     * point the dirty region will be cleared. It is not necessary for
+     * point the dirty region will be cleared. Regions which neither
+     * overlap nor touch are uploaded separately. It is not necessary for
      * an OpenGL context to be current when this method is called.
      *
      * @param x      the x coordinate (in Java 2D coordinates -- relative to
@@ -390,22 +271,65 @@ public class TextureRenderer {
      */
     public void markDirty(final int x, final int y, final int width, final int height) {
         final Rectangle curRegion = new Rectangle(x, y, width, height);
-        if (dirtyRegion == null) {
-            dirtyRegion = curRegion;
+
+        // Absorb the regions touching the new one, the union can touch
+        // further regions
+        boolean merged;
+        do {
+            merged = false;
+            for (int i = 0; i < dirtyRegions.size(); i++) {
+                if (touches(dirtyRegions.get(i), curRegion)) {
+                    curRegion.add(dirtyRegions.remove(i));
+                    merged = true;
+                    break;
+                }
+            }
+        } while (merged);
+
+        if (dirtyRegions.size() >= MAX_DIRTY_REGIONS) {
+            dirtyRegions.get(closestRegion(curRegion)).add(curRegion);
         } else {
-            dirtyRegion.add(curRegion);
+            dirtyRegions.add(curRegion);
         }
     }
 
+    private static boolean touches(final Rectangle a, final Rectangle b) {
+        return a.x <= b.x + b.width && b.x <= a.x + a.width &&
+                a.y <= b.y + b.height && b.y <= a.y + a.height;
+    }
+
+    // Index of the dirty region whose area grows the least by adding the
+    // given one
+    private int closestRegion(final Rectangle region) {
+        int closest = 0;
+        long minGrowth = Long.MAX_VALUE;
+        for (int i = 0; i < dirtyRegions.size(); i++) {
+            final Rectangle dirty = dirtyRegions.get(i);
+            final Rectangle union = dirty.union(region);
+            final long growth = (long) union.width * union.height - (long) dirty.width * dirty.height;
+            if (growth < minGrowth) {
+                minGrowth = growth;
+                closest = i;
+            }
+        }
+
+        return closest;
+    }
+
     /**
      * Returns the underlying OpenGL Texture object associated with
      * this renderer, synchronizing any dirty regions of the
      * TextureRenderer with the underlying OpenGL texture.
      */
     public Texture getTexture() {
-        if (dirtyRegion != null) {
-            sync(dirtyRegion.x, dirtyRegion.y, dirtyRegion.width, dirtyRegion.height);
-            dirtyRegion = null;
+        if (!dirtyRegions.isEmpty()) {
+            // A newly allocated texture already has the whole image
+            if (!ensureTexture()) {
+                for (final Rectangle region : dirtyRegions) {
+                    sync(region.x, region.y, region.width, region.height);
+                }
+            }
+            dirtyRegions.clear();
         }
 
         ensureTexture();
@@ -417,7 +341,6 @@ public class TextureRenderer {
      * valid to use this renderer after calling this method.
      */
     public void dispose() {
-        cleanup();
         if (texture != null) {
             texture.destroy(gl);
             texture = null;
@@ -536,8 +459,22 @@ public class TextureRenderer {
         }
     }
 
+    /**
+     * Allocates the OpenGL texture if necessary, without uploading the
+     * backing store to it, for callers which fill the texture on the GPU.
+     * Regions of the new texture which aren't filled that way must be
+     * marked dirty. Returns the texture, or null if it already existed.
+     */
+    public Texture allocateTexture() {
+        return ensureTexture(false) ? texture : null;
+    }
+
     // Returns true if the texture was newly allocated, false if not
     private boolean ensureTexture() {
+        return ensureTexture(true);
+    }
+
+    private boolean ensureTexture(final boolean upload) {
         if (mustReallocateTexture) {
             if (texture != null) {
                 texture.destroy(gl);
@@ -547,7 +484,14 @@ public class TextureRenderer {
         }
 
         if (texture == null) {
-            texture = new Texture(gl, textureData);
+            if (upload) {
+                texture = new Texture(gl, textureData);
+            } else {
+                texture = new Texture(gl.GL_TEXTURE_2D());
+                texture.allocateImage(gl, textureData);
+                // Only what is marked dirty from now on gets uploaded
+                dirtyRegions.clear();
+            }
 
             if (!smoothing) {
                 // The TextureIO classes default to GL_LINEAR filtering
@@ -47,7 +47,7 @@ import java.util.*;
  * algorithm for the contained Rects.
  */
 
-public class LevelSet {
+public class LevelSet implements RectangleLayout {
     // Maintained in sorted order by increasing Y coordinate
     private final List<Level> levels = new ArrayList<Level>();
     private int nextAddY;
@@ -173,6 +173,20 @@ public class LevelSet {
         return nextAddY;
     }
 
+    /**
+     * Gets the sum of the areas of the Rects in this LevelSet.
+     */
+    public long getUsedArea() {
+        long area = 0;
+        for (final Level level : levels) {
+            for (final Iterator<Rect> iter = level.iterator(); iter.hasNext(); ) {
+                final Rect rect = iter.next();
+                area += (long) rect.w() * rect.h();
+            }
+        }
+        return area;
+    }
+
     /**
      * Sets the height of this LevelSet. It is only legal to reduce the
      * height to greater than or equal to the currently used height.
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2015 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.opengrabeso.opengl.util.packrect;
+
+import java.util.*;
+
+/**
+ * Keeps the list of maximal free rectangles, possibly overlapping,
+ * and places each Rect into the one it fits with the shortest
+ * leftover side. Based on Jukka Jyl&auml;nki, "A Thousand Ways to Pack
+ * the Bin".
+ */
+public class MaxRectsLayout implements RectangleLayout {
+    private final int w;
+    private int h;
+
+    private final List<Rect> rects = new ArrayList<Rect>();
+    private final List<Rect> freeRects = new ArrayList<Rect>();
+
+    private long usedArea;
+
+    public MaxRectsLayout(final int w, final int h) {
+        this.w = w;
+        this.h = h;
+        clear();
+    }
+
+    @Override
+    public int w() {
+        return w;
+    }
+
+    @Override
+    public int h() {
+        return h;
+    }
+
+    @Override
+    public boolean add(final Rect rect) {
+        Rect best = null;
+        int bestShortSide = Integer.MAX_VALUE;
+        int bestLongSide = Integer.MAX_VALUE;
+        for (final Rect free : freeRects) {
+            if (!free.canContain(rect))
+                continue;
+
+            final int leftoverW = free.w() - rect.w();
+            final int leftoverH = free.h() - rect.h();
+            final int shortSide = Math.min(leftoverW, leftoverH);
+            final int longSide = Math.max(leftoverW, leftoverH);
+            if (shortSide < bestShortSide || (shortSide == bestShortSide && longSide < bestLongSide)) {
+                best = free;
+                bestShortSide = shortSide;
+                bestLongSide = longSide;
+            }
+        }
+
+        if (best == null)
+            return false;
+
+        rect.setPosition(best.x(), best.y());
+        occupy(rect);
+
+        rects.add(rect);
+        usedArea += (long) rect.w() * rect.h();
+        return true;
+    }
+
+    // Splits all free rectangles overlapping the given one into the
+    // parts around it
+    private void occupy(final Rect used) {
+        final int usedRight = used.x() + used.w();
+        final int usedBottom = used.y() + used.h();
+
+        final List<Rect> split = new ArrayList<Rect>();
+        for (final Iterator<Rect> iter = freeRects.iterator(); iter.hasNext(); ) {
+            final Rect free = iter.next();
+            if (!intersects(free, used))
+                continue;
+
+            iter.remove();
+            final int freeRight = free.x() + free.w();
+            final int freeBottom = free.y() + free.h();
+            if (used.x() > free.x())
+                split.add(new Rect(free.x(), free.y(), used.x() - free.x(), free.h(), null));
+            if (usedRight < freeRight)
+                split.add(new Rect(usedRight, free.y(), freeRight - usedRight, free.h(), null));
+            if (used.y() > free.y())
+                split.add(new Rect(free.x(), free.y(), free.w(), used.y() - free.y(), null));
+            if (usedBottom < freeBottom)
+                split.add(new Rect(free.x(), usedBottom, free.w(), freeBottom - usedBottom, null));
+        }
+
+        freeRects.addAll(split);
+        prune(split);
+    }
+
+    // Drops the given free rectangles if another one contains them, and the
+    // ones they contain. The others don't contain each other already, so
+    // this is linear in the number of free rectangles.
+    private void prune(final List<Rect> added) {
+        for (final Rect rect : added) {
+            boolean contained = false;
+            for (final Iterator<Rect> iter = freeRects.iterator(); iter.hasNext(); ) {
+                final Rect free = iter.next();
+                if (free == rect)
+                    continue;
+                if (contains(free, rect)) {
+                    contained = true;
+                    break;
+                }
+                if (contains(rect, free))
+                    iter.remove();
+            }
+            if (contained)
+                freeRects.remove(rect);
+        }
+    }
+
+    // Drops the free rectangles contained in other ones
+    private void prune() {
+        for (int i = 0; i < freeRects.size(); i++) {
+            for (int j = i + 1; j < freeRects.size(); j++) {
+                if (contains(freeRects.get(j), freeRects.get(i))) {
+                    freeRects.remove(i);
+                    --i;
+                    break;
+                }
+                if (contains(freeRects.get(i), freeRects.get(j))) {
+                    freeRects.remove(j);
+                    --j;
+                }
+            }
+        }
+    }
+
+    private static boolean intersects(final Rect a, final Rect b) {
+        return a.x() < b.x() + b.w() && b.x() < a.x() + a.w() &&
+                a.y() < b.y() + b.h() && b.y() < a.y() + a.h();
+    }
+
+    private static boolean contains(final Rect outer, final Rect inner) {
+        return inner.x() >= outer.x() && inner.y() >= outer.y() &&
+                inner.x() + inner.w() <= outer.x() + outer.w() &&
+                inner.y() + inner.h() <= outer.y() + outer.h();
+    }
+
+    @Override
+    public boolean remove(final Rect rect) {
+        if (!rects.remove(rect))
+            return false;
+
+        usedArea -= (long) rect.w() * rect.h();
+        // Not maximal any more in general, but the space is reused
+        // until the next compaction rebuilds the free list
+        final Rect freed = new Rect(rect.x(), rect.y(), rect.w(), rect.h(), null);
+        freeRects.add(freed);
+        prune(Collections.singletonList(freed));
+        return true;
+    }
+
+    @Override
+    public boolean compactAndAdd(final Rect rect, final Object backingStore, final BackingStoreManager manager) {
+        // The free rectangles are already as large as possible
+        return false;
+    }
+
+    @Override
+    public int getUsedHeight() {
+        int usedHeight = 0;
+        for (final Rect rect : rects) {
+            usedHeight = Math.max(usedHeight, rect.y() + rect.h());
+        }
+        return usedHeight;
+    }
+
+    @Override
+    public long getUsedArea() {
+        return usedArea;
+    }
+
+    @Override
+    public void setHeight(final int height) throws IllegalArgumentException {
+        if (height < getUsedHeight()) {
+            throw new IllegalArgumentException("May not reduce height below currently used height");
+        }
+
+        if (height > h) {
+            freeRects.add(new Rect(0, h, w, height - h, null));
+        } else {
+            for (final Iterator<Rect> iter = freeRects.iterator(); iter.hasNext(); ) {
+                final Rect free = iter.next();
+                if (free.y() >= height) {
+                    iter.remove();
+                } else if (free.y() + free.h() > height) {
+                    free.setSize(free.w(), height - free.y());
+                }
+            }
+        }
+        prune();
+        h = height;
+    }
+
+    @Override
+    public float verticalFragmentationRatio() {
+        final int usedHeight = getUsedHeight();
+        if (usedHeight == 0)
+            return 0.0f;
+        return 1.0f - (float) usedArea / ((float) w * usedHeight);
+    }
+
+    @Override
+    public void visit(final RectVisitor visitor) {
+        for (final Rect rect : rects) {
+            visitor.visit(rect);
+        }
+    }
+
+    @Override
+    public void updateRectangleReferences() {
+        for (int i = 0; i < rects.size(); i++) {
+            final Rect cur = rects.get(i);
+            final Rect next = cur.getNextLocation();
+            next.setPosition(cur.x(), cur.y());
+            if (cur.w() != next.w() || cur.h() != next.h())
+                throw new RuntimeException("Unexpected disparity in rectangle sizes during updateRectangleReferences");
+            rects.set(i, next);
+        }
+    }
+
+    @Override
+    public void clear() {
+        rects.clear();
+        freeRects.clear();
+        freeRects.add(new Rect(0, 0, w, h, null));
+        usedArea = 0;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.opengrabeso.opengl.util.packrect;
+
+/**
+ * The algorithms a {@link RectanglePacker} can place its Rects with.
+ */
+public enum PackingAlgorithm {
+    /**
+     * Rows of rectangles of similar height, see {@link LevelSet}. Cheap,
+     * but tall and short rectangles waste a lot of space when mixed.
+     */
+    LEVELS {
+        @Override
+        public RectangleLayout createLayout(final int w, final int h) {
+            return new LevelSet(w, h);
+        }
+    },
+
+    /**
+     * Bottom-left placement on the skyline of the placed rectangles, see
+     * {@link SkylineLayout}.
+     */
+    SKYLINE {
+        @Override
+        public RectangleLayout createLayout(final int w, final int h) {
+            return new SkylineLayout(w, h);
+        }
+    },
+
+    /**
+     * Best short side fit into the maximal free rectangles, see
+     * {@link MaxRectsLayout}. Packs tightest, at the highest cost per
+     * addition.
+     */
+    MAX_RECTS {
+        @Override
+        public RectangleLayout createLayout(final int w, final int h) {
+            return new MaxRectsLayout(w, h);
+        }
+    };
+
+    public abstract RectangleLayout createLayout(int w, int h);
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.opengrabeso.opengl.util.packrect;
+
+/**
+ * The placement algorithm of a {@link RectanglePacker}: decides where
+ * Rects go within a backing store of a given size. Implementations
+ * are created by a {@link PackingAlgorithm}.
+ */
+public interface RectangleLayout {
+    int w();
+
+    int h();
+
+    /**
+     * Returns true if the given rectangle was successfully added given
+     * the current dimensions, false if not. Caller is responsible for
+     * performing compaction, expansion, etc. as a consequence.
+     */
+    boolean add(Rect rect);
+
+    /**
+     * Removes the given Rect, returning false if it wasn't added.
+     */
+    boolean remove(Rect rect);
+
+    /**
+     * Tries to make room for the given Rect by moving some of the
+     * others within the current backing store. Returns false if that
+     * isn't possible, indicating the need to expand the backing store.
+     */
+    boolean compactAndAdd(Rect rect, Object backingStore, BackingStoreManager manager);
+
+    /**
+     * Gets the height from the top of the backing store which
+     * contains all the Rects.
+     */
+    int getUsedHeight();
+
+    /**
+     * Returns the sum of the areas of all Rects.
+     */
+    long getUsedArea();
+
+    /**
+     * Sets the height of the backing store. It is only legal to reduce
+     * the height to greater than or equal to the currently used height.
+     */
+    void setHeight(int height) throws IllegalArgumentException;
+
+    /**
+     * Returns the share of the used height which is wasted, in the sense
+     * that a compaction would likely reclaim it.
+     */
+    float verticalFragmentationRatio();
+
+    /**
+     * Visits all Rects.
+     */
+    void visit(RectVisitor visitor);
+
+    /**
+     * Updates the references to the Rect objects with the "next
+     * locations" of those Rects. This is used to put the original Rects
+     * into a newly laid-out RectangleLayout.
+     */
+    void updateRectangleReferences();
+
+    /**
+     * Removes all Rects.
+     */
+    void clear();
+}
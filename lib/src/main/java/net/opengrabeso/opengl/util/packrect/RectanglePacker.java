@@ -46,13 +46,15 @@ import java.util.*;
  * image regions) into a larger backing store rectangle (typically
  * representing a large texture). Supports automatic compaction of
  * the space on the backing store, and automatic expansion of the
- * backing store, when necessary.
+ * backing store, when necessary. Where the rectangles go is decided
+ * by the {@link PackingAlgorithm} given at construction.
  */
 
 public class RectanglePacker {
     private final BackingStoreManager manager;
     private Object backingStore;
-    private LevelSet levels;
+    private final PackingAlgorithm algorithm;
+    private RectangleLayout levels;
     private static final float EXPANSION_FACTOR = 0.5f;
     private static final float SHRINK_FACTOR = 0.3f;
 
@@ -79,8 +81,16 @@ public class RectanglePacker {
     public RectanglePacker(final BackingStoreManager manager,
                            final int initialWidth,
                            final int initialHeight) {
+        this(manager, initialWidth, initialHeight, PackingAlgorithm.LEVELS);
+    }
+
+    public RectanglePacker(final BackingStoreManager manager,
+                           final int initialWidth,
+                           final int initialHeight,
+                           final PackingAlgorithm algorithm) {
         this.manager = manager;
-        levels = new LevelSet(initialWidth, initialHeight);
+        this.algorithm = algorithm;
+        levels = algorithm.createLayout(initialWidth, initialHeight);
         this.initialWidth = initialWidth;
         this.initialHeight = initialHeight;
     }
@@ -149,6 +159,23 @@ public class RectanglePacker {
         // Done
     }
 
+    /**
+     * Tries to place the given rectangle on the current backing store,
+     * compacting it horizontally if necessary. Unlike {@link #add add},
+     * this never expands the backing store and never notifies the
+     * BackingStoreManager that the addition failed. Returns false if
+     * the rectangle doesn't fit.
+     */
+    public boolean tryAdd(final Rect rect) {
+        if (backingStore == null)
+            backingStore = manager.allocateBackingStore(levels.w(), levels.h());
+
+        if (levels.add(rect))
+            return true;
+
+        return manager.canCompact() && levels.compactAndAdd(rect, backingStore, manager);
+    }
+
     /**
      * Removes the given rectangle from this RectanglePacker.
      */
@@ -174,6 +201,28 @@ public class RectanglePacker {
         return levels.verticalFragmentationRatio();
     }
 
+    /**
+     * Returns the share of the backing store covered by Rects, between
+     * 0 and 1.
+     */
+    public float getOccupancy() {
+        return (float) levels.getUsedArea() / ((float) levels.w() * levels.h());
+    }
+
+    /**
+     * Returns the width of the backing store.
+     */
+    public int w() {
+        return levels.w();
+    }
+
+    /**
+     * Returns the height of the backing store.
+     */
+    public int h() {
+        return levels.h();
+    }
+
     /**
      * Forces a compaction cycle, which typically results in allocating
      * a new backing store and copying all entries to it.
@@ -193,7 +242,7 @@ public class RectanglePacker {
         boolean done = false;
         int newWidth = levels.w();
         int newHeight = levels.h();
-        LevelSet nextLevelSet = null;
+        RectangleLayout nextLevelSet = null;
         int attemptNumber = 0;
         boolean needAdditionFailureNotification = false;
 
@@ -217,21 +266,20 @@ public class RectanglePacker {
                 needAdditionFailureNotification = true;
             }
 
-            nextLevelSet = new LevelSet(newWidth, newHeight);
+            nextLevelSet = algorithm.createLayout(newWidth, newHeight);
 
             // Make copies of all existing rectangles
             final List<Rect> newRects = new ArrayList<Rect>();
-            for (final Iterator<Level> i1 = levels.iterator(); i1.hasNext(); ) {
-                final Level level = i1.next();
-                for (final Iterator<Rect> i2 = level.iterator(); i2.hasNext(); ) {
-                    final Rect cur = i2.next();
+            levels.visit(new RectVisitor() {
+                @Override
+                public void visit(final Rect cur) {
                     final Rect newRect = new Rect(0, 0, cur.w(), cur.h(), null);
                     cur.setNextLocation(newRect);
                     // Hook up the reverse mapping too for easier replacement
                     newRect.setNextLocation(cur);
                     newRects.add(newRect);
                 }
-            }
+            });
             // Sort them by decreasing height (note: this isn't really
             // guaranteed to improve the chances of a successful layout)
             Collections.sort(newRects, rectHComparator);
@@ -286,14 +334,14 @@ public class RectanglePacker {
         final Object newBackingStore = manager.allocateBackingStore(nextLevelSet.w(),
                 nextLevelSet.h());
         manager.beginMovement(backingStore, newBackingStore);
-        for (final Iterator<Level> i1 = levels.iterator(); i1.hasNext(); ) {
-            final Level level = i1.next();
-            for (final Iterator<Rect> i2 = level.iterator(); i2.hasNext(); ) {
-                final Rect cur = i2.next();
-                manager.move(backingStore, cur,
+        final Object oldBackingStore = backingStore;
+        levels.visit(new RectVisitor() {
+            @Override
+            public void visit(final Rect cur) {
+                manager.move(oldBackingStore, cur,
                         newBackingStore, cur.getNextLocation());
             }
-        }
+        });
         // Replace references to temporary rectangles with original ones
         nextLevelSet.updateRectangleReferences();
         manager.endMovement(backingStore, newBackingStore);
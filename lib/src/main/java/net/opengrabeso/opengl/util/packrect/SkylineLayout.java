@@ -0,0 +1,249 @@
+/*
+ * Copyright 2015 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.opengrabeso.opengl.util.packrect;
+
+import java.util.*;
+
+/**
+ * Places each Rect as low as possible on the skyline formed by the
+ * top edges of the Rects placed so far, leftmost on ties. The space
+ * left below the skyline by a placement or a removal is kept in a free
+ * list, which is tried first, splitting the free rectangles guillotine
+ * style.
+ */
+public class SkylineLayout implements RectangleLayout {
+    private final int w;
+    private int h;
+
+    private final List<Rect> rects = new ArrayList<Rect>();
+
+    // Segments of the skyline ordered by x, covering the whole width;
+    // the rectangles' w() is the segment width and y() its top
+    private final List<Rect> skyline = new ArrayList<Rect>();
+
+    // Free space below the skyline
+    private final List<Rect> freeList = new ArrayList<Rect>();
+
+    private long usedArea;
+
+    public SkylineLayout(final int w, final int h) {
+        this.w = w;
+        this.h = h;
+        clear();
+    }
+
+    @Override
+    public int w() {
+        return w;
+    }
+
+    @Override
+    public int h() {
+        return h;
+    }
+
+    @Override
+    public boolean add(final Rect rect) {
+        if (rect.w() > w || rect.h() > h)
+            return false;
+
+        if (!addToFreeList(rect) && !addToSkyline(rect))
+            return false;
+
+        rects.add(rect);
+        usedArea += (long) rect.w() * rect.h();
+        return true;
+    }
+
+    private boolean addToFreeList(final Rect rect) {
+        // Best area fit
+        Rect best = null;
+        for (final Rect free : freeList) {
+            if (free.canContain(rect) &&
+                    (best == null || (long) free.w() * free.h() < (long) best.w() * best.h())) {
+                best = free;
+            }
+        }
+
+        if (best == null)
+            return false;
+
+        freeList.remove(best);
+        rect.setPosition(best.x(), best.y());
+
+        // Split the rest along the shorter leftover axis
+        final int restW = best.w() - rect.w();
+        final int restH = best.h() - rect.h();
+        if (restW > restH) {
+            addFree(best.x() + rect.w(), best.y(), restW, best.h());
+            addFree(best.x(), best.y() + rect.h(), rect.w(), restH);
+        } else {
+            addFree(best.x() + rect.w(), best.y(), restW, rect.h());
+            addFree(best.x(), best.y() + rect.h(), best.w(), restH);
+        }
+        return true;
+    }
+
+    private boolean addToSkyline(final Rect rect) {
+        int bestIndex = -1;
+        int bestTop = Integer.MAX_VALUE;
+        for (int i = 0; i < skyline.size(); i++) {
+            final int y = fit(i, rect.w());
+            if (y >= 0 && y + rect.h() <= h && y + rect.h() < bestTop) {
+                bestIndex = i;
+                bestTop = y + rect.h();
+            }
+        }
+
+        if (bestIndex < 0)
+            return false;
+
+        final int x = skyline.get(bestIndex).x();
+        final int y = bestTop - rect.h();
+        rect.setPosition(x, y);
+
+        // The gaps between the segments under the rectangle and its
+        // bottom go to the free list; the segments are replaced by its
+        // top edge
+        final int right = x + rect.w();
+        int i = bestIndex;
+        while (i < skyline.size() && skyline.get(i).x() < right) {
+            final Rect segment = skyline.get(i);
+            final int segmentRight = segment.x() + segment.w();
+            final int coveredRight = Math.min(segmentRight, right);
+            addFree(segment.x(), segment.y(), coveredRight - segment.x(), y - segment.y());
+
+            if (segmentRight > right) {
+                segment.setSize(segmentRight - right, 0);
+                segment.setPosition(right, segment.y());
+                break;
+            }
+            skyline.remove(i);
+        }
+        skyline.add(bestIndex, new Rect(x, y + rect.h(), rect.w(), 0, null));
+
+        mergeSkyline();
+        return true;
+    }
+
+    // Returns the y at which a rectangle of the given width would rest
+    // when placed at the start of the given segment, or -1 if it would
+    // stick out on the right
+    private int fit(final int index, final int width) {
+        final int x = skyline.get(index).x();
+        if (x + width > w)
+            return -1;
+
+        int y = 0;
+        for (int i = index; i < skyline.size() && skyline.get(i).x() < x + width; i++) {
+            y = Math.max(y, skyline.get(i).y());
+        }
+        return y;
+    }
+
+    private void mergeSkyline() {
+        for (int i = 0; i < skyline.size() - 1; ) {
+            final Rect cur = skyline.get(i);
+            final Rect next = skyline.get(i + 1);
+            if (cur.y() == next.y()) {
+                cur.setSize(cur.w() + next.w(), 0);
+                skyline.remove(i + 1);
+            } else {
+                ++i;
+            }
+        }
+    }
+
+    private void addFree(final int x, final int y, final int width, final int height) {
+        if (width > 0 && height > 0) {
+            freeList.add(new Rect(x, y, width, height, null));
+        }
+    }
+
+    @Override
+    public boolean remove(final Rect rect) {
+        if (!rects.remove(rect))
+            return false;
+
+        usedArea -= (long) rect.w() * rect.h();
+        addFree(rect.x(), rect.y(), rect.w(), rect.h());
+        return true;
+    }
+
+    @Override
+    public boolean compactAndAdd(final Rect rect, final Object backingStore, final BackingStoreManager manager) {
+        // No cheap partial compaction for a skyline
+        return false;
+    }
+
+    @Override
+    public int getUsedHeight() {
+        int usedHeight = 0;
+        for (final Rect segment : skyline) {
+            usedHeight = Math.max(usedHeight, segment.y());
+        }
+        return usedHeight;
+    }
+
+    @Override
+    public long getUsedArea() {
+        return usedArea;
+    }
+
+    @Override
+    public void setHeight(final int height) throws IllegalArgumentException {
+        if (height < getUsedHeight()) {
+            throw new IllegalArgumentException("May not reduce height below currently used height");
+        }
+        h = height;
+    }
+
+    @Override
+    public float verticalFragmentationRatio() {
+        final int usedHeight = getUsedHeight();
+        if (usedHeight == 0)
+            return 0.0f;
+        return 1.0f - (float) usedArea / ((float) w * usedHeight);
+    }
+
+    @Override
+    public void visit(final RectVisitor visitor) {
+        for (final Rect rect : rects) {
+            visitor.visit(rect);
+        }
+    }
+
+    @Override
+    public void updateRectangleReferences() {
+        for (int i = 0; i < rects.size(); i++) {
+            final Rect cur = rects.get(i);
+            final Rect next = cur.getNextLocation();
+            next.setPosition(cur.x(), cur.y());
+            if (cur.w() != next.w() || cur.h() != next.h())
+                throw new RuntimeException("Unexpected disparity in rectangle sizes during updateRectangleReferences");
+            rects.set(i, next);
+        }
+    }
+
+    @Override
+    public void clear() {
+        rects.clear();
+        freeList.clear();
+        skyline.clear();
+        skyline.add(new Rect(0, 0, w, 0, null));
+        usedArea = 0;
+    }
+}
@@ -181,6 +181,16 @@ public class Texture {
      */
     private TextureCoords coords;
 
+    /**
+     * The filters currently set on the texture object.
+     */
+    private int minFilter;
+    private int magFilter;
+    /**
+     * Indicates whether the mipmap levels match the base level.
+     */
+    private boolean mipmapsValid;
+
     @Override
     public String toString() {
         final String targetS = target == imageTarget ? Integer.toHexString(target) : Integer.toHexString(target) + " - image " + Integer.toHexString(imageTarget);
@@ -481,6 +491,17 @@ public class Texture {
      * for construction of cube maps.
      */
     public void updateImage(final GL gl, final TextureData data) {
+        allocateImage(gl, data);
+        updateSubImageImpl(gl, data, gl.GL_TEXTURE_2D(), 0, 0, 0, 0, 0, data.getWidth(), data.getHeight());
+    }
+
+    /**
+     * Allocates the storage of this texture for an image of the size and
+     * format of the given data, like {@link #updateImage updateImage}, but
+     * doesn't upload the image. The contents are undefined until updated.
+     * Leaves the texture bound.
+     */
+    public void allocateImage(final GL gl, final TextureData data) {
         validateTexID(gl, true);
 
         imgWidth = data.getWidth();
@@ -498,10 +519,10 @@ public class Texture {
         gl.glTexImage2D(gl.GL_TEXTURE_2D(), 0, data.getInternalFormat(),
                 texWidth, texHeight, data.getBorder(),
                 data.getPixelFormat(), data.getPixelType(), null);
-        updateSubImageImpl(gl, data, gl.GL_TEXTURE_2D(), 0, 0, 0, 0, 0, data.getWidth(), data.getHeight());
 
-        final int minFilter = gl.GL_LINEAR();
-        final int magFilter = gl.GL_LINEAR();
+        minFilter = gl.GL_LINEAR();
+        magFilter = gl.GL_LINEAR();
+        mipmapsValid = false;
         final int wrapMode = gl.GL_CLAMP_TO_EDGE();
 
         gl.glTexParameteri(gl.GL_TEXTURE_2D(), gl.GL_TEXTURE_MIN_FILTER(), minFilter);
@@ -569,6 +590,35 @@ public class Texture {
         updateSubImageImpl(gl, data, target, mipmapLevel, dstx, dsty, srcx, srcy, width, height);
     }
 
+    /**
+     * Sets the minification and magnification filters of this texture.
+     * The texture must be bound. The parameters are only set when they
+     * differ from the current ones, so this is cheap to call on every
+     * draw.
+     */
+    public void setFilter(final GL gl, final int minFilter, final int magFilter) {
+        if (minFilter != this.minFilter) {
+            gl.glTexParameteri(target, gl.GL_TEXTURE_MIN_FILTER(), minFilter);
+            this.minFilter = minFilter;
+        }
+        if (magFilter != this.magFilter) {
+            gl.glTexParameteri(target, gl.GL_TEXTURE_MAG_FILTER(), magFilter);
+            this.magFilter = magFilter;
+        }
+    }
+
+    /**
+     * Generates the mipmap levels of this texture from the base level,
+     * unless they are up to date already. The texture must be bound.
+     * Updates of the base level invalidate the mipmaps.
+     */
+    public void generateMipmaps(final GL gl) {
+        if (!mipmapsValid) {
+            gl.glGenerateMipmap(target);
+            mipmapsValid = true;
+        }
+    }
+
     /**
      * Sets the OpenGL floating-point texture parameter for the
      * texture's target. This gives control over parameters such as
@@ -596,6 +646,11 @@ public class Texture {
                                  final int value) {
         bind(gl);
         gl.glTexParameteri(target, parameterName, value);
+        if (parameterName == gl.GL_TEXTURE_MIN_FILTER()) {
+            minFilter = value;
+        } else if (parameterName == gl.GL_TEXTURE_MAG_FILTER()) {
+            magFilter = value;
+        }
     }
 
 
@@ -659,6 +714,10 @@ public class Texture {
             return;
         }
 
+        if (mipmapLevel == 0) {
+            mipmapsValid = false;
+        }
+
         int rowlen = data.getRowLength();
         int dataWidth = data.getWidth();
         int dataHeight = data.getHeight();
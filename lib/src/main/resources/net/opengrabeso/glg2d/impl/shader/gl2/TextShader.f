@@ -1,10 +1,10 @@
 #version 120
 
 uniform sampler2D Texture;
-uniform vec4 Color;
 varying vec2 Coord0;
+varying vec4 Color0;
 
 void main() {
    float t = texture2D(Texture,Coord0).r;
-   gl_FragColor = Color * t;
+   gl_FragColor = Color0 * t;
 }
@@ -0,0 +1,13 @@
+#version 130
+
+uniform sampler2D Texture;
+varying vec2 Coord0;
+varying vec4 Color0;
+
+void main() {
+   // the outline is at 0.5, keep the edge about one pixel wide on the screen
+   float d = texture(Texture,Coord0).r;
+   float w = 0.7 * fwidth(d);
+   float t = smoothstep(0.5 - w, 0.5 + w, d);
+   gl_FragColor = Color0 * t;
+}
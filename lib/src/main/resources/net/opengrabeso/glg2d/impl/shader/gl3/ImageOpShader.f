@@ -0,0 +1,161 @@
+#version 130
+
+#define OP_RESCALE 0
+#define OP_LOOKUP 1
+#define OP_GRAY 2
+#define OP_CONVOLVE 3
+#define OP_BICUBIC 4
+#define OP_PALETTE 5
+#define OP_PALETTE_LINEAR 6
+
+#define EDGE_NONE -1
+#define EDGE_ZERO_FILL 0
+#define EDGE_NO_OP 1
+
+#define MAX_KERNEL_SIZE 64
+
+uniform sampler2D u_tex;
+uniform sampler2D u_aux;
+uniform vec4 u_color;
+
+uniform int u_op;
+
+// OP_RESCALE
+uniform vec4 u_scale;
+uniform vec4 u_offset;
+
+// OP_CONVOLVE, OP_BICUBIC, OP_PALETTE_LINEAR
+uniform vec2 u_texSize;
+
+// OP_CONVOLVE
+uniform float u_kernel[MAX_KERNEL_SIZE];
+uniform vec2 u_kernelSize;
+uniform vec2 u_kernelOrigin;
+uniform int u_edgeMode;
+uniform vec4 u_edge;
+uniform int u_premultiplied;
+uniform int u_keepPremultiplied;
+
+varying vec2 v_texCoord;
+
+vec4 premultiply(vec4 c) {
+  return vec4(c.rgb * c.a, c.a);
+}
+
+vec4 unpremultiply(vec4 c) {
+  return c.a > 0.0 ? vec4(c.rgb / c.a, c.a) : vec4(0.0);
+}
+
+float lookup(float value, vec4 channel) {
+  return dot(texture(u_aux, vec2((value * 255.0 + 0.5) / 256.0, 0.5)), channel);
+}
+
+vec4 convolve() {
+  vec2 pixel = floor(v_texCoord * u_texSize);
+  if (u_edgeMode != EDGE_NONE &&
+      (pixel.x < u_edge.x || pixel.y < u_edge.y || pixel.x > u_edge.z || pixel.y > u_edge.w)) {
+    if (u_edgeMode == EDGE_NO_OP) {
+      return premultiply(texture(u_aux, v_texCoord));
+    } else {
+      return vec4(0.0);
+    }
+  }
+
+  int size = int(u_kernelSize.x * u_kernelSize.y);
+  vec4 sum = vec4(0.0);
+  for (int i = 0; i < MAX_KERNEL_SIZE; i++) {
+    if (i >= size) {
+      break;
+    }
+
+    // the kernel is rotated by 180 degrees, like in Java2D
+    float ky = floor((float(i) + 0.5) / u_kernelSize.x);
+    float kx = float(i) - ky * u_kernelSize.x;
+    vec4 texel = texture(u_tex, (pixel + u_kernelOrigin - vec2(kx, ky) + 0.5) / u_texSize);
+    sum += u_kernel[i] * (u_premultiplied != 0 ? texel : premultiply(texel));
+  }
+
+  return clamp(sum, 0.0, 1.0);
+}
+
+// Keys cubic kernel with a = -0.5, as used by Java2D
+float cubic(float x) {
+  x = abs(x);
+  if (x <= 1.0) {
+    return (1.5 * x - 2.5) * x * x + 1.0;
+  } else if (x < 2.0) {
+    return ((-0.5 * x + 2.5) * x - 4.0) * x + 2.0;
+  } else {
+    return 0.0;
+  }
+}
+
+vec4 bicubic() {
+  vec2 position = v_texCoord * u_texSize - 0.5;
+  vec2 base = floor(position);
+  vec2 fraction = position - base;
+
+  vec4 sum = vec4(0.0);
+  for (int y = -1; y <= 2; y++) {
+    float weightY = cubic(float(y) - fraction.y);
+    for (int x = -1; x <= 2; x++) {
+      float weight = cubic(float(x) - fraction.x) * weightY;
+      sum += weight * premultiply(texture(u_tex, (base + vec2(float(x), float(y)) + 0.5) / u_texSize));
+    }
+  }
+
+  return clamp(unpremultiply(clamp(sum, 0.0, 1.0)), 0.0, 1.0);
+}
+
+// u_tex holds palette indices, u_aux the colors
+vec4 palette(vec2 texel) {
+  float index = texture(u_tex, texel / u_texSize).r;
+  return texture(u_aux, vec2((index * 255.0 + 0.5) / 256.0, 0.5));
+}
+
+// indices can't be interpolated, the colors are
+vec4 paletteLinear() {
+  vec2 position = v_texCoord * u_texSize - 0.5;
+  vec2 base = floor(position) + 0.5;
+  vec2 fraction = fract(position);
+
+  vec4 top = mix(premultiply(palette(base)), premultiply(palette(base + vec2(1.0, 0.0))), fraction.x);
+  vec4 bottom = mix(premultiply(palette(base + vec2(0.0, 1.0))), premultiply(palette(base + vec2(1.0, 1.0))), fraction.x);
+  return unpremultiply(mix(top, bottom, fraction.y));
+}
+
+void main() {
+  vec4 color;
+
+  if (u_op == OP_CONVOLVE) {
+    color = convolve();
+    if (u_keepPremultiplied != 0) {
+      gl_FragColor = color;
+      return;
+    }
+
+    color = clamp(unpremultiply(color), 0.0, 1.0);
+  } else if (u_op == OP_BICUBIC) {
+    color = bicubic();
+  } else if (u_op == OP_PALETTE) {
+    float index = texture(u_tex, v_texCoord).r;
+    color = texture(u_aux, vec2((index * 255.0 + 0.5) / 256.0, 0.5));
+  } else if (u_op == OP_PALETTE_LINEAR) {
+    color = paletteLinear();
+  } else {
+    vec4 texel = texture(u_tex, v_texCoord);
+    if (u_op == OP_RESCALE) {
+      color = clamp(texel * u_scale + u_offset, 0.0, 1.0);
+    } else if (u_op == OP_LOOKUP) {
+      color = vec4(lookup(texel.r, vec4(1, 0, 0, 0)), lookup(texel.g, vec4(0, 1, 0, 0)),
+                   lookup(texel.b, vec4(0, 0, 1, 0)), lookup(texel.a, vec4(0, 0, 0, 1)));
+    } else {
+      // luminance computed from linear light, then encoded back
+      vec3 linear = pow(texel.rgb, vec3(2.2));
+      float gray = pow(dot(linear, vec3(0.2225, 0.7169, 0.0606)), 1.0 / 2.2);
+      color = vec4(gray, gray, gray, texel.a);
+    }
+  }
+
+  gl_FragColor = u_color * color;
+}
@@ -3,9 +3,12 @@
 uniform mat4 MVPMatrix;
 attribute vec4 MCVertex;
 attribute vec2 TexCoord0;
+attribute vec4 VertexColor;
 varying vec2 Coord0;
+varying vec4 Color0;
 
 void main() {
    gl_Position = MVPMatrix * MCVertex;
    Coord0 = TexCoord0;
+   Color0 = VertexColor;
 }
@@ -0,0 +1,74 @@
+package net.opengrabeso.opengl.util.awt;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class CodePointMapTest {
+    private static final int MISSING = -1;
+
+    private static final int[] CODE_POINTS = {
+            0, 'A', 0xff, 0x100, 0x1ff, 0x4e2d, 0xd7ff, 0xfffd, 0xffff,
+            0x10000, 0x1f600, 0x1f6ff, 0x1f700, Character.MAX_CODE_POINT
+    };
+
+    @Test
+    public void putAndGet() {
+        CodePointMap map = new CodePointMap(MISSING);
+        for (int i = 0; i < CODE_POINTS.length; i++) {
+            assertEquals(MISSING, map.get(CODE_POINTS[i]));
+            map.put(CODE_POINTS[i], i);
+        }
+
+        for (int i = 0; i < CODE_POINTS.length; i++) {
+            assertEquals(i, map.get(CODE_POINTS[i]));
+        }
+
+        // neighbours across the page boundaries stay missing
+        assertEquals(MISSING, map.get(0xfe));
+        assertEquals(MISSING, map.get(0x101));
+        assertEquals(MISSING, map.get(0x200));
+        assertEquals(MISSING, map.get(0x1f5ff));
+        assertEquals(MISSING, map.get(0x1f701));
+        assertEquals(MISSING, map.get(Character.MAX_CODE_POINT - 1));
+    }
+
+    @Test
+    public void removeAndClear() {
+        CodePointMap map = new CodePointMap(MISSING);
+        map.put(0xff, 1);
+        map.put(0x100, 2);
+        map.put(0x1f600, 3);
+
+        map.remove(0xff);
+        assertEquals(MISSING, map.get(0xff));
+        assertEquals(2, map.get(0x100));
+        assertEquals(3, map.get(0x1f600));
+
+        // removing what isn't there doesn't allocate nor fail
+        map.remove(0x50000);
+        assertEquals(MISSING, map.get(0x50000));
+
+        map.clear();
+        assertEquals(MISSING, map.get(0x100));
+        assertEquals(MISSING, map.get(0x1f600));
+    }
+
+    @Test
+    public void outOfRangeCodePointsAreIgnored() {
+        CodePointMap map = new CodePointMap(MISSING);
+        map.put(-1, 1);
+        map.put(Integer.MIN_VALUE, 2);
+        map.put(Character.MAX_CODE_POINT + 1, 3);
+        map.put(Integer.MAX_VALUE, 4);
+
+        assertEquals(MISSING, map.get(-1));
+        assertEquals(MISSING, map.get(Integer.MIN_VALUE));
+        assertEquals(MISSING, map.get(Character.MAX_CODE_POINT + 1));
+        assertEquals(MISSING, map.get(Integer.MAX_VALUE));
+
+        map.remove(-1);
+        map.remove(Character.MAX_CODE_POINT + 1);
+        assertEquals(MISSING, map.get(0));
+    }
+}
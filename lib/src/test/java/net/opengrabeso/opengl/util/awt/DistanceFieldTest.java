@@ -0,0 +1,144 @@
+package net.opengrabeso.opengl.util.awt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DistanceFieldTest {
+    private static final float SPREAD = 4;
+
+    private static byte[] square(int size, int from, int to) {
+        byte[] pixels = new byte[size * size];
+        for (int y = from; y < to; y++) {
+            for (int x = from; x < to; x++) {
+                pixels[y * size + x] = (byte) 255;
+            }
+        }
+        return pixels;
+    }
+
+    private static int value(byte[] pixels, int size, int x, int y) {
+        return pixels[y * size + x] & 0xff;
+    }
+
+    /**
+     * The field by brute force, the distance to the nearest pixel on the other
+     * side of the outline.
+     */
+    private static int[] reference(byte[] coverage, int width, int height) {
+        int[] field = new int[width * height];
+        for (int i = 0; i < field.length; i++) {
+            boolean in = (coverage[i] & 0xff) >= 128;
+            double nearest = 1e10;
+            for (int j = 0; j < field.length; j++) {
+                if (((coverage[j] & 0xff) >= 128) != in) {
+                    int dx = i % width - j % width;
+                    int dy = i / width - j / width;
+                    nearest = Math.min(nearest, Math.sqrt(dx * dx + dy * dy));
+                }
+            }
+
+            float d = (float) (in ? -nearest : nearest);
+            d += d > 0 ? -0.5f : 0.5f;
+            field[i] = Math.max(0, Math.min(255, Math.round(255 * (0.5f - d / (2 * SPREAD)))));
+        }
+        return field;
+    }
+
+    @Test
+    public void filledSquareCrossesHalfAtTheEdge() {
+        int size = 32;
+        byte[] pixels = square(size, 8, 24);
+        DistanceField.compute(pixels, size, size, SPREAD);
+
+        for (int y = 8; y < 24; y++) {
+            // half a pixel from the outline on either side
+            int inside = value(pixels, size, 8, y);
+            int outside = value(pixels, size, 7, y);
+            assertTrue(inside >= 128);
+            assertTrue(outside < 128);
+            assertEquals(255, inside + outside);
+            assertEquals(inside, value(pixels, size, 23, y));
+            assertEquals(outside, value(pixels, size, 24, y));
+        }
+
+        // clamped at the spread, the square is 16 pixels wide
+        assertEquals(255, value(pixels, size, 16, 16));
+        assertEquals(0, value(pixels, size, 0, 0));
+        assertEquals(0, value(pixels, size, 16, 2));
+
+        // falls off towards the outside
+        for (int x = 1; x < 12; x++) {
+            assertTrue(value(pixels, size, x, 16) >= value(pixels, size, x - 1, 16));
+        }
+    }
+
+    @Test
+    public void emptyGlyphIsAllOutside() {
+        byte[] pixels = new byte[20 * 10];
+        // partial coverage below half is outside
+        pixels[55] = 127;
+        DistanceField.compute(pixels, 20, 10, SPREAD);
+        for (byte pixel : pixels) {
+            assertEquals(0, pixel);
+        }
+    }
+
+    @Test
+    public void fullGlyphIsAllInside() {
+        byte[] pixels = square(12, 0, 12);
+        // coverage of half is inside
+        pixels[30] = (byte) 128;
+        DistanceField.compute(pixels, 12, 12, SPREAD);
+        for (byte pixel : pixels) {
+            assertEquals(255, pixel & 0xff);
+        }
+    }
+
+    @Test
+    public void singlePixel() {
+        int size = 21;
+        byte[] pixels = new byte[size * size];
+        pixels[10 * size + 10] = (byte) 255;
+        DistanceField.compute(pixels, size, size, SPREAD);
+
+        int center = value(pixels, size, 10, 10);
+        int side = value(pixels, size, 11, 10);
+        assertTrue(center >= 128);
+        assertTrue(side < 128);
+        assertEquals(255, center + side);
+        assertEquals(side, value(pixels, size, 9, 10));
+        assertEquals(side, value(pixels, size, 10, 11));
+        assertEquals(side, value(pixels, size, 10, 9));
+
+        // the diagonal is farther than the side
+        int diagonal = value(pixels, size, 11, 11);
+        assertTrue(diagonal < side);
+        assertEquals(Math.round(255 * (0.5f - (float) (Math.sqrt(2) - 0.5) / (2 * SPREAD))), diagonal);
+
+        assertEquals(0, value(pixels, size, 10, 15));
+        assertEquals(0, value(pixels, size, 0, 0));
+    }
+
+    @Test
+    public void matchesBruteForce() {
+        Random random = new Random(17);
+        int width = 23;
+        int height = 17;
+        for (int round = 0; round < 20; round++) {
+            byte[] pixels = new byte[width * height];
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = (byte) (random.nextInt(8) == 0 ? random.nextInt(256) : 0);
+            }
+
+            int[] expected = reference(pixels, width, height);
+            DistanceField.compute(pixels, width, height, SPREAD);
+            for (int i = 0; i < pixels.length; i++) {
+                assertEquals("pixel " + i, expected[i], pixels[i] & 0xff);
+            }
+        }
+    }
+}
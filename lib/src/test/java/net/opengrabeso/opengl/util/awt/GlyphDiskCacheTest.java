@@ -0,0 +1,150 @@
+package net.opengrabeso.opengl.util.awt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Font;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GlyphDiskCacheTest {
+    private static final Font FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+    private static final Font OTHER_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 14);
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("glyphs").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        new GlyphDiskCache(directory).clear();
+        directory.delete();
+    }
+
+    private static GlyphDiskCache.Entry entry(int glyphCode, int width, int height) {
+        byte[] pixels = new byte[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) (glyphCode + i);
+        }
+
+        return new GlyphDiskCache.Entry(glyphCode, 1, height - 2, 0, -height + 2, width, height, width, height, pixels);
+    }
+
+    private GlyphDiskCache.FontGlyphs glyphs(GlyphDiskCache cache, Font font) {
+        return cache.getGlyphs(font, true, false, false);
+    }
+
+    private File onlyFile() {
+        File[] files = directory.listFiles();
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    @Test
+    public void savedGlyphsAreReadBack() throws IOException {
+        GlyphDiskCache cache = new GlyphDiskCache(directory);
+        glyphs(cache, FONT).add(entry(36, 5, 7));
+        glyphs(cache, FONT).add(entry(37, 3, 4));
+        cache.save();
+
+        GlyphDiskCache.FontGlyphs loaded = glyphs(new GlyphDiskCache(directory), FONT);
+        GlyphDiskCache.Entry entry = loaded.get(36);
+        assertNotNull(entry);
+        assertEquals(1, entry.originX);
+        assertEquals(5, entry.width);
+        assertEquals(7, entry.height);
+        assertEquals(-5, entry.boundsY);
+        assertArrayEquals(entry(36, 5, 7).pixels, entry.pixels);
+        assertArrayEquals(entry(37, 3, 4).pixels, loaded.get(37).pixels);
+        assertNull(loaded.get(38));
+    }
+
+    @Test
+    public void fileOfOtherKeyIsIgnored() throws IOException {
+        GlyphDiskCache cache = new GlyphDiskCache(directory);
+        glyphs(cache, FONT).add(entry(36, 5, 7));
+        cache.save();
+        File fontFile = onlyFile();
+
+        glyphs(cache, OTHER_FONT).add(entry(40, 2, 2));
+        cache.save();
+        File otherFile = null;
+        for (File file : directory.listFiles()) {
+            if (!file.equals(fontFile)) {
+                otherFile = file;
+            }
+        }
+        assertNotNull(otherFile);
+
+        Files.copy(fontFile.toPath(), otherFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        GlyphDiskCache.FontGlyphs loaded = glyphs(new GlyphDiskCache(directory), OTHER_FONT);
+        assertFalse(loaded.contains(36));
+        assertFalse(loaded.contains(40));
+    }
+
+    @Test
+    public void truncatedFileIsIgnored() throws IOException {
+        GlyphDiskCache cache = new GlyphDiskCache(directory);
+        glyphs(cache, FONT).add(entry(36, 5, 7));
+        glyphs(cache, FONT).add(entry(37, 6, 6));
+        cache.save();
+
+        File file = onlyFile();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() - 10);
+        } finally {
+            raf.close();
+        }
+
+        GlyphDiskCache.FontGlyphs loaded = glyphs(new GlyphDiskCache(directory), FONT);
+        assertNull(loaded.get(36));
+        assertNull(loaded.get(37));
+    }
+
+    @Test
+    public void resaveMergesOldAndNewGlyphs() throws IOException {
+        GlyphDiskCache cache = new GlyphDiskCache(directory);
+        glyphs(cache, FONT).add(entry(36, 5, 7));
+        cache.save();
+
+        GlyphDiskCache second = new GlyphDiskCache(directory);
+        assertTrue(glyphs(second, FONT).contains(36));
+        glyphs(second, FONT).add(entry(37, 3, 4));
+        second.save();
+
+        GlyphDiskCache.FontGlyphs loaded = glyphs(new GlyphDiskCache(directory), FONT);
+        assertArrayEquals(entry(36, 5, 7).pixels, loaded.get(36).pixels);
+        assertArrayEquals(entry(37, 3, 4).pixels, loaded.get(37).pixels);
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void clearDeletesFiles() throws IOException {
+        GlyphDiskCache cache = new GlyphDiskCache(directory);
+        glyphs(cache, FONT).add(entry(36, 5, 7));
+        cache.save();
+        // the file was read back after saving
+        assertTrue(glyphs(cache, FONT).contains(36));
+
+        cache.clear();
+        assertEquals(0, directory.listFiles().length);
+        assertFalse(glyphs(new GlyphDiskCache(directory), FONT).contains(36));
+    }
+}
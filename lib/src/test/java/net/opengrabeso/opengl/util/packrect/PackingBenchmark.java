@@ -0,0 +1,348 @@
+package net.opengrabeso.opengl.util.packrect;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the packing algorithms on pages of the glyph atlas. The rects are
+ * the glyphs of the logical fonts in common sizes, measured and padded the way
+ * TextRenderer sizes its atlas entries. Two workloads are run on a single page
+ * of fixed size:
+ * <ul>
+ * <li>fill: the glyphs in random order until the first one doesn't fit,</li>
+ * <li>churn: screens drawing a few fonts each, evicting the least recently
+ * used glyphs and compacting the page like GlyphAtlas does.</li>
+ * </ul>
+ * <p>
+ * {@link #main} prints the occupancy report. The timings are measured with
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main PackingBenchmark}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackingBenchmark {
+    private static final String[] FONT_NAMES = { Font.SANS_SERIF, Font.SERIF, Font.MONOSPACED };
+    private static final int[] FONT_SIZES = { 10, 12, 14, 16, 20, 24, 32, 48 };
+
+    // As in GlyphAtlas
+    private static final float MAX_VERTICAL_FRAGMENTATION = 0.7f;
+    private static final int EVICTION_FRACTION = 16;
+
+    private static final int FRAMES = 3000;
+    private static final int FRAMES_PER_SCREEN = 100;
+    private static final int FONTS_PER_SCREEN = 4;
+    private static final int GLYPHS_PER_FRAME = 200;
+
+    @Param({ "LEVELS", "SKYLINE", "MAX_RECTS" })
+    public PackingAlgorithm algorithm;
+
+    @Param({ "512", "1024" })
+    public int pageSize;
+
+    private List<FontGlyphs> fonts;
+
+    /**
+     * The padded glyph sizes of a font, the ASCII ones first.
+     */
+    static class FontGlyphs {
+        final String name;
+        final List<int[]> sizes = new ArrayList<int[]>();
+        int asciiCount;
+
+        FontGlyphs(String name) {
+            this.name = name;
+        }
+    }
+
+    static class Stats {
+        int glyphs;
+        float occupancy;
+        int compactions;
+        int moves;
+        int evictions;
+        int failures;
+    }
+
+    /**
+     * Counts the compactions, the backing stores are just their sizes.
+     */
+    static class CountingManager implements BackingStoreManager {
+        final Stats stats;
+
+        CountingManager(Stats stats) {
+            this.stats = stats;
+        }
+
+        @Override
+        public Object allocateBackingStore(int w, int h) {
+            return new int[] { w, h };
+        }
+
+        @Override
+        public void deleteBackingStore(Object backingStore) {
+        }
+
+        @Override
+        public boolean canCompact() {
+            return true;
+        }
+
+        @Override
+        public boolean preExpand(Rect cause, int attemptNumber) {
+            return false;
+        }
+
+        @Override
+        public boolean additionFailed(Rect cause, int attemptNumber) {
+            return false;
+        }
+
+        @Override
+        public void beginMovement(Object oldBackingStore, Object newBackingStore) {
+            stats.compactions++;
+        }
+
+        @Override
+        public void move(Object oldBackingStore, Rect oldLocation, Object newBackingStore, Rect newLocation) {
+            stats.moves++;
+        }
+
+        @Override
+        public void endMovement(Object oldBackingStore, Object newBackingStore) {
+        }
+    }
+
+    private static class Entry {
+        final int key;
+        int lastUsed;
+
+        Entry(int key) {
+            this.key = key;
+        }
+    }
+
+    private static final Comparator<Rect> lastUsedComparator = new Comparator<Rect>() {
+        @Override
+        public int compare(Rect r1, Rect r2) {
+            return ((Entry) r1.getUserData()).lastUsed - ((Entry) r2.getUserData()).lastUsed;
+        }
+    };
+
+    static List<FontGlyphs> measureFonts() {
+        StringBuilder chars = new StringBuilder();
+        appendRange(chars, '!', '~');
+        int asciiLength = chars.length();
+        appendRange(chars, '¡', 'ÿ');
+        appendRange(chars, 'Α', 'ω');
+        appendRange(chars, 'А', 'я');
+
+        FontRenderContext frc = new FontRenderContext(null, true, false);
+        List<FontGlyphs> fonts = new ArrayList<FontGlyphs>();
+        for (String name : FONT_NAMES) {
+            for (int size : FONT_SIZES) {
+                Font font = new Font(name, Font.PLAIN, size);
+                FontGlyphs glyphs = new FontGlyphs(name + " " + size);
+                for (int i = 0; i < chars.length(); i++) {
+                    if (!font.canDisplay(chars.charAt(i))) {
+                        continue;
+                    }
+
+                    GlyphVector gv = font.createGlyphVector(frc, String.valueOf(chars.charAt(i)));
+                    glyphs.sizes.add(entrySize(gv.getVisualBounds(), size));
+                    if (i < asciiLength) {
+                        glyphs.asciiCount++;
+                    }
+                }
+                fonts.add(glyphs);
+            }
+        }
+
+        return fonts;
+    }
+
+    private static void appendRange(StringBuilder chars, char first, char last) {
+        for (char c = first; c <= last; c++) {
+            chars.append(c);
+        }
+    }
+
+    // The slop and the boundary TextRenderer adds around a glyph
+    private static int[] entrySize(Rectangle2D bounds, int fontSize) {
+        int w = (int) Math.ceil(bounds.getMaxX()) - (int) Math.floor(bounds.getMinX()) + 2;
+        int h = (int) Math.ceil(bounds.getMaxY()) - (int) Math.floor(bounds.getMinY()) + 2;
+        int boundary = (int) Math.max(1, 0.015 * fontSize);
+        return new int[] { w + 2 * boundary, h + 2 * boundary };
+    }
+
+    private static RectanglePacker createPage(PackingAlgorithm algorithm, int pageSize, Stats stats) {
+        RectanglePacker packer = new RectanglePacker(new CountingManager(stats), pageSize, pageSize, algorithm);
+        packer.setMaxSize(pageSize, pageSize);
+        return packer;
+    }
+
+    /**
+     * Adds all glyphs in random order until one doesn't fit.
+     */
+    static Stats fill(PackingAlgorithm algorithm, int pageSize, List<FontGlyphs> fonts, long seed) {
+        List<int[]> sizes = new ArrayList<int[]>();
+        for (FontGlyphs glyphs : fonts) {
+            sizes.addAll(glyphs.sizes);
+        }
+        Collections.shuffle(sizes, new Random(seed));
+
+        Stats stats = new Stats();
+        RectanglePacker packer = createPage(algorithm, pageSize, stats);
+        for (int[] size : sizes) {
+            if (!packer.tryAdd(new Rect(0, 0, size[0], size[1], null))) {
+                break;
+            }
+            stats.glyphs++;
+        }
+
+        stats.occupancy = packer.getOccupancy();
+        return stats;
+    }
+
+    /**
+     * Draws screens of a few fonts each, mostly ASCII, for a number of frames.
+     * A glyph which doesn't fit evicts the least recently drawn glyphs, and a
+     * page fragmented after evicting is compacted. The occupancy is the mean
+     * at the end of the frames.
+     */
+    static Stats churn(PackingAlgorithm algorithm, int pageSize, List<FontGlyphs> fonts, long seed) {
+        Random random = new Random(seed);
+        Stats stats = new Stats();
+        RectanglePacker packer = createPage(algorithm, pageSize, stats);
+        Map<Integer, Rect> placed = new HashMap<Integer, Rect>();
+        int[] screen = new int[FONTS_PER_SCREEN];
+        double occupancy = 0;
+
+        for (int frame = 0; frame < FRAMES; frame++) {
+            if (frame % FRAMES_PER_SCREEN == 0) {
+                for (int i = 0; i < screen.length; i++) {
+                    screen[i] = random.nextInt(fonts.size());
+                }
+            }
+
+            for (int i = 0; i < GLYPHS_PER_FRAME; i++) {
+                int font = screen[random.nextInt(screen.length)];
+                FontGlyphs glyphs = fonts.get(font);
+                int glyph = random.nextInt(10) != 0 ? random.nextInt(glyphs.asciiCount) : random.nextInt(glyphs.sizes.size());
+                int key = font * 1000 + glyph;
+
+                Rect rect = placed.get(key);
+                if (rect == null) {
+                    int[] size = glyphs.sizes.get(glyph);
+                    rect = new Rect(0, 0, size[0], size[1], new Entry(key));
+                    if (!packer.tryAdd(rect)) {
+                        evict(packer, placed, Math.max((long) rect.w() * rect.h(), (long) pageSize * pageSize / EVICTION_FRACTION), frame, stats);
+                        if (!packer.tryAdd(rect)) {
+                            stats.failures++;
+                            continue;
+                        }
+                    }
+
+                    placed.put(key, rect);
+                    stats.glyphs++;
+                }
+
+                ((Entry) rect.getUserData()).lastUsed = frame;
+            }
+
+            occupancy += packer.getOccupancy();
+        }
+
+        stats.occupancy = (float) (occupancy / FRAMES);
+        return stats;
+    }
+
+    private static void evict(RectanglePacker packer, Map<Integer, Rect> placed, long bytes, final int frame, Stats stats) {
+        final List<Rect> candidates = new ArrayList<Rect>();
+        packer.visit(new RectVisitor() {
+            @Override
+            public void visit(Rect rect) {
+                if (((Entry) rect.getUserData()).lastUsed < frame) {
+                    candidates.add(rect);
+                }
+            }
+        });
+        Collections.sort(candidates, lastUsedComparator);
+
+        long freed = 0;
+        for (int i = 0; i < candidates.size() && freed < bytes; i++) {
+            Rect rect = candidates.get(i);
+            packer.remove(rect);
+            placed.remove(((Entry) rect.getUserData()).key);
+            freed += (long) rect.w() * rect.h();
+            stats.evictions++;
+        }
+
+        if (freed > 0 && packer.verticalFragmentationRatio() > MAX_VERTICAL_FRAGMENTATION) {
+            packer.compact();
+        }
+    }
+
+    @Setup
+    public void measure() {
+        fonts = measureFonts();
+    }
+
+    @Benchmark
+    public Stats fill() {
+        return fill(algorithm, pageSize, fonts, 1);
+    }
+
+    @Benchmark
+    public Stats churn() {
+        return churn(algorithm, pageSize, fonts, 1);
+    }
+
+    public static void main(String[] args) {
+        List<FontGlyphs> fonts = measureFonts();
+        long count = 0;
+        long area = 0;
+        for (FontGlyphs glyphs : fonts) {
+            for (int[] size : glyphs.sizes) {
+                count++;
+                area += (long) size[0] * size[1];
+            }
+        }
+        System.out.printf("%d glyphs of %d fonts, %d pixels%n", count, fonts.size(), area);
+
+        for (int pageSize : new int[] { 256, 512, 1024 }) {
+            for (PackingAlgorithm algorithm : PackingAlgorithm.values()) {
+                Stats fill = fill(algorithm, pageSize, fonts, 1);
+                Stats churn = churn(algorithm, pageSize, fonts, 1);
+                System.out.printf("%4d %-9s fill: %5d glyphs %5.1f%% | churn: %5.1f%% occupied, %4d compactions, %7d moves, %6d evictions, %d failed%n",
+                        pageSize, algorithm, fill.glyphs, 100 * fill.occupancy,
+                        100 * churn.occupancy, churn.compactions, churn.moves, churn.evictions, churn.failures);
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package net.opengrabeso.opengl.util.packrect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+@RunWith(Parameterized.class)
+public class RectangleLayoutTest {
+    private final PackingAlgorithm algorithm;
+
+    public RectangleLayoutTest(PackingAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> algorithms() {
+        List<Object[]> algorithms = new ArrayList<Object[]>();
+        for (PackingAlgorithm algorithm : PackingAlgorithm.values()) {
+            algorithms.add(new Object[] { algorithm });
+        }
+        return algorithms;
+    }
+
+    /**
+     * A rectangle of about the size of a glyph.
+     */
+    static Rect glyphRect(Random random) {
+        return new Rect(0, 0, 3 + random.nextInt(30), 6 + random.nextInt(30), null);
+    }
+
+    /**
+     * Checks that the visited rects are exactly the expected ones, within
+     * the bounds and not overlapping.
+     */
+    static List<Rect> checkLayout(RectangleLayout layout, Collection<Rect> expected) {
+        final List<Rect> visited = new ArrayList<Rect>();
+        layout.visit(new RectVisitor() {
+            @Override
+            public void visit(Rect rect) {
+                visited.add(rect);
+            }
+        });
+
+        Map<Rect, Boolean> identities = new IdentityHashMap<Rect, Boolean>();
+        for (Rect rect : visited) {
+            identities.put(rect, Boolean.TRUE);
+        }
+        assertEquals("rects visited twice", visited.size(), identities.size());
+        assertEquals(expected.size(), visited.size());
+        for (Rect rect : expected) {
+            assertTrue("missing " + rect, identities.containsKey(rect));
+        }
+
+        checkPlacement(visited, layout.w(), layout.h());
+        return visited;
+    }
+
+    static void checkPlacement(List<Rect> rects, int w, int h) {
+        for (Rect rect : rects) {
+            assertTrue("outside: " + rect, rect.x() >= 0 && rect.y() >= 0 && rect.maxX() <= w && rect.maxY() <= h);
+        }
+
+        // sweep along x to keep it cheap with many rects
+        List<Rect> sorted = new ArrayList<Rect>(rects);
+        Collections.sort(sorted, new java.util.Comparator<Rect>() {
+            @Override
+            public int compare(Rect a, Rect b) {
+                return a.x() - b.x();
+            }
+        });
+        for (int i = 0; i < sorted.size(); i++) {
+            Rect a = sorted.get(i);
+            for (int j = i + 1; j < sorted.size() && sorted.get(j).x() < a.maxX(); j++) {
+                Rect b = sorted.get(j);
+                if (a.y() < b.maxY() && b.y() < a.maxY()) {
+                    fail("overlap: " + a + " " + b);
+                }
+            }
+        }
+    }
+
+    private static long area(Collection<Rect> rects) {
+        long area = 0;
+        for (Rect rect : rects) {
+            area += (long) rect.w() * rect.h();
+        }
+        return area;
+    }
+
+    @Test
+    public void randomAdditionsAndRemovals() {
+        Random random = new Random(42);
+        RectangleLayout layout = algorithm.createLayout(512, 512);
+        List<Rect> added = new ArrayList<Rect>();
+
+        for (int round = 0; round < 5; round++) {
+            int failures = 0;
+            while (failures < 20) {
+                Rect rect = glyphRect(random);
+                if (layout.add(rect)) {
+                    added.add(rect);
+                } else {
+                    failures++;
+                }
+            }
+
+            checkLayout(layout, added);
+            assertEquals(area(added), layout.getUsedArea());
+
+            Collections.shuffle(added, random);
+            List<Rect> removed = new ArrayList<Rect>(added.subList(0, added.size() / 2));
+            added.removeAll(removed);
+            for (Rect rect : removed) {
+                assertTrue(layout.remove(rect));
+            }
+            assertFalse("removed twice", layout.remove(removed.get(0)));
+
+            checkLayout(layout, added);
+            assertEquals(area(added), layout.getUsedArea());
+        }
+
+        layout.clear();
+        checkLayout(layout, Collections.<Rect>emptyList());
+        assertEquals(0, layout.getUsedArea());
+        assertEquals(0, layout.getUsedHeight());
+    }
+
+    @Test
+    public void usedHeightCoversAllRects() {
+        Random random = new Random(7);
+        RectangleLayout layout = algorithm.createLayout(256, 1024);
+        List<Rect> added = new ArrayList<Rect>();
+        for (int i = 0; i < 50; i++) {
+            Rect rect = glyphRect(random);
+            assertTrue(layout.add(rect));
+            added.add(rect);
+
+            int maxY = 0;
+            for (Rect r : added) {
+                maxY = Math.max(maxY, r.maxY());
+            }
+            assertTrue(layout.getUsedHeight() >= maxY);
+            assertTrue(layout.getUsedHeight() <= layout.h());
+        }
+    }
+
+    @Test
+    public void setHeightShrinksAndGrows() {
+        Random random = new Random(3);
+        RectangleLayout layout = algorithm.createLayout(256, 256);
+        List<Rect> added = new ArrayList<Rect>();
+        for (int i = 0; i < 20; i++) {
+            Rect rect = glyphRect(random);
+            assertTrue(layout.add(rect));
+            added.add(rect);
+        }
+
+        int usedHeight = layout.getUsedHeight();
+        try {
+            layout.setHeight(usedHeight - 1);
+            fail("shrunk below the used height");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(256, layout.h());
+
+        layout.setHeight(usedHeight);
+        assertEquals(usedHeight, layout.h());
+        checkLayout(layout, added);
+
+        Rect tall = new Rect(0, 0, 10, usedHeight + 1, null);
+        assertFalse(layout.add(tall));
+        checkLayout(layout, added);
+
+        layout.setHeight(usedHeight * 2 + 2);
+        assertEquals(usedHeight * 2 + 2, layout.h());
+        assertTrue(layout.add(tall));
+        added.add(tall);
+        checkLayout(layout, added);
+        assertEquals(area(added), layout.getUsedArea());
+    }
+
+    @Test
+    public void fullWidthRowsFill() {
+        RectangleLayout layout = algorithm.createLayout(64, 64);
+        List<Rect> added = new ArrayList<Rect>();
+        for (int i = 0; i < 16; i++) {
+            Rect rect = new Rect(0, 0, 16, 16, null);
+            assertTrue("rect " + i, layout.add(rect));
+            added.add(rect);
+        }
+
+        assertFalse(layout.add(new Rect(0, 0, 1, 1, null)));
+        checkLayout(layout, added);
+        assertEquals(64 * 64, layout.getUsedArea());
+        assertEquals(Arrays.asList(64, 64), Arrays.asList(layout.w(), layout.getUsedHeight()));
+    }
+}
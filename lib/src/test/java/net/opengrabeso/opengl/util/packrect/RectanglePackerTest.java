@@ -0,0 +1,167 @@
+package net.opengrabeso.opengl.util.packrect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+@RunWith(Parameterized.class)
+public class RectanglePackerTest {
+    private final PackingAlgorithm algorithm;
+
+    public RectanglePackerTest(PackingAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> algorithms() {
+        return RectangleLayoutTest.algorithms();
+    }
+
+    /**
+     * Backing stores are just their sizes, moves are counted.
+     */
+    static class SizeManager implements BackingStoreManager {
+        int allocations;
+        int deletions;
+        int moves;
+
+        @Override
+        public Object allocateBackingStore(int w, int h) {
+            allocations++;
+            return new int[] { w, h };
+        }
+
+        @Override
+        public void deleteBackingStore(Object backingStore) {
+            deletions++;
+        }
+
+        @Override
+        public boolean canCompact() {
+            return true;
+        }
+
+        @Override
+        public boolean preExpand(Rect cause, int attemptNumber) {
+            return false;
+        }
+
+        @Override
+        public boolean additionFailed(Rect cause, int attemptNumber) {
+            return false;
+        }
+
+        @Override
+        public void beginMovement(Object oldBackingStore, Object newBackingStore) {
+        }
+
+        @Override
+        public void move(Object oldBackingStore, Rect oldLocation, Object newBackingStore, Rect newLocation) {
+            assertEquals(oldLocation.w(), newLocation.w());
+            assertEquals(oldLocation.h(), newLocation.h());
+            moves++;
+        }
+
+        @Override
+        public void endMovement(Object oldBackingStore, Object newBackingStore) {
+        }
+    }
+
+    private static List<Rect> visit(RectanglePacker packer) {
+        final List<Rect> visited = new ArrayList<Rect>();
+        packer.visit(new RectVisitor() {
+            @Override
+            public void visit(Rect rect) {
+                visited.add(rect);
+            }
+        });
+        return visited;
+    }
+
+    @Test
+    public void expandsToFitAllRects() {
+        Random random = new Random(11);
+        SizeManager manager = new SizeManager();
+        RectanglePacker packer = new RectanglePacker(manager, 64, 64, algorithm);
+
+        List<Rect> added = new ArrayList<Rect>();
+        long area = 0;
+        for (int i = 0; i < 500; i++) {
+            Rect rect = RectangleLayoutTest.glyphRect(random);
+            packer.add(rect);
+            added.add(rect);
+            area += (long) rect.w() * rect.h();
+        }
+
+        assertTrue(packer.w() * (long) packer.h() >= area);
+        assertTrue("expanded", manager.allocations > 1);
+        assertEquals(manager.allocations - 1, manager.deletions);
+        assertTrue(manager.moves > 0);
+
+        // the rects added keep their identity across compactions
+        List<Rect> visited = visit(packer);
+        assertEquals(added.size(), visited.size());
+        assertTrue(visited.containsAll(added));
+        RectangleLayoutTest.checkPlacement(visited, packer.w(), packer.h());
+        assertEquals((float) area / ((float) packer.w() * packer.h()), packer.getOccupancy(), 1e-6f);
+    }
+
+    @Test
+    public void respectsMaximumSize() {
+        Random random = new Random(5);
+        SizeManager manager = new SizeManager();
+        RectanglePacker packer = new RectanglePacker(manager, 128, 128, algorithm);
+        packer.setMaxSize(128, 128);
+
+        List<Rect> added = new ArrayList<Rect>();
+        for (int i = 0; i < 1000; i++) {
+            Rect rect = RectangleLayoutTest.glyphRect(random);
+            if (packer.tryAdd(rect)) {
+                added.add(rect);
+            }
+        }
+
+        assertEquals(128, packer.w());
+        assertEquals(128, packer.h());
+        List<Rect> visited = visit(packer);
+        assertEquals(added.size(), visited.size());
+        RectangleLayoutTest.checkPlacement(visited, 128, 128);
+
+        for (Rect rect : added) {
+            packer.remove(rect);
+        }
+        assertEquals(0, packer.getOccupancy(), 0);
+    }
+
+    @Test
+    public void compactKeepsRects() {
+        Random random = new Random(9);
+        RectanglePacker packer = new RectanglePacker(new SizeManager(), 256, 256, algorithm);
+        List<Rect> added = new ArrayList<Rect>();
+        for (int i = 0; i < 100; i++) {
+            Rect rect = RectangleLayoutTest.glyphRect(random);
+            packer.add(rect);
+            added.add(rect);
+        }
+        for (int i = 0; i < added.size(); i += 2) {
+            packer.remove(added.get(i));
+        }
+        List<Rect> kept = visit(packer);
+
+        packer.compact();
+
+        List<Rect> visited = visit(packer);
+        assertEquals(kept.size(), visited.size());
+        assertTrue(visited.containsAll(kept));
+        RectangleLayoutTest.checkPlacement(visited, packer.w(), packer.h());
+    }
+}